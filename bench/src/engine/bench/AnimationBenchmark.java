@@ -0,0 +1,107 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.components.AnimationSystem;
+import engine.components.SpriteComponent;
+import engine.core.entity.Entity;
+import engine.core.entity.IDPool;
+import engine.rendering.ArrayBitmap;
+import engine.rendering.Color;
+import engine.rendering.IRenderDevice;
+import engine.rendering.SpriteSheet;
+import engine.rendering.Texture;
+import engine.rendering.software.SoftwareRenderDevice;
+import engine.space.AABB;
+import engine.space.QuadTree;
+
+/**
+ * Measures updating animated sprites, both by updating each entity and with
+ * an {@link AnimationSystem}.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnimationBenchmark {
+	private static final double WORLD_SIZE = 256.0;
+	private static final double DELTA = 1.0 / 60.0;
+	private static final double SPRITE_SIZE = 1.0;
+	private static final int QUADTREE_CAPACITY = 8;
+	private static final int SHEET_SIZE = 4;
+	// Sprites are given one of a few different animation speeds, as they
+	// would be in a game with several kinds of animated sprites.
+	private static final double[] FRAME_TIMES = { 0.05, 0.1, 0.15, 0.2 };
+
+	@Param({ "10000", "200000" })
+	public int numSprites;
+	@Param({ "false", "true" })
+	public boolean useSystem;
+
+	private AnimationSystem system;
+	private Entity[] entities;
+
+	@Setup
+	public void setup() {
+		SoftwareRenderDevice device = new SoftwareRenderDevice(1, 1);
+		SpriteSheet sheet = new SpriteSheet(new Texture(device,
+				new ArrayBitmap(SHEET_SIZE * 8, SHEET_SIZE * 8),
+				IRenderDevice.FILTER_NEAREST), SHEET_SIZE, SHEET_SIZE, 0);
+		QuadTree<Entity> structure = new QuadTree<Entity>(new AABB(0, 0,
+				WORLD_SIZE, WORLD_SIZE), QUADTREE_CAPACITY);
+		IDPool ids = new IDPool();
+		system = useSystem ? new AnimationSystem() : null;
+
+		Random random = new Random(1);
+		double[] positions = Positions.generate(Positions.UNIFORM,
+				numSprites, WORLD_SIZE - SPRITE_SIZE, 1);
+		entities = new Entity[numSprites];
+		for (int i = 0; i < numSprites; i++) {
+			entities[i] = new Entity(structure, ids, positions[i * 2],
+					positions[i * 2 + 1], 0);
+			SpriteComponent sprite = new SpriteComponent(entities[i],
+					SPRITE_SIZE, SPRITE_SIZE, sheet,
+					FRAME_TIMES[random.nextInt(FRAME_TIMES.length)],
+					Color.WHITE);
+			sprite.setFrame(random.nextInt(sheet.getNumSprites()));
+			if (system != null) {
+				sprite.attachTo(system);
+			}
+		}
+	}
+
+	/**
+	 * Updates the animation of every sprite once.
+	 */
+	@Benchmark
+	public void update() {
+		if (system != null) {
+			system.update(DELTA);
+			return;
+		}
+		for (int i = 0; i < entities.length; i++) {
+			entities[i].update(DELTA);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import engine.components.ColliderComponent;
+import engine.components.CollisionComponent;
+import engine.components.CollisionSystem;
+import engine.core.entity.Entity;
+import engine.core.entity.IDPool;
+import engine.space.AABB;
+import engine.space.QuadTree;
+import engine.util.DoublePair;
+
+/**
+ * Measures resolving collisions between entities, both by searching the
+ * spatial structure for each movement and with a {@link CollisionSystem}.
+ * <p/>
+ * Entities are never actually moved, so every invocation resolves collisions
+ * against the same surroundings.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollisionBenchmark {
+	private static final double ENTITY_SIZE = 0.5;
+	// The world grows with the number of entities, so each entity has about
+	// the same number of neighbors no matter how many there are.
+	private static final double AREA_PER_ENTITY = 4.0;
+	private static final double MAX_MOVEMENT = 0.05;
+	private static final double MARGIN = 0.1;
+	private static final int QUADTREE_CAPACITY = 8;
+	private static final int NUM_MOVEMENTS = 1024;
+
+	@Param({ "100", "1000", "10000" })
+	public int numEntities;
+	@Param({ Positions.UNIFORM, Positions.CLUSTERED })
+	public String distribution;
+	@Param({ "false", "true" })
+	public boolean useSystem;
+
+	private CollisionSystem system;
+	private CollisionComponent[] collisions;
+	private double[] movements;
+	private int next;
+
+	@Setup
+	public void setup() {
+		double worldSize = Math.sqrt(numEntities * AREA_PER_ENTITY);
+		QuadTree<Entity> structure = new QuadTree<Entity>(new AABB(0, 0,
+				worldSize, worldSize), QUADTREE_CAPACITY);
+		IDPool ids = new IDPool();
+		system = useSystem ? new CollisionSystem(MARGIN) : null;
+
+		double[] positions = Positions.generate(distribution, numEntities,
+				worldSize - ENTITY_SIZE, 1);
+		collisions = new CollisionComponent[numEntities];
+		for (int i = 0; i < numEntities; i++) {
+			Entity entity = new Entity(structure, ids, positions[i * 2],
+					positions[i * 2 + 1], 0);
+			new ColliderComponent(entity).fitAABB(new AABB(0, 0,
+					ENTITY_SIZE, ENTITY_SIZE));
+			collisions[i] = new CollisionComponent(entity);
+			if (system != null) {
+				collisions[i].attachTo(system);
+			}
+		}
+		if (system != null) {
+			system.update();
+		}
+
+		Random random = new Random(2);
+		movements = new double[NUM_MOVEMENTS * 2];
+		for (int i = 0; i < movements.length; i++) {
+			movements[i] = (random.nextDouble() * 2.0 - 1.0) * MAX_MOVEMENT;
+		}
+		next = 0;
+	}
+
+	/**
+	 * Resolves collisions for a single movement of a single entity.
+	 * 
+	 * @return The movement that avoids collisions.
+	 */
+	@Benchmark
+	public DoublePair resolveCollisions() {
+		CollisionComponent collision = collisions[next % numEntities];
+		int movement = (next % NUM_MOVEMENTS) * 2;
+		next++;
+		return collision.resolveCollisions(movements[movement],
+				movements[movement + 1]);
+	}
+
+	/**
+	 * Resolves collisions for a movement of every entity, updating the
+	 * collision system first if one is used, as a game would each update.
+	 * 
+	 * @param blackhole
+	 *            Consumes the result of each movement.
+	 */
+	@Benchmark
+	public void resolveAll(Blackhole blackhole) {
+		if (system != null) {
+			system.update();
+		}
+		for (int i = 0; i < numEntities; i++) {
+			int movement = (i % NUM_MOVEMENTS) * 2;
+			blackhole.consume(collisions[i].resolveCollisions(
+					movements[movement], movements[movement + 1]));
+		}
+	}
+}
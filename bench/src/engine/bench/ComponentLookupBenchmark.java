@@ -0,0 +1,173 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.core.entity.Entity;
+import engine.core.entity.EntityComponent;
+import engine.core.entity.IDPool;
+import engine.space.AABB;
+import engine.space.QuadTree;
+import engine.util.IDAssigner;
+
+/**
+ * Measures finding components on entities by id, compared with searching a
+ * list of components the way entities used to.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ComponentLookupBenchmark {
+	private static final double WORLD_SIZE = 256.0;
+	private static final int QUADTREE_CAPACITY = 8;
+	private static final int NUM_ENTITIES = 1000;
+	private static final int MAX_COMPONENTS = 16;
+	private static final int[] COMPONENT_IDS = new int[MAX_COMPONENTS];
+	// Never attached to anything, so looking for it always fails.
+	private static final int MISSING_ID = IDAssigner.getId();
+
+	static {
+		for (int i = 0; i < MAX_COMPONENTS; i++) {
+			COMPONENT_IDS[i] = IDAssigner.getId();
+		}
+	}
+
+	@Param({ "1", "2", "4", "8", "16" })
+	public int componentsPerEntity;
+
+	private Entity[] entities;
+	private List<List<EntityComponent>> componentLists;
+	private int lastId;
+
+	private static class IdleComponent extends EntityComponent {
+		public IdleComponent(Entity entity, int id) {
+			super(entity, id);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		if (componentsPerEntity > MAX_COMPONENTS) {
+			throw new IllegalArgumentException("At most " + MAX_COMPONENTS
+					+ " components can be added to each entity");
+		}
+		QuadTree<Entity> structure = new QuadTree<Entity>(new AABB(0, 0,
+				WORLD_SIZE, WORLD_SIZE), QUADTREE_CAPACITY);
+		IDPool ids = new IDPool();
+		double[] positions = Positions.generate(Positions.UNIFORM,
+				NUM_ENTITIES, WORLD_SIZE, 1);
+		entities = new Entity[NUM_ENTITIES];
+		componentLists = new ArrayList<>(NUM_ENTITIES);
+		for (int i = 0; i < NUM_ENTITIES; i++) {
+			entities[i] = new Entity(structure, ids, positions[i * 2],
+					positions[i * 2 + 1], 0);
+			List<EntityComponent> components = new ArrayList<>();
+			for (int j = 0; j < componentsPerEntity; j++) {
+				components.add(new IdleComponent(entities[i],
+						COMPONENT_IDS[j]));
+			}
+			componentLists.add(components);
+		}
+		// The last component added is the one a list search finds last.
+		lastId = COMPONENT_IDS[componentsPerEntity - 1];
+	}
+
+	/**
+	 * Finds the last component added to every entity.
+	 * 
+	 * @return The number of components found.
+	 */
+	@Benchmark
+	public int getComponent() {
+		int found = 0;
+		for (int i = 0; i < entities.length; i++) {
+			if (entities[i].getComponent(lastId) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Checks every entity for a component none of them have.
+	 * 
+	 * @return The number of entities with the component.
+	 */
+	@Benchmark
+	public int hasComponentMissing() {
+		int found = 0;
+		for (int i = 0; i < entities.length; i++) {
+			if (entities[i].hasComponent(MISSING_ID)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds the last component added to every entity by searching each
+	 * entity's list of components.
+	 * 
+	 * @return The number of components found.
+	 */
+	@Benchmark
+	public int listScan() {
+		int found = 0;
+		for (int i = 0; i < componentLists.size(); i++) {
+			if (findComponent(componentLists.get(i), lastId) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Searches each entity's list of components for a component none of them
+	 * have.
+	 * 
+	 * @return The number of entities with the component.
+	 */
+	@Benchmark
+	public int listScanMissing() {
+		int found = 0;
+		for (int i = 0; i < componentLists.size(); i++) {
+			if (findComponent(componentLists.get(i), MISSING_ID) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	private static EntityComponent findComponent(
+			List<EntityComponent> components, int id) {
+		for (int i = 0; i < components.size(); i++) {
+			EntityComponent current = components.get(i);
+			if (current.getId() == id) {
+				return current;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,148 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.core.entity.Entity;
+import engine.core.entity.EntityComponent;
+import engine.core.entity.IDPool;
+import engine.space.AABB;
+import engine.space.QuadTree;
+import engine.util.IDAssigner;
+
+/**
+ * Measures updating entities with many components.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntityUpdateBenchmark {
+	private static final double WORLD_SIZE = 256.0;
+	private static final double DELTA = 1.0 / 60.0;
+	private static final int QUADTREE_CAPACITY = 8;
+	private static final int MAX_COMPONENTS = 16;
+	private static final int[] COMPONENT_IDS = new int[MAX_COMPONENTS];
+
+	static {
+		for (int i = 0; i < MAX_COMPONENTS; i++) {
+			COMPONENT_IDS[i] = IDAssigner.getId();
+		}
+	}
+
+	@Param({ "1000", "10000" })
+	public int numEntities;
+	@Param({ "1", "4", "16" })
+	public int componentsPerEntity;
+	// With one type, every call to update goes to the same method, which the
+	// JIT can inline. Games usually mix several.
+	@Param({ "1", "3" })
+	public int numComponentTypes;
+	@Param({ Positions.UNIFORM, Positions.CLUSTERED })
+	public String distribution;
+
+	private Entity[] entities;
+
+	private static class TimerComponent extends EntityComponent {
+		private double time;
+
+		public TimerComponent(Entity entity, int id) {
+			super(entity, id);
+			this.time = 0.0;
+		}
+
+		@Override
+		public void update(double delta) {
+			time += delta;
+		}
+	}
+
+	private static class FollowComponent extends EntityComponent {
+		private final int targetId;
+		private double progress;
+
+		public FollowComponent(Entity entity, int id, int targetId) {
+			super(entity, id);
+			this.targetId = targetId;
+			this.progress = 0.0;
+		}
+
+		@Override
+		public void update(double delta) {
+			if (getEntity().getComponent(targetId) != null) {
+				progress += delta;
+			}
+		}
+	}
+
+	private static class IdleComponent extends EntityComponent {
+		public IdleComponent(Entity entity, int id) {
+			super(entity, id);
+		}
+	}
+
+	@Setup
+	public void setup() {
+		if (componentsPerEntity > MAX_COMPONENTS) {
+			throw new IllegalArgumentException("At most " + MAX_COMPONENTS
+					+ " components can be added to each entity");
+		}
+		QuadTree<Entity> structure = new QuadTree<Entity>(new AABB(0, 0,
+				WORLD_SIZE, WORLD_SIZE), QUADTREE_CAPACITY);
+		IDPool ids = new IDPool();
+		double[] positions = Positions.generate(distribution, numEntities,
+				WORLD_SIZE, 1);
+		entities = new Entity[numEntities];
+		for (int i = 0; i < numEntities; i++) {
+			entities[i] = new Entity(structure, ids, positions[i * 2],
+					positions[i * 2 + 1], 0);
+			for (int j = 0; j < componentsPerEntity; j++) {
+				addComponent(entities[i], j, (i + j) % numComponentTypes);
+			}
+		}
+	}
+
+	/**
+	 * Updates every entity once.
+	 */
+	@Benchmark
+	public void update() {
+		for (int i = 0; i < entities.length; i++) {
+			entities[i].update(DELTA);
+		}
+	}
+
+	private static void addComponent(Entity entity, int index, int type) {
+		int id = COMPONENT_IDS[index];
+		switch (type) {
+		case 0:
+			new TimerComponent(entity, id);
+			break;
+		case 1:
+			new FollowComponent(entity, id, COMPONENT_IDS[0]);
+			break;
+		default:
+			new IdleComponent(entity, id);
+			break;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.parsing.json.JSON;
+import engine.parsing.json.JSONReader;
+import engine.parsing.json.JSONValue;
+
+/**
+ * Measures parsing large JSON files into a tree of values, both all at once
+ * and lazily, and one event at a time, and writing them.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JSONBenchmark {
+	@Param({ "1000", "100000" })
+	public int numEntries;
+
+	private File file;
+	private File output;
+	private JSONValue tree;
+
+	@Setup
+	public void setup() throws IOException, ParseException {
+		// Each entry resembles an entity in a level file, with a mix of
+		// numbers, strings, literals and nested values.
+		file = File.createTempFile("bench", ".json");
+		file.deleteOnExit();
+		BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+		try {
+			writer.write("{\n\t\"entities\": [\n");
+			for (int i = 0; i < numEntries; i++) {
+				writer.write("\t\t{\"id\": " + i + ", \"name\": \"entity "
+						+ i + "\", \"x\": " + (i * 0.25) + ", \"y\": "
+						+ (-i * 1.5e-3) + ", \"solid\": " + (i % 2 == 0)
+						+ ", \"parent\": null, \"tags\": [\"a\", \"b\\n\"]}");
+				writer.write(i == numEntries - 1 ? "\n" : ",\n");
+			}
+			writer.write("\t]\n}\n");
+		} finally {
+			writer.close();
+		}
+		output = File.createTempFile("bench", ".json");
+		output.deleteOnExit();
+		tree = new JSON(file.getPath()).get();
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		output.delete();
+	}
+
+	/**
+	 * Parses the whole file.
+	 * 
+	 * @return The parsed file.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 * @throws ParseException
+	 *             If the file cannot be parsed.
+	 */
+	@Benchmark
+	public JSONValue parse() throws IOException, ParseException {
+		return new JSON(file.getPath()).get();
+	}
+
+	/**
+	 * Loads the whole file lazily, and reads one entry from it.
+	 * 
+	 * @return The entry read.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 * @throws ParseException
+	 *             If the file cannot be parsed.
+	 */
+	@Benchmark
+	public JSONValue parseLazy() throws IOException, ParseException {
+		JSONValue entities = new JSON(file.getPath(), true).get().asObject()
+				.get("entities");
+		return entities.asArray().get(numEntries / 2).asObject().get("name");
+	}
+
+	/**
+	 * Reads every event in the file, and the value of every number, without
+	 * building a tree.
+	 *
+	 * @return The sum of every number in the file.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 * @throws ParseException
+	 *             If the file cannot be parsed.
+	 */
+	@Benchmark
+	public double readEvents() throws IOException, ParseException {
+		double result = 0.0;
+		try (JSONReader reader = JSONReader.open(file.getPath())) {
+			JSONReader.Event event;
+			while ((event = reader.next()) != JSONReader.Event.END_DOCUMENT) {
+				if (event == JSONReader.Event.NUMBER) {
+					result += reader.getDouble();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes a tree of values as large as the file to another file, so it is
+	 * easy to read.
+	 * 
+	 * @return The size of the file written.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	@Benchmark
+	public long write() throws IOException {
+		new JSON(tree).write(output.getPath());
+		return output.length();
+	}
+
+	/**
+	 * Writes a tree of values as large as the file to another file, without
+	 * any whitespace.
+	 * 
+	 * @return The size of the file written.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	@Benchmark
+	public long writeCompact() throws IOException {
+		new JSON(tree).write(output.getPath(), true);
+		return output.length();
+	}
+}
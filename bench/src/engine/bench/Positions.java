@@ -0,0 +1,71 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.Random;
+
+/**
+ * Generates the positions benchmarked objects are placed at.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+final class Positions {
+	/** Positions spread evenly over the whole area. */
+	public static final String UNIFORM = "uniform";
+	/** Positions bunched up in a few small parts of the area. */
+	public static final String CLUSTERED = "clustered";
+
+	private static final int NUM_CLUSTERS = 8;
+	private static final double CLUSTER_SPREAD = 1.0 / 32.0;
+
+	private Positions() {
+	}
+
+	/**
+	 * Generates positions within a square area starting at 0.
+	 * 
+	 * @param distribution
+	 *            How the positions are spread out; either {@link #UNIFORM} or
+	 *            {@link #CLUSTERED}.
+	 * @param count
+	 *            The number of positions to generate.
+	 * @param size
+	 *            The size of the area on each axis.
+	 * @param seed
+	 *            The seed positions are generated from. The same seed always
+	 *            generates the same positions.
+	 * @return The X and Y of each position, stored one after another.
+	 */
+	public static double[] generate(String distribution, int count,
+			double size, long seed) {
+		Random random = new Random(seed);
+		double[] result = new double[count * 2];
+		if (distribution.equals(UNIFORM)) {
+			for (int i = 0; i < result.length; i++) {
+				result[i] = random.nextDouble() * size;
+			}
+		} else if (distribution.equals(CLUSTERED)) {
+			double[] centers = new double[NUM_CLUSTERS * 2];
+			for (int i = 0; i < centers.length; i++) {
+				centers[i] = random.nextDouble() * size;
+			}
+			for (int i = 0; i < result.length; i += 2) {
+				int cluster = random.nextInt(NUM_CLUSTERS) * 2;
+				result[i] = clamp(centers[cluster] + random.nextGaussian()
+						* size * CLUSTER_SPREAD, size);
+				result[i + 1] = clamp(centers[cluster + 1]
+						+ random.nextGaussian() * size * CLUSTER_SPREAD, size);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown distribution: "
+					+ distribution);
+		}
+		return result;
+	}
+
+	private static double clamp(double value, double size) {
+		return Math.max(0.0, Math.min(value, Math.nextAfter(size, 0.0)));
+	}
+}
@@ -0,0 +1,133 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.rendering.ArrayBitmap;
+import engine.rendering.Color;
+import engine.rendering.IRenderDevice;
+import engine.rendering.RenderContext;
+import engine.rendering.RenderTarget;
+import engine.rendering.SpriteSheet;
+import engine.rendering.Texture;
+import engine.rendering.software.SoftwareRenderDevice;
+
+/**
+ * Measures filling and copying bitmaps, and drawing sprites, with the
+ * software renderer.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderingBenchmark {
+	private static final int FRAME_WIDTH = 640;
+	private static final int FRAME_HEIGHT = 480;
+	private static final int NUM_SPRITES = 256;
+	private static final double SPRITE_SIZE = 0.1;
+	private static final int FILL_COLOR = 0xFF336699;
+
+	@Param({ "64", "512" })
+	public int bitmapSize;
+	@Param({ Positions.UNIFORM, Positions.CLUSTERED })
+	public String distribution;
+
+	private SoftwareRenderDevice device;
+	private RenderContext context;
+	private ArrayBitmap bitmap;
+	private Texture texture;
+	private SpriteSheet sheet;
+	private double[] positions;
+
+	@Setup
+	public void setup() {
+		device = new SoftwareRenderDevice(FRAME_WIDTH, FRAME_HEIGHT);
+		context = new RenderContext(device, new RenderTarget(device,
+				FRAME_WIDTH, FRAME_HEIGHT, 0, 0));
+
+		// Sprites are partially transparent, so drawing them has to blend.
+		Random random = new Random(1);
+		bitmap = new ArrayBitmap(bitmapSize, bitmapSize);
+		for (int y = 0; y < bitmapSize; y++) {
+			for (int x = 0; x < bitmapSize; x++) {
+				bitmap.set(x, y, random.nextInt());
+			}
+		}
+		texture = new Texture(device, bitmap, IRenderDevice.FILTER_NEAREST);
+		sheet = new SpriteSheet(texture, 1, 1, 0);
+
+		// Sprites are drawn within the screen, which spans from -1 to 1.
+		positions = Positions.generate(distribution, NUM_SPRITES,
+				2.0 - SPRITE_SIZE, 2);
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] -= 1.0;
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		texture.dispose();
+		device.dispose();
+	}
+
+	/**
+	 * Fills a whole bitmap with one color.
+	 */
+	@Benchmark
+	public void fill() {
+		bitmap.clear(FILL_COLOR);
+	}
+
+	/**
+	 * Copies a whole bitmap into a texture.
+	 */
+	@Benchmark
+	public void blit() {
+		texture.setPixels(0, 0, bitmap);
+	}
+
+	/**
+	 * Copies a whole texture into a new bitmap.
+	 * 
+	 * @return The copied pixels.
+	 */
+	@Benchmark
+	public ArrayBitmap readBack() {
+		return texture.getPixels();
+	}
+
+	/**
+	 * Clears the screen and draws sprites over it.
+	 */
+	@Benchmark
+	public void drawSprites() {
+		context.clear(Color.BLACK);
+		for (int i = 0; i < positions.length; i += 2) {
+			context.drawSprite(sheet, 0, positions[i], positions[i + 1],
+					positions[i] + SPRITE_SIZE, positions[i + 1]
+							+ SPRITE_SIZE, 1.0, false, false, Color.WHITE);
+		}
+		device.flush();
+	}
+}
@@ -0,0 +1,217 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import engine.space.AABB;
+import engine.space.AABBTree;
+import engine.space.Grid;
+import engine.space.ISpatialObject;
+import engine.space.ISpatialStructure;
+import engine.space.ISpatialVisitor;
+import engine.space.LooseQuadTree;
+import engine.space.QuadTree;
+import engine.space.SpatialHash;
+
+/**
+ * Measures adding, removing, moving and searching for objects in spatial
+ * structures.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpatialBenchmark {
+	private static final double OBJECT_SIZE = 1.0;
+	private static final double RANGE_SIZE = 16.0;
+	private static final int QUADTREE_CAPACITY = 8;
+	private static final int GRID_TILE_SIZE = 8;
+	// Grids wrap around after this many tiles on each axis, so in larger
+	// worlds, distant objects share tiles.
+	private static final int MAX_GRID_TILES = 256;
+	private static final double HASH_CELL_SIZE = 8.0;
+	private static final double AABB_TREE_MARGIN = 0.25;
+	// Most objects move slowly or not at all, and only a few move at close
+	// to the maximum speed, measured in space per update.
+	private static final double MAX_SPEED = 0.5;
+	private static final double SPEED_EXPONENT = 3.0;
+	private static final int NUM_RANGES = 1024;
+
+	@Param({ "QuadTree", "Grid", "SpatialHash", "AABBTree", "LooseQuadTree" })
+	public String structureType;
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int numObjects;
+	@Param({ Positions.UNIFORM, Positions.CLUSTERED })
+	public String distribution;
+	// The larger world is mostly empty space, as in a game with a huge map.
+	@Param({ "256", "65536" })
+	public double worldSize;
+
+	private ISpatialStructure<Box> structure;
+	private Box[] boxes;
+	private AABB[] ranges;
+	private Set<Box> result;
+	private ISpatialVisitor<Box> visitor;
+	private int nextBox;
+	private int nextRange;
+
+	private static class Box implements ISpatialObject {
+		private AABB aabb;
+		private double velX;
+		private double velY;
+
+		public Box(double x, double y, double velX, double velY) {
+			this.aabb = new AABB(x, y, x + OBJECT_SIZE, y + OBJECT_SIZE);
+			this.velX = velX;
+			this.velY = velY;
+		}
+
+		public void move(double worldSize) {
+			double x = aabb.getMinX() + velX;
+			double y = aabb.getMinY() + velY;
+			// Objects bounce off the edges of the world, so they stay spread
+			// out the same way.
+			if (x < 0 || x > worldSize - OBJECT_SIZE) {
+				velX = -velX;
+				x = aabb.getMinX() + velX;
+			}
+			if (y < 0 || y > worldSize - OBJECT_SIZE) {
+				velY = -velY;
+				y = aabb.getMinY() + velY;
+			}
+			aabb = new AABB(x, y, x + OBJECT_SIZE, y + OBJECT_SIZE);
+		}
+
+		@Override
+		public AABB getAABB() {
+			return aabb;
+		}
+	}
+
+	@Setup
+	public void setup(final Blackhole blackhole) {
+		if (structureType.equals("QuadTree")) {
+			structure = new QuadTree<Box>(new AABB(0, 0, worldSize,
+					worldSize), QUADTREE_CAPACITY);
+		} else if (structureType.equals("Grid")) {
+			int numTiles = (int) Math.min(worldSize / GRID_TILE_SIZE,
+					MAX_GRID_TILES);
+			structure = new Grid<Box>(GRID_TILE_SIZE, numTiles, numTiles);
+		} else if (structureType.equals("SpatialHash")) {
+			structure = new SpatialHash<Box>(HASH_CELL_SIZE);
+		} else if (structureType.equals("AABBTree")) {
+			structure = new AABBTree<Box>(AABB_TREE_MARGIN);
+		} else if (structureType.equals("LooseQuadTree")) {
+			// The smallest nodes are about the size of an object.
+			int maxDepth = (int) Math.floor(Math.log(worldSize / OBJECT_SIZE)
+					/ Math.log(2.0));
+			structure = new LooseQuadTree<Box>(new AABB(0, 0, worldSize,
+					worldSize), maxDepth);
+		} else {
+			throw new IllegalArgumentException("Unknown structure: "
+					+ structureType);
+		}
+
+		double[] positions = Positions.generate(distribution, numObjects,
+				worldSize - OBJECT_SIZE, 1);
+		Random random = new Random(3);
+		boxes = new Box[numObjects];
+		for (int i = 0; i < numObjects; i++) {
+			double speed = MAX_SPEED
+					* Math.pow(random.nextDouble(), SPEED_EXPONENT);
+			double direction = random.nextDouble() * Math.PI * 2.0;
+			boxes[i] = new Box(positions[i * 2], positions[i * 2 + 1], speed
+					* Math.cos(direction), speed * Math.sin(direction));
+			structure.add(boxes[i]);
+		}
+
+		// Searches are spread evenly, so clustered objects are often missed
+		// entirely, as they would be by most of a game's searches.
+		random = new Random(2);
+		ranges = new AABB[NUM_RANGES];
+		for (int i = 0; i < NUM_RANGES; i++) {
+			double x = random.nextDouble() * (worldSize - RANGE_SIZE);
+			double y = random.nextDouble() * (worldSize - RANGE_SIZE);
+			ranges[i] = new AABB(x, y, x + RANGE_SIZE, y + RANGE_SIZE);
+		}
+		result = new HashSet<>();
+		visitor = new ISpatialVisitor<Box>() {
+			@Override
+			public void visit(Box box) {
+				blackhole.consume(box);
+			}
+		};
+		nextBox = 0;
+		nextRange = 0;
+	}
+
+	/**
+	 * Removes an object and adds it back, leaving the structure as it was.
+	 */
+	@Benchmark
+	public void removeAndAdd() {
+		Box box = boxes[nextBox];
+		nextBox = (nextBox + 1) % boxes.length;
+		structure.remove(box);
+		structure.add(box);
+	}
+
+	/**
+	 * Moves an object by its velocity, and updates where it is stored.
+	 */
+	@Benchmark
+	public void move() {
+		Box box = boxes[nextBox];
+		nextBox = (nextBox + 1) % boxes.length;
+		AABB oldBounds = box.getAABB();
+		box.move(worldSize);
+		structure.update(box, oldBounds);
+	}
+
+	/**
+	 * Finds every object in a range, collecting them into a set.
+	 * 
+	 * @return The number of objects found.
+	 */
+	@Benchmark
+	public int queryRange() {
+		AABB range = ranges[nextRange];
+		nextRange = (nextRange + 1) % NUM_RANGES;
+		result.clear();
+		structure.queryRange(result, range);
+		return result.size();
+	}
+
+	/**
+	 * Visits every object in a range, without collecting them.
+	 */
+	@Benchmark
+	public void visitRange() {
+		AABB range = ranges[nextRange];
+		nextRange = (nextRange + 1) % NUM_RANGES;
+		structure.visitRange(range, visitor);
+	}
+}
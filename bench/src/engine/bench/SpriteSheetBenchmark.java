@@ -0,0 +1,87 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import engine.rendering.ArrayBitmap;
+import engine.rendering.IRenderDevice;
+import engine.rendering.SpriteSheet;
+import engine.rendering.Texture;
+import engine.rendering.software.SoftwareRenderDevice;
+
+/**
+ * Measures creating sprite sheets, which finds the bounds of every sprite in
+ * them.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpriteSheetBenchmark {
+	@Param({ "256", "1024" })
+	public int sheetSize;
+	@Param({ "1", "16" })
+	public int spritesPerSide;
+
+	private SoftwareRenderDevice device;
+	private Texture texture;
+
+	@Setup
+	public void setup() {
+		device = new SoftwareRenderDevice(1, 1);
+		// Each sprite is an opaque circle on a transparent background, so
+		// bounds do not simply cover the whole sprite.
+		Random random = new Random(1);
+		ArrayBitmap image = new ArrayBitmap(sheetSize, sheetSize);
+		int spriteSize = sheetSize / spritesPerSide;
+		double radius = spriteSize / 2.0;
+		for (int y = 0; y < sheetSize; y++) {
+			for (int x = 0; x < sheetSize; x++) {
+				double distanceX = x % spriteSize + 0.5 - radius;
+				double distanceY = y % spriteSize + 0.5 - radius;
+				boolean isInside = distanceX * distanceX + distanceY
+						* distanceY < radius * radius;
+				int color = random.nextInt() & 0x00FFFFFF;
+				image.set(x, y, isInside ? color | 0xFF000000 : color);
+			}
+		}
+		texture = new Texture(device, image, IRenderDevice.FILTER_NEAREST);
+	}
+
+	@TearDown
+	public void tearDown() {
+		texture.dispose();
+		device.dispose();
+	}
+
+	/**
+	 * Creates a sprite sheet from the whole texture.
+	 * 
+	 * @return The new sprite sheet.
+	 */
+	@Benchmark
+	public SpriteSheet construct() {
+		return new SpriteSheet(texture, spritesPerSide, spritesPerSide, 0);
+	}
+}
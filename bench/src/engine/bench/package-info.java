@@ -0,0 +1,5 @@
+/**
+ * Benchmarks of the engine's most performance critical code, run with JMH.
+ * None of them need a display or native libraries.
+ */
+package engine.bench;
@@ -4,8 +4,10 @@ import java.io.IOException;
 import java.text.ParseException;
 
 import engine.audio.IAudioDevice;
+import engine.components.AnimationSystem;
 import engine.components.ColliderComponent;
 import engine.components.CollisionComponent;
+import engine.components.CollisionSystem;
 import engine.components.LightComponent;
 import engine.components.SpriteComponent;
 import engine.core.CoreEngine;
@@ -26,6 +28,7 @@ import engine.rendering.IRenderContext;
 import engine.rendering.IRenderDevice;
 import engine.rendering.LightMap;
 import engine.rendering.SpriteSheet;
+import engine.rendering.TextureAtlas;
 import engine.rendering.opengl.OpenGLDisplay;
 import engine.space.AABB;
 import engine.space.QuadTree;
@@ -35,8 +38,13 @@ import engine.util.factory.TextureFactory;
 
 public class Main {
 	private static class TestScene extends Scene {
+		private static final AABB UPDATE_RANGE = new AABB(-2, -2, 2, 2);
+		private static final Color AMBIENT_LIGHT = new Color(0.1);
+
 		SpriteSheet font;
 		Entity e2;
+		CollisionSystem collisions;
+		AnimationSystem animations;
 
 		IAxis movementX;
 		IAxis movementY;
@@ -45,24 +53,29 @@ public class Main {
 				IAudioDevice audioDevice) throws IOException {
 			super(new QuadTree<Entity>(new AABB(-1, -1, 1, 1), 8));
 			SpriteSheetFactory sprites = new SpriteSheetFactory(
-					new TextureFactory(device, "./res/"));
+					new TextureFactory(device, "./res/", new TextureAtlas(
+							device, 2048, 2048, IRenderDevice.FILTER_LINEAR)));
 
 			font = sprites.get("monospace.png", 16, 16, 1,
 					IRenderDevice.FILTER_LINEAR);
+			collisions = new CollisionSystem(0.1);
+			animations = new AnimationSystem();
 
-			Entity e = new Entity(getStructure(), 0, 0, 0);
+			Entity e = new Entity(getStructure(), getEntityIDs(), 0, 0, 0);
 			new ColliderComponent(e);
-			new CollisionComponent(e);
+			new CollisionComponent(e).attachTo(collisions);
 			new SpriteComponent(e, 1.0, 1.0, sprites.get("bricks.jpg", 1, 1, 0,
-					IRenderDevice.FILTER_LINEAR), 0, Color.WHITE);
+					IRenderDevice.FILTER_LINEAR), 0, Color.WHITE)
+					.attachTo(animations);
 			LightMap light = new LightMap(device, 32, Color.WHITE);
 			new LightComponent(e, light, 2.0, 2.0, 0.0, 0.0);
 
-			e2 = new Entity(getStructure(), -1.0, 0, 0);
+			e2 = new Entity(getStructure(), getEntityIDs(), -1.0, 0, 0);
 			new ColliderComponent(e2);
-			new CollisionComponent(e2);
+			new CollisionComponent(e2).attachTo(collisions);
 			new SpriteComponent(e2, 0.5, 0.5, sprites.get("bricks.jpg", 1, 1,
-					0, IRenderDevice.FILTER_LINEAR), 0, Color.WHITE);
+					0, IRenderDevice.FILTER_LINEAR), 0, Color.WHITE)
+					.attachTo(animations);
 			new LightComponent(e2, light, 1.0, 1.0, 0.0, 0.0);
 
 			IButton leftKeyButtons = new KeyButton(input, new int[] {
@@ -99,17 +112,19 @@ public class Main {
 
 		@Override
 		public boolean update(double delta) {
-			super.updateRange(delta, new AABB(-2, -2, 2, 2));
+			collisions.update();
+			animations.update(delta);
+			super.updateRange(delta, UPDATE_RANGE);
 			double speed = delta;
-			e2.move((float) (movementX.getAmount() * speed), 0);
-			e2.move(0, (float) (-movementY.getAmount() * speed));
+			e2.moveSwept(movementX.getAmount() * speed,
+					-movementY.getAmount() * speed);
 			return false;
 		}
 
 		@Override
 		public void render(IRenderContext target) {
 			target.clear(Color.BLACK);
-			target.clearLighting(new Color(0.1));
+			target.clearLighting(AMBIENT_LIGHT);
 			super.renderRange(target, 0, 0);
 			target.applyLighting();
 
@@ -4,12 +4,17 @@
  */
 package engine.audio;
 
+import engine.util.profiling.ProfileTimer;
+import engine.util.profiling.Profiler;
+
 /**
  * Represents a playable sound.
  * 
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class Sound {
+	private static final ProfileTimer TIMER = Profiler.getTimer("audio");
+
 	private IAudioDevice device;
 	private int soundId;
 	private double defaultVolume;
@@ -70,7 +75,9 @@ public class Sound {
 	 * true.
 	 */
 	public void play() {
+		TIMER.start();
 		device.play(soundId);
+		TIMER.stop();
 	}
 
 	/**
@@ -78,7 +85,9 @@ public class Sound {
 	 * is played again, it should start where it left off.
 	 */
 	public void pause() {
+		TIMER.start();
 		device.pause(soundId);
+		TIMER.stop();
 	}
 
 	/**
@@ -86,7 +95,9 @@ public class Sound {
 	 * audio. When the object is played again, it should start at the beginning.
 	 */
 	public void stop() {
+		TIMER.start();
 		device.stop(soundId);
+		TIMER.stop();
 	}
 
 	/**
@@ -108,6 +119,8 @@ public class Sound {
 	 */
 	public void setVolume(double amt) {
 		volume = amt;
+		TIMER.start();
 		device.updateAudioObject(soundId, volume, pitch, shouldLoop);
+		TIMER.stop();
 	}
 }
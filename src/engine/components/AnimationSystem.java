@@ -0,0 +1,245 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.components;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Updates the animations of many sprites at once.
+ * <p/>
+ * Rather than each {@link SpriteComponent} updating its own animation, the
+ * state of every attached animation is stored in a set of arrays, one per
+ * field, and updated in a single loop. This keeps the data being updated
+ * close together in memory, and avoids calling a method on every component.
+ * The frame times and next frames of every animation are stored together in
+ * two shared arrays, and animations with the same frames share one copy.
+ * <p/>
+ * Sprites are attached with {@link SpriteComponent#attachTo(AnimationSystem)}.
+ * Once attached, a sprite's animation is only updated by this system, and is
+ * updated every time {@link #update(double)} is called, whether or not its
+ * entity is in range to be updated.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class AnimationSystem {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int DEFAULT_FRAME_CAPACITY = 64;
+
+	/**
+	 * The frames of an animation, stored in the shared frame arrays starting
+	 * at offset.
+	 */
+	private static class FrameTable {
+		private final double[] frameTimes;
+		private final int[] nextFrames;
+		private final int hash;
+		private int offset;
+		private int users;
+
+		public FrameTable(double[] frameTimes, int[] nextFrames) {
+			this.frameTimes = frameTimes;
+			this.nextFrames = nextFrames;
+			this.hash = Arrays.hashCode(frameTimes) * 31
+					+ Arrays.hashCode(nextFrames);
+			this.offset = -1;
+			this.users = 0;
+		}
+
+		public int getLength() {
+			return frameTimes.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FrameTable)) {
+				return false;
+			}
+			FrameTable other = (FrameTable) obj;
+			return Arrays.equals(frameTimes, other.frameTimes)
+					&& Arrays.equals(nextFrames, other.nextFrames);
+		}
+	}
+
+	private Map<FrameTable, FrameTable> tables;
+	private SpriteComponent[] owners;
+	private FrameTable[] ownerTables;
+	// The offset of each animation's frames in the shared frame arrays.
+	private int[] frameOffsets;
+	// Frames are stored as indices into the shared frame arrays, so they can
+	// be followed without adding the offset of each animation.
+	private int[] currentFrames;
+	private double[] currentFrameTimes;
+	private double[] frameTimes;
+	private int[] nextFrames;
+	private int size;
+	private int numFrames;
+	private int numUnusedFrames;
+
+	/**
+	 * Creates a new AnimationSystem with no attached animations.
+	 */
+	public AnimationSystem() {
+		this.tables = new HashMap<>();
+		this.owners = new SpriteComponent[DEFAULT_CAPACITY];
+		this.ownerTables = new FrameTable[DEFAULT_CAPACITY];
+		this.frameOffsets = new int[DEFAULT_CAPACITY];
+		this.currentFrames = new int[DEFAULT_CAPACITY];
+		this.currentFrameTimes = new double[DEFAULT_CAPACITY];
+		this.frameTimes = new double[DEFAULT_FRAME_CAPACITY];
+		this.nextFrames = new int[DEFAULT_FRAME_CAPACITY];
+		this.size = 0;
+		this.numFrames = 0;
+		this.numUnusedFrames = 0;
+	}
+
+	/**
+	 * Gets the number of animations attached to this system.
+	 * 
+	 * @return The number of animations attached to this system.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Updates every animation attached to this system.
+	 * 
+	 * @param delta
+	 *            How much time has passed since the last update.
+	 */
+	public void update(double delta) {
+		for (int i = 0; i < size; i++) {
+			int frame = currentFrames[i];
+			double time = currentFrameTimes[i] + delta;
+			while (frameTimes[frame] != 0 && time > frameTimes[frame]) {
+				time -= frameTimes[frame];
+				frame = nextFrames[frame];
+			}
+			currentFrames[i] = frame;
+			currentFrameTimes[i] = time;
+		}
+	}
+
+	int add(SpriteComponent owner, double[] frameTimes, int[] nextFrames,
+			int currentFrame, double currentFrameTime) {
+		if (size == owners.length) {
+			grow();
+		}
+		FrameTable table = addTable(frameTimes, nextFrames);
+		int slot = size++;
+		this.owners[slot] = owner;
+		this.ownerTables[slot] = table;
+		this.frameOffsets[slot] = table.offset;
+		this.currentFrames[slot] = table.offset + currentFrame;
+		this.currentFrameTimes[slot] = currentFrameTime;
+		return slot;
+	}
+
+	void remove(int slot) {
+		removeTable(ownerTables[slot]);
+		// The last animation is moved into the removed slot, so the attached
+		// animations are always stored contiguously.
+		int last = --size;
+		if (slot != last) {
+			owners[slot] = owners[last];
+			ownerTables[slot] = ownerTables[last];
+			frameOffsets[slot] = frameOffsets[last];
+			currentFrames[slot] = currentFrames[last];
+			currentFrameTimes[slot] = currentFrameTimes[last];
+			owners[slot].setAnimationSlot(slot);
+		}
+		owners[last] = null;
+		ownerTables[last] = null;
+		if (numUnusedFrames > numFrames / 2) {
+			compact();
+		}
+	}
+
+	int getFrame(int slot) {
+		return currentFrames[slot] - frameOffsets[slot];
+	}
+
+	double getFrameTime(int slot) {
+		return currentFrameTimes[slot];
+	}
+
+	void setFrame(int slot, int frame) {
+		currentFrames[slot] = frameOffsets[slot] + frame;
+		currentFrameTimes[slot] = 0.0;
+	}
+
+	private FrameTable addTable(double[] times, int[] next) {
+		FrameTable table = new FrameTable(times, next);
+		FrameTable existing = tables.get(table);
+		if (existing != null) {
+			existing.users++;
+			return existing;
+		}
+		int length = table.getLength();
+		if (numFrames + length > frameTimes.length) {
+			int capacity = Math.max(frameTimes.length * 2, numFrames + length);
+			frameTimes = Arrays.copyOf(frameTimes, capacity);
+			nextFrames = Arrays.copyOf(nextFrames, capacity);
+		}
+		copyFrames(table, numFrames);
+		numFrames += length;
+		table.users = 1;
+		tables.put(table, table);
+		return table;
+	}
+
+	private void removeTable(FrameTable table) {
+		table.users--;
+		if (table.users == 0) {
+			// The frames are left in place until there are enough unused
+			// frames to be worth moving the rest.
+			tables.remove(table);
+			numUnusedFrames += table.getLength();
+		}
+	}
+
+	private void copyFrames(FrameTable table, int offset) {
+		for (int i = 0; i < table.getLength(); i++) {
+			frameTimes[offset + i] = table.frameTimes[i];
+			nextFrames[offset + i] = offset + table.nextFrames[i];
+		}
+		table.offset = offset;
+	}
+
+	private void compact() {
+		int[] moves = new int[size];
+		for (int i = 0; i < size; i++) {
+			moves[i] = -ownerTables[i].offset;
+		}
+		int offset = 0;
+		for (FrameTable table : tables.values()) {
+			copyFrames(table, offset);
+			offset += table.getLength();
+		}
+		for (int i = 0; i < size; i++) {
+			int move = moves[i] + ownerTables[i].offset;
+			frameOffsets[i] += move;
+			currentFrames[i] += move;
+		}
+		numFrames = offset;
+		numUnusedFrames = 0;
+	}
+
+	private void grow() {
+		int capacity = owners.length * 2;
+		owners = Arrays.copyOf(owners, capacity);
+		ownerTables = Arrays.copyOf(ownerTables, capacity);
+		frameOffsets = Arrays.copyOf(frameOffsets, capacity);
+		currentFrames = Arrays.copyOf(currentFrames, capacity);
+		currentFrameTimes = Arrays.copyOf(currentFrameTimes, capacity);
+	}
+}
@@ -20,6 +20,9 @@ import engine.util.IDAssigner;
 public class ColliderComponent extends EntityComponent {
 	public static final int ID = IDAssigner.getId();
 	private AABB aabb;
+	private AABB translatedAABB;
+	private double translatedX;
+	private double translatedY;
 
 	/**
 	 * Creates a new ColliderComponent
@@ -30,6 +33,8 @@ public class ColliderComponent extends EntityComponent {
 	public ColliderComponent(Entity entity) {
 		super(entity, ID);
 		this.aabb = null;
+		this.translatedAABB = null;
+		onChanged();
 	}
 
 	/**
@@ -45,7 +50,9 @@ public class ColliderComponent extends EntityComponent {
 		} else {
 			aabb = aabb.combine(other);
 		}
+		translatedAABB = null;
 		getEntity().fitAABB(aabb);
+		onChanged();
 	}
 
 	/**
@@ -53,7 +60,24 @@ public class ColliderComponent extends EntityComponent {
 	 * @return An AABB representing the collision range.
 	 */
 	public AABB getAABB() {
-		return getEntity().translateAABB(aabb);
+		Entity entity = getEntity();
+		if (translatedAABB == null || translatedX != entity.getX()
+				|| translatedY != entity.getY()) {
+			translatedAABB = entity.translateAABB(aabb);
+			translatedX = entity.getX();
+			translatedY = entity.getY();
+		}
+		return translatedAABB;
+	}
+
+	private void onChanged() {
+		// Any collision system this entity belongs to found its pairs with the
+		// old collider, so those pairs are no longer correct.
+		CollisionComponent c = (CollisionComponent) getEntity().getComponent(
+				CollisionComponent.ID);
+		if (c != null) {
+			c.onColliderChanged();
+		}
 	}
 
 }
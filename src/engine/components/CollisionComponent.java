@@ -4,6 +4,10 @@
  */
 package engine.components;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import engine.core.entity.CommandBuffer;
 import engine.core.entity.Entity;
 import engine.core.entity.EntityComponent;
 import engine.core.entity.IEntityVisitor;
@@ -21,6 +25,18 @@ import engine.util.IDAssigner;
  */
 public class CollisionComponent extends EntityComponent {
 	public static final int ID = IDAssigner.getId();
+	// Moving into contact can leave colliders overlapping by a rounding error,
+	// so overlaps smaller than this are treated as touching.
+	private static final double CONTACT_TOLERANCE = 1e-9;
+
+	private CollisionSystem system;
+	private CollisionSystem pendingSystem;
+	private int slot;
+	private final List<AABB> candidates;
+	private final IEntityVisitor candidateVisitor;
+	private double sweepTime;
+	private boolean sweepHitX;
+	private boolean sweepHitY;
 
 	/**
 	 * Creates a new CollisionComponent
@@ -30,6 +46,58 @@ public class CollisionComponent extends EntityComponent {
 	 */
 	public CollisionComponent(Entity entity) {
 		super(entity, ID);
+		this.system = null;
+		this.pendingSystem = null;
+		this.slot = -1;
+		this.candidates = new ArrayList<>();
+		this.candidateVisitor = new IEntityVisitor() {
+			@Override
+			public void visit(Entity entity, EntityComponent component) {
+				CollisionComponent other = (CollisionComponent) component;
+				if (system == null || other.system == system) {
+					addCandidate(entity);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Moves this component into a collision system, so the entities it can
+	 * collide with are found once per update by the system rather than every
+	 * time this entity moves. Once attached, this component only collides with
+	 * other components attached to the same system. The component is removed
+	 * from the system when it is removed from its entity.
+	 * <p/>
+	 * If a {@link CommandBuffer} is active, the component is attached when the
+	 * buffer is applied, since systems are shared between entities.
+	 * 
+	 * @param newSystem
+	 *            The system that will find collisions for this component, or
+	 *            null to have this component search for collisions itself
+	 *            again.
+	 */
+	public void attachTo(CollisionSystem newSystem) {
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			pendingSystem = newSystem;
+			buffer.attach(this);
+			return;
+		}
+		detach();
+		if (newSystem != null) {
+			slot = newSystem.add(this);
+			system = newSystem;
+		}
+	}
+
+	@Override
+	public void onRemove() {
+		detach();
+	}
+
+	@Override
+	protected void applyAttach() {
+		attachTo(pendingSystem);
 	}
 
 	/**
@@ -40,36 +108,201 @@ public class CollisionComponent extends EntityComponent {
 	 * @return New amtX and amtY that will not cause collisions after movement.
 	 */
 	public DoublePair resolveCollisions(double amtX, double amtY) {
-		final DoublePair amts = new DoublePair(amtX, amtY);
+		DoublePair amts = new DoublePair(amtX, amtY);
 		ColliderComponent c = (ColliderComponent) getEntity().getComponent(
 				ColliderComponent.ID);
 		if (c == null) {
 			return amts;
 		}
-		final AABB collider = c.getAABB();
-		final AABB collisionRange = collider.stretch(amtX, amtY);
-		getEntity().visitInRange(CollisionComponent.ID, collisionRange,
-				new IEntityVisitor() {
-					@Override
-					public void visit(Entity entity, EntityComponent component) {
-						if (entity == getEntity()) {
-							return;
-						}
-						ColliderComponent c2 = (ColliderComponent) entity
-								.getComponent(ColliderComponent.ID);
-						if (c2 == null) {
-							return;
-						}
-						AABB collider2 = c2.getAABB();
-
-						if (collider2.intersects(collisionRange)) {
-							amts.setVal1(collider.resolveCollisionX(collider2,
-									amts.getVal1()));
-							amts.setVal2(collider.resolveCollisionY(collider2,
-									amts.getVal2()));
-						}
-					}
-				});
+		AABB collider = c.getAABB();
+		AABB collisionRange = collider.stretch(amtX, amtY);
+		gatherCandidates(collisionRange);
+		for (int i = 0; i < candidates.size(); i++) {
+			AABB collider2 = candidates.get(i);
+			if (collider2.intersects(collisionRange)) {
+				amts.setVal1(collider.resolveCollisionX(collider2,
+						amts.getVal1()));
+				amts.setVal2(collider.resolveCollisionY(collider2,
+						amts.getVal2()));
+			}
+		}
+		candidates.clear();
+		if (system != null
+				&& !system.contains(slot, collider, amts.getVal1(),
+						amts.getVal2())) {
+			system.invalidate();
+		}
+		return amts;
+	}
+
+	/**
+	 * Resolves collisions with any other CollisionComponents encountered while
+	 * moving on both axes at once. The movement stops at the first collider
+	 * hit along the way, and whatever is left of it continues along the
+	 * surface that was hit. Colliders that already overlap this one are
+	 * ignored, so overlapping entities can move apart.
+	 * 
+	 * @param amtX
+	 *            The amount attempting to be moved on X.
+	 * @param amtY
+	 *            The amount attempting to be moved on Y.
+	 * @return New amtX and amtY that will not cause collisions after movement,
+	 *         or during it.
+	 */
+	public DoublePair resolveSweptCollisions(double amtX, double amtY) {
+		DoublePair amts = new DoublePair(amtX, amtY);
+		ColliderComponent c = (ColliderComponent) getEntity().getComponent(
+				ColliderComponent.ID);
+		if (c == null || (amtX == 0.0 && amtY == 0.0)) {
+			return amts;
+		}
+		AABB collider = c.getAABB();
+		gatherCandidates(collider.stretch(amtX, amtY));
+
+		sweep(collider, amtX, amtY);
+		double movedX = amtX * sweepTime;
+		double movedY = amtY * sweepTime;
+		if (sweepTime < 1.0) {
+			// Movement into the surface that was hit is dropped, and the rest
+			// slides along it. The slide stays within the range the
+			// candidates were gathered from, so they are reused.
+			double slideX = sweepHitX ? 0.0 : amtX - movedX;
+			double slideY = sweepHitY ? 0.0 : amtY - movedY;
+			if (slideX != 0.0 || slideY != 0.0) {
+				sweep(collider.move(movedX, movedY), slideX, slideY);
+				movedX += slideX * sweepTime;
+				movedY += slideY * sweepTime;
+			}
+		}
+		candidates.clear();
+
+		amts.setVal1(movedX);
+		amts.setVal2(movedY);
+		if (system != null
+				&& !system.contains(slot, collider, movedX, movedY)) {
+			system.invalidate();
+		}
 		return amts;
 	}
+
+	void onColliderChanged() {
+		if (system != null) {
+			system.invalidate();
+		}
+	}
+
+	void setCollisionSlot(int slot) {
+		this.slot = slot;
+	}
+
+	private void detach() {
+		if (system == null) {
+			return;
+		}
+		system.remove(slot);
+		system = null;
+		slot = -1;
+	}
+
+	private void gatherCandidates(AABB range) {
+		candidates.clear();
+		if (system != null && system.contains(slot, range, 0, 0)) {
+			// Anything in range was paired with this component when the
+			// system was last updated.
+			int end = system.getPartnersEnd(slot);
+			for (int i = system.getPartnersStart(slot); i < end; i++) {
+				addCandidate(system.getPartner(i).getEntity());
+			}
+		} else {
+			getEntity().visitInRange(CollisionComponent.ID, range,
+					candidateVisitor);
+		}
+	}
+
+	private void addCandidate(Entity entity) {
+		// Removed entities, such as ones fading out, are skipped when
+		// searching the spatial structure, so partners found by the system
+		// that have been removed are skipped too.
+		if (entity == getEntity() || entity.getRemoved()) {
+			return;
+		}
+		ColliderComponent c2 = (ColliderComponent) entity
+				.getComponent(ColliderComponent.ID);
+		if (c2 != null) {
+			candidates.add(c2.getAABB());
+		}
+	}
+
+	private void sweep(AABB collider, double amtX, double amtY) {
+		// Finds the earliest time, as a fraction of the movement, that the
+		// collider touches a candidate, and which axes it touches it on.
+		sweepTime = 1.0;
+		sweepHitX = false;
+		sweepHitY = false;
+		for (int i = 0; i < candidates.size(); i++) {
+			AABB other = candidates.get(i);
+			double entryX = getEntryTime(collider.getMinX(),
+					collider.getMaxX(), other.getMinX(), other.getMaxX(), amtX);
+			double entryY = getEntryTime(collider.getMinY(),
+					collider.getMaxY(), other.getMinY(), other.getMaxY(), amtY);
+			double entry = Math.max(entryX, entryY);
+			if (entry < 0.0 || entry >= 1.0 || entry > sweepTime) {
+				continue;
+			}
+			double exit = Math.min(
+					getExitTime(collider.getMinX(), collider.getMaxX(),
+							other.getMinX(), other.getMaxX(), amtX),
+					getExitTime(collider.getMinY(), collider.getMaxY(),
+							other.getMinY(), other.getMaxY(), amtY));
+			if (entry >= exit) {
+				continue;
+			}
+			if (entry < sweepTime) {
+				sweepTime = entry;
+				sweepHitX = false;
+				sweepHitY = false;
+			}
+			// The axis that starts overlapping last is the one that was hit.
+			// If both start at once, a corner was hit, and both are blocked.
+			sweepHitX |= entryX >= entryY;
+			sweepHitY |= entryY >= entryX;
+		}
+	}
+
+	private static double getEntryTime(double min, double max,
+			double otherMin, double otherMax, double amt) {
+		double gap;
+		if (amt > 0.0) {
+			gap = otherMin - max;
+		} else if (amt < 0.0) {
+			gap = min - otherMax;
+		} else if (isOverlapping(min, max, otherMin, otherMax)) {
+			return Double.NEGATIVE_INFINITY;
+		} else {
+			return Double.POSITIVE_INFINITY;
+		}
+		if (gap < 0.0 && gap > -CONTACT_TOLERANCE) {
+			gap = 0.0;
+		}
+		return gap / Math.abs(amt);
+	}
+
+	private static double getExitTime(double min, double max,
+			double otherMin, double otherMax, double amt) {
+		if (amt > 0.0) {
+			return (otherMax - min) / amt;
+		} else if (amt < 0.0) {
+			return (otherMin - max) / amt;
+		} else if (isOverlapping(min, max, otherMin, otherMax)) {
+			return Double.POSITIVE_INFINITY;
+		} else {
+			return Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	private static boolean isOverlapping(double min, double max,
+			double otherMin, double otherMax) {
+		return max - otherMin > CONTACT_TOLERANCE
+				&& otherMax - min > CONTACT_TOLERANCE;
+	}
 }
@@ -0,0 +1,293 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.components;
+
+import java.util.Arrays;
+
+import engine.space.AABB;
+import engine.util.profiling.ProfileTimer;
+import engine.util.profiling.Profiler;
+
+/**
+ * Finds which colliding entities could touch each other, once for every
+ * entity at a time, rather than once for each movement of each entity.
+ * <p/>
+ * Every time {@link #update()} is called, the collider of each attached
+ * {@link CollisionComponent} is enlarged by a margin, and the enlarged bounds
+ * are sorted by their minimum on X. Sweeping through them in that order finds
+ * every pair whose enlarged bounds overlap, without comparing entities that
+ * are far apart on X. Until the next update, each component only resolves
+ * collisions against the components it was paired with.
+ * <p/>
+ * The pairs remain correct as long as every collider stays within its enlarged
+ * bounds. If any collider moves outside of them, changes size, or is added or
+ * removed, the pairs are discarded, and components search the spatial
+ * structure for collisions as usual until the next update.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class CollisionSystem {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final ProfileTimer TIMER = Profiler.getTimer("collision");
+
+	private final double margin;
+
+	private CollisionComponent[] members;
+	// The enlarged bounds of each member, stored as 4 values in a row.
+	private double[] boxes;
+	// The same bounds, stored in the order they are swept in. Each is stored
+	// as its minimum on X rounded down the same way as its sort key, its
+	// maximum on X, then its center and size on Y, both doubled.
+	private double[] sortedBoxes;
+	// The member each key refers to is stored in the low 32 bits, so after an
+	// update the keys also record the order members were last sorted in.
+	private long[] sortKeys;
+	private boolean isSorted;
+	private int size;
+
+	// The partners of each member are stored contiguously in partners, from
+	// partnerStarts[member] to partnerStarts[member + 1].
+	private int[] partnerStarts;
+	private int[] partners;
+	private int[] pairs;
+	private int numPairs;
+	private boolean isValid;
+
+	/**
+	 * Creates a new CollisionSystem with no attached components.
+	 * 
+	 * @param margin
+	 *            How far each collider can move before the pairs found for it
+	 *            are no longer correct. This should be at least as far as any
+	 *            entity moves between updates.
+	 */
+	public CollisionSystem(double margin) {
+		if (margin < 0.0) {
+			throw new IllegalArgumentException("Margin must not be negative");
+		}
+		this.margin = margin;
+		this.members = new CollisionComponent[DEFAULT_CAPACITY];
+		this.boxes = new double[DEFAULT_CAPACITY * 4];
+		this.sortedBoxes = new double[DEFAULT_CAPACITY * 4];
+		this.sortKeys = new long[DEFAULT_CAPACITY];
+		this.partnerStarts = new int[DEFAULT_CAPACITY + 1];
+		this.partners = new int[DEFAULT_CAPACITY];
+		this.pairs = new int[DEFAULT_CAPACITY * 2];
+		this.size = 0;
+		this.numPairs = 0;
+		this.isSorted = false;
+		this.isValid = false;
+	}
+
+	/**
+	 * Gets the number of components attached to this system.
+	 * 
+	 * @return The number of components attached to this system.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of pairs found by the last update.
+	 * 
+	 * @return The number of pairs found by the last update.
+	 */
+	public int getNumPairs() {
+		return numPairs;
+	}
+
+	/**
+	 * Finds every pair of attached components that could collide before the
+	 * next update. This should be called once per update, before any entities
+	 * move.
+	 */
+	public void update() {
+		TIMER.start();
+		for (int i = 0; i < size; i++) {
+			ColliderComponent collider = (ColliderComponent) members[i]
+					.getEntity().getComponent(ColliderComponent.ID);
+			int j = i * 4;
+			if (collider == null) {
+				// Components without colliders cannot collide, so they are
+				// given bounds that overlap nothing.
+				boxes[j] = Double.POSITIVE_INFINITY;
+				boxes[j + 1] = Double.POSITIVE_INFINITY;
+				boxes[j + 2] = Double.NEGATIVE_INFINITY;
+				boxes[j + 3] = Double.NEGATIVE_INFINITY;
+			} else {
+				AABB aabb = collider.getAABB();
+				boxes[j] = aabb.getMinX() - margin;
+				boxes[j + 1] = aabb.getMinY() - margin;
+				boxes[j + 2] = aabb.getMaxX() + margin;
+				boxes[j + 3] = aabb.getMaxY() + margin;
+			}
+		}
+		sort();
+		sweep();
+		storePartners();
+		isValid = true;
+		TIMER.stop();
+	}
+
+	int add(CollisionComponent member) {
+		if (size == members.length) {
+			int capacity = members.length * 2;
+			members = Arrays.copyOf(members, capacity);
+			boxes = Arrays.copyOf(boxes, capacity * 4);
+			sortedBoxes = new double[capacity * 4];
+			sortKeys = Arrays.copyOf(sortKeys, capacity);
+			partnerStarts = Arrays.copyOf(partnerStarts, capacity + 1);
+		}
+		members[size] = member;
+		isSorted = false;
+		isValid = false;
+		return size++;
+	}
+
+	void remove(int slot) {
+		// The last member is moved into the removed slot, so members are
+		// always stored contiguously.
+		int last = --size;
+		if (slot != last) {
+			members[slot] = members[last];
+			members[slot].setCollisionSlot(slot);
+		}
+		members[last] = null;
+		isSorted = false;
+		isValid = false;
+	}
+
+	void invalidate() {
+		isValid = false;
+	}
+
+	boolean contains(int slot, AABB aabb, double offsetX, double offsetY) {
+		int i = slot * 4;
+		return isValid && boxes[i] <= aabb.getMinX() + offsetX
+				&& boxes[i + 1] <= aabb.getMinY() + offsetY
+				&& boxes[i + 2] >= aabb.getMaxX() + offsetX
+				&& boxes[i + 3] >= aabb.getMaxY() + offsetY;
+	}
+
+	int getPartnersStart(int slot) {
+		return partnerStarts[slot];
+	}
+
+	int getPartnersEnd(int slot) {
+		return partnerStarts[slot + 1];
+	}
+
+	CollisionComponent getPartner(int index) {
+		return members[partners[index]];
+	}
+
+	private void sort() {
+		if (!isSorted) {
+			for (int i = 0; i < size; i++) {
+				sortKeys[i] = getSortKey(i);
+			}
+			Arrays.sort(sortKeys, 0, size);
+			isSorted = true;
+		} else {
+			// Members rarely move far between updates, so they are mostly
+			// still in the order they were sorted in last time, and an
+			// insertion sort only has a few members to move.
+			for (int i = 0; i < size; i++) {
+				long key = getSortKey((int) sortKeys[i]);
+				int j = i;
+				while (j > 0 && sortKeys[j - 1] > key) {
+					sortKeys[j] = sortKeys[j - 1];
+					j--;
+				}
+				sortKeys[j] = key;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			int j = (int) sortKeys[i] * 4;
+			sortedBoxes[i * 4] = roundDown(boxes[j]);
+			sortedBoxes[i * 4 + 1] = boxes[j + 2];
+			sortedBoxes[i * 4 + 2] = boxes[j + 1] + boxes[j + 3];
+			sortedBoxes[i * 4 + 3] = boxes[j + 3] - boxes[j + 1];
+		}
+	}
+
+	private void sweep() {
+		numPairs = 0;
+		double[] sorted = sortedBoxes;
+		int end = size * 4;
+		for (int a = 0; a < end; a += 4) {
+			double maxX = sorted[a + 1];
+			double centerY = sorted[a + 2];
+			double sizeY = sorted[a + 3];
+			// Members are sorted by their rounded minimum on X, which is what
+			// is compared here, so once one starts past this member, so do
+			// all the rest. Rounding down only adds pairs that cannot touch.
+			for (int b = a + 4; b < end && sorted[b] < maxX; b += 4) {
+				// Comparing the distance between centers on Y takes a single
+				// branch, which is almost never taken, rather than two which
+				// are each taken about half the time.
+				double distanceY = Math.abs(sorted[b + 2] - centerY);
+				if (distanceY <= sorted[b + 3] + sizeY) {
+					addPair((int) sortKeys[a / 4], (int) sortKeys[b / 4]);
+				}
+			}
+		}
+	}
+
+	private long getSortKey(int slot) {
+		return ((long) getSortableBits(boxes[slot * 4]) << 32) | slot;
+	}
+
+	private void addPair(int a, int b) {
+		if (numPairs * 2 == pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
+		}
+		pairs[numPairs * 2] = a;
+		pairs[numPairs * 2 + 1] = b;
+		numPairs++;
+	}
+
+	private void storePartners() {
+		// Each pair is stored for both of its members, with every member's
+		// partners grouped together.
+		Arrays.fill(partnerStarts, 0, size + 1, 0);
+		for (int i = 0; i < numPairs * 2; i++) {
+			partnerStarts[pairs[i] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			partnerStarts[i + 1] += partnerStarts[i];
+		}
+		if (partners.length < numPairs * 2) {
+			partners = new int[numPairs * 4];
+		}
+		for (int i = 0; i < numPairs; i++) {
+			int a = pairs[i * 2];
+			int b = pairs[i * 2 + 1];
+			partners[partnerStarts[a]++] = b;
+			partners[partnerStarts[b]++] = a;
+		}
+		// Filling the partners moved every start to the next member's start.
+		for (int i = size; i > 0; i--) {
+			partnerStarts[i] = partnerStarts[i - 1];
+		}
+		partnerStarts[0] = 0;
+	}
+
+	private static float roundDown(double value) {
+		// Values are rounded down to a float, so sorting by them never puts a
+		// member after one that starts further left on X.
+		float rounded = (float) value;
+		if (rounded > value) {
+			rounded = Math.nextAfter(rounded, Double.NEGATIVE_INFINITY);
+		}
+		return rounded;
+	}
+
+	private static int getSortableBits(double value) {
+		int bits = Float.floatToIntBits(roundDown(value));
+		return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+	}
+}
@@ -11,6 +11,7 @@ import engine.rendering.IRenderContext;
 import engine.rendering.LightMap;
 import engine.space.AABB;
 import engine.util.IDAssigner;
+import engine.util.Util;
 
 /**
  * Casts a dynamic light on the entity and nearby entities.
@@ -19,6 +20,12 @@ import engine.util.IDAssigner;
  */
 public class LightComponent extends EntityComponent {
 	public static final int ID = IDAssigner.getId();
+	private static final Color[] INTENSITIES = new Color[256];
+	static {
+		for (int i = 0; i < INTENSITIES.length; i++) {
+			INTENSITIES[i] = new Color((double) i / (INTENSITIES.length - 1));
+		}
+	}
 	private LightMap light;
 	private Color color;
 	private double offsetX;
@@ -71,6 +78,9 @@ public class LightComponent extends EntityComponent {
 	 *            How intense the light is, where 0.0 is none and 1.0 is full.
 	 */
 	public void setIntensity(double amt) {
-		this.color = new Color(amt, amt, amt);
+		// Lights are rendered with 8 bits per component, so every visible
+		// intensity can be cached rather than creating a new color each time.
+		int index = (int) (Util.saturate(amt) * (INTENSITIES.length - 1) + 0.5);
+		this.color = INTENSITIES[index];
 	}
 }
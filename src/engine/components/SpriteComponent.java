@@ -4,6 +4,7 @@
  */
 package engine.components;
 
+import engine.core.entity.CommandBuffer;
 import engine.core.entity.Entity;
 import engine.core.entity.EntityComponent;
 import engine.rendering.Color;
@@ -25,6 +26,8 @@ public class SpriteComponent extends EntityComponent {
 		private int[] nextFrames;
 		private int currentFrame;
 		private double currentFrameTime;
+		private AnimationSystem system;
+		private int slot;
 
 		public Animation(SpriteSheet[] sheets, int[] indices,
 				double[] frameTimes, int[] nextFrames) {
@@ -34,9 +37,34 @@ public class SpriteComponent extends EntityComponent {
 			this.nextFrames = nextFrames;
 			this.currentFrame = 0;
 			this.currentFrameTime = 0.0;
+			this.system = null;
+			this.slot = -1;
+		}
+
+		public void attachTo(AnimationSystem newSystem) {
+			detach();
+			if (newSystem != null) {
+				slot = newSystem.add(SpriteComponent.this, frameTimes,
+						nextFrames, currentFrame, currentFrameTime);
+				system = newSystem;
+			}
+		}
+
+		public void detach() {
+			if (system == null) {
+				return;
+			}
+			currentFrame = system.getFrame(slot);
+			currentFrameTime = system.getFrameTime(slot);
+			system.remove(slot);
+			system = null;
+			slot = -1;
 		}
 
 		public void update(double delta) {
+			if (system != null) {
+				return;
+			}
 			currentFrameTime += delta;
 			while (frameTimes[currentFrame] != 0
 					&& currentFrameTime > frameTimes[currentFrame]) {
@@ -47,21 +75,33 @@ public class SpriteComponent extends EntityComponent {
 		}
 
 		public SpriteSheet getSheet() {
-			return sheets[currentFrame];
+			return sheets[getFrame()];
 		}
 
 		public int getSpriteIndex() {
-			return indices[currentFrame];
+			return indices[getFrame()];
 		}
 
 		public void setFrame(int frame) {
+			if (system != null) {
+				system.setFrame(slot, frame);
+				return;
+			}
 			currentFrame = frame;
 			currentFrameTime = 0.0;
 		}
+
+		private int getFrame() {
+			if (system != null) {
+				return system.getFrame(slot);
+			}
+			return currentFrame;
+		}
 	}
 
 	public static final int ID = IDAssigner.getId();
 	private Animation animation;
+	private AnimationSystem pendingSystem;
 	private double halfWidth;
 	private double halfHeight;
 	private double spriteOffsetFlippedX;
@@ -229,6 +269,7 @@ public class SpriteComponent extends EntityComponent {
 			SpriteSheet[] sheets, int[] indices, double[] frameTimes,
 			int[] nextFrames, Color color) {
 		this.animation = new Animation(sheets, indices, frameTimes, nextFrames);
+		this.pendingSystem = null;
 		this.halfWidth = width / 2.0;
 		this.halfHeight = height / 2.0;
 
@@ -255,6 +296,11 @@ public class SpriteComponent extends EntityComponent {
 		animation.update(delta);
 	}
 
+	@Override
+	public void onRemove() {
+		animation.detach();
+	}
+
 	@Override
 	public void render(IRenderContext target, double viewportX, double viewportY) {
 		SpriteSheet sheet = animation.getSheet();
@@ -324,4 +370,36 @@ public class SpriteComponent extends EntityComponent {
 	public void setFrame(int frame) {
 		animation.setFrame(frame);
 	}
+
+	/**
+	 * Moves the animation of this sprite into an animation system, so it is
+	 * updated along with every other animation in the system rather than when
+	 * this component is updated. The animation is removed from the system when
+	 * this component is removed.
+	 * <p/>
+	 * If a {@link CommandBuffer} is active, the animation is moved when the
+	 * buffer is applied, since systems are shared between entities.
+	 * 
+	 * @param system
+	 *            The system that will update the animation, or null to have
+	 *            this component update the animation itself again.
+	 */
+	public void attachTo(AnimationSystem system) {
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			pendingSystem = system;
+			buffer.attach(this);
+			return;
+		}
+		animation.attachTo(system);
+	}
+
+	@Override
+	protected void applyAttach() {
+		attachTo(pendingSystem);
+	}
+
+	void setAnimationSlot(int slot) {
+		animation.slot = slot;
+	}
 }
\ No newline at end of file
@@ -4,19 +4,54 @@
  */
 package engine.core;
 
+import java.util.concurrent.Exchanger;
+
 import engine.rendering.IDisplay;
+import engine.rendering.RecordingRenderContext;
 import engine.util.Debug;
+import engine.util.profiling.ProfileTimer;
+import engine.util.profiling.Profiler;
 
 /**
  * The core game engine. Updates and renders a scene in a display at a
  * consistent rate.
+ * <p/>
+ * The scene is always updated in steps of the same length, no matter how
+ * often it is rendered. Rendering happens at its own rate, and the scene is
+ * told how far between updates each render is, so it can interpolate.
+ * <p/>
+ * The engine can also be run pipelined, with {@link #startPipelined()}, so
+ * the scene is updated and recorded on one thread while the previous frame is
+ * drawn on another.
  * 
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class CoreEngine {
+	/** A render rate that renders as often as possible. */
+	public static final double UNCAPPED = 0.0;
+	/** The default number of updates that can be done before each render. */
+	public static final int DEFAULT_MAX_UPDATES_PER_FRAME = 5;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	// Sleeping is only accurate to about a millisecond, and often worse on a
+	// busy machine, so the last part of every wait is spent yielding instead.
+	private static final long SPIN_TIME = 1000000L;
+
+	private static final ProfileTimer UPDATE_TIMER = Profiler
+			.getTimer("update");
+	private static final ProfileTimer RENDER_TIMER = Profiler
+			.getTimer("render");
+	private static final ProfileTimer PRESENT_TIMER = Profiler
+			.getTimer("present");
+
 	private final IDisplay display;
 	private final double frameTime;
+	private final long updateNanos;
+	private final long renderNanos;
+	private final int maxUpdatesPerFrame;
 	private final Scene scene;
+	private volatile boolean isRunning;
+	private volatile Throwable updateError;
 
 	/**
 	 * Creates a new CoreEngine in a usable state.
@@ -29,7 +64,49 @@ public class CoreEngine {
 	 *            The number of frames to be rendered per second, on average.
 	 */
 	public CoreEngine(IDisplay display, Scene scene, double frameRate) {
-		this.frameTime = 1.0 / frameRate;
+		this(display, scene, frameRate, frameRate,
+				DEFAULT_MAX_UPDATES_PER_FRAME);
+	}
+
+	/**
+	 * Creates a new CoreEngine in a usable state.
+	 * 
+	 * @param display
+	 *            The display to render the game in.
+	 * @param scene
+	 *            The game scene that the engine should run.
+	 * @param updateRate
+	 *            The number of times the scene is updated per second.
+	 * @param renderRate
+	 *            The maximum number of frames to be rendered per second, or
+	 *            {@link #UNCAPPED} to render as often as possible.
+	 * @param maxUpdatesPerFrame
+	 *            The maximum number of updates done before each render. If
+	 *            the engine falls further behind than this, the rest of the
+	 *            time is skipped, so the game slows down rather than spending
+	 *            ever longer catching up.
+	 * @throws IllegalArgumentException
+	 *             If {@code updateRate} is not positive, {@code renderRate} is
+	 *             negative, or {@code maxUpdatesPerFrame} is less than 1.
+	 */
+	public CoreEngine(IDisplay display, Scene scene, double updateRate,
+			double renderRate, int maxUpdatesPerFrame) {
+		if (updateRate <= 0.0) {
+			throw new IllegalArgumentException("Update rate must be positive");
+		}
+		if (renderRate < 0.0) {
+			throw new IllegalArgumentException(
+					"Render rate must not be negative");
+		}
+		if (maxUpdatesPerFrame < 1) {
+			throw new IllegalArgumentException(
+					"At least 1 update must be allowed per frame");
+		}
+		this.frameTime = 1.0 / updateRate;
+		this.updateNanos = Math.round(NANOS_PER_SECOND / updateRate);
+		this.renderNanos = renderRate == UNCAPPED ? 0 : Math
+				.round(NANOS_PER_SECOND / renderRate);
+		this.maxUpdatesPerFrame = maxUpdatesPerFrame;
 		this.display = display;
 		this.scene = scene;
 	}
@@ -39,52 +116,264 @@ public class CoreEngine {
 	 */
 	public void start() {
 		int frames = 0;
-		double unprocessedTime = 0.0;
-		double frameCounterTime = 0;
+		long unprocessedTime = 0;
+		long frameCounterTime = 0;
 
 		long previousTime = System.nanoTime();
+		long nextRenderTime = previousTime;
 		String fpsString = "0 ms per frame (0 fps)";
 
-		boolean isRunning = true;
+		isRunning = true;
 		while (!display.isClosed() && isRunning) {
-			boolean render = false;
-
 			long currentTime = System.nanoTime();
 			long passedTime = currentTime - previousTime;
 			previousTime = currentTime;
 
-			unprocessedTime += passedTime / 1000000000.0;
-			frameCounterTime += passedTime / 1000000000.0;
+			unprocessedTime += passedTime;
+			frameCounterTime += passedTime;
 
-			if (frameCounterTime >= 1.0) {
+			if (frameCounterTime >= NANOS_PER_SECOND) {
 				fpsString = (1000.0 / frames) + " ms per frame (" + frames
 						+ " fps)";
-				Debug.log(fpsString);
+				logFrameTimes(fpsString);
 
 				frames = 0;
-				frameCounterTime = 0.0;
+				frameCounterTime = 0;
 			}
 
-			while (unprocessedTime > frameTime) {
-				display.update();
-				render = true;
-				boolean shouldExit = scene.update(frameTime);
-				if (shouldExit) {
-					isRunning = false;
+			unprocessedTime = update(unprocessedTime, true);
+
+			if (isRenderDue(currentTime, nextRenderTime)) {
+				frames++;
+				RENDER_TIMER.start();
+				scene.render(display.getRenderContext(),
+						(double) unprocessedTime / updateNanos);
+				RENDER_TIMER.stop();
+				PRESENT_TIMER.start();
+				display.present();
+				PRESENT_TIMER.stop();
+				Profiler.endFrame();
+				nextRenderTime = getNextRenderTime(currentTime,
+						nextRenderTime);
+			}
+			waitForNextFrame(currentTime, unprocessedTime, nextRenderTime);
+		}
+	}
+
+	/**
+	 * Begins running the game engine with updating and rendering pipelined.
+	 * The scene is updated and rendered on a separate update thread, into a
+	 * {@link RecordingRenderContext}, while the calling thread draws the frame
+	 * recorded before it to the display. On machines with more than one core,
+	 * the time spent updating the scene and the time spent drawing it
+	 * overlap, at the cost of each frame being shown one frame later.
+	 * <p/>
+	 * Every call to {@link Scene#update(double)} and
+	 * {@link Scene#render(engine.rendering.IRenderContext, double)} happens on
+	 * the update thread, so they must not use the render device directly.
+	 * Input is read on the calling thread once per frame, while the update
+	 * thread is waiting, so the scene never sees it change during an update.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the scene throws an exception while it is being updated
+	 *             or rendered. The exception thrown is the cause.
+	 */
+	public void startPipelined() {
+		final Exchanger<RecordingRenderContext> exchanger = new Exchanger<>();
+		final Thread renderThread = Thread.currentThread();
+		Thread updateThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					runUpdateThread(exchanger);
+				} catch (InterruptedException ex) {
+					// The render thread has stopped, so there is nothing left
+					// to do.
+				} catch (RuntimeException | Error ex) {
+					updateError = ex;
+					renderThread.interrupt();
 				}
-				unprocessedTime -= frameTime;
 			}
+		}, "Update Thread");
 
-			if (render || Debug.isIgnoringFrameCap()) {
-				frames++;
-				scene.render(display.getRenderContext());
+		int frames = 0;
+		long frameCounterTime = 0;
+		long previousTime = System.nanoTime();
+		String fpsString = "0 ms per frame (0 fps)";
+		RecordingRenderContext recording = new RecordingRenderContext();
+
+		isRunning = true;
+		updateError = null;
+		display.update();
+		updateThread.start();
+		try {
+			while (!display.isClosed()) {
+				recording = exchanger.exchange(recording);
+				boolean isLastFrame = !isRunning;
+				if (!isLastFrame) {
+					// The update thread waits until input has been read, so
+					// input never changes during an update.
+					display.update();
+					exchanger.exchange(null);
+				}
+				PRESENT_TIMER.start();
+				recording.replay(display.getRenderContext());
 				display.present();
-			} else {
+				PRESENT_TIMER.stop();
+				recording.reset();
+				Profiler.endFrame();
+
+				long currentTime = System.nanoTime();
+				frameCounterTime += currentTime - previousTime;
+				previousTime = currentTime;
+				frames++;
+				if (frameCounterTime >= NANOS_PER_SECOND) {
+					fpsString = (1000.0 / frames) + " ms per frame (" + frames
+							+ " fps)";
+					logFrameTimes(fpsString);
+
+					frames = 0;
+					frameCounterTime = 0;
+				}
+				if (isLastFrame) {
+					break;
+				}
+			}
+		} catch (InterruptedException ex) {
+			if (updateError == null) {
+				Thread.currentThread().interrupt();
+			}
+		} finally {
+			isRunning = false;
+			updateThread.interrupt();
+			joinUninterruptibly(updateThread);
+		}
+		if (updateError != null) {
+			throw new IllegalStateException("The scene could not be updated",
+					updateError);
+		}
+	}
+
+	private void runUpdateThread(Exchanger<RecordingRenderContext> exchanger)
+			throws InterruptedException {
+		RecordingRenderContext recording = new RecordingRenderContext();
+		long unprocessedTime = 0;
+		long previousTime = System.nanoTime();
+		long nextRenderTime = previousTime;
+
+		while (isRunning) {
+			long currentTime = System.nanoTime();
+			unprocessedTime += currentTime - previousTime;
+			previousTime = currentTime;
+
+			unprocessedTime = update(unprocessedTime, false);
+
+			if (isRenderDue(currentTime, nextRenderTime) || !isRunning) {
+				RENDER_TIMER.start();
+				scene.render(recording, (double) unprocessedTime / updateNanos);
+				RENDER_TIMER.stop();
+				recording = exchanger.exchange(recording);
+				if (!isRunning) {
+					return;
+				}
+				exchanger.exchange(null);
+				nextRenderTime = getNextRenderTime(currentTime,
+						nextRenderTime);
+			}
+			waitForNextFrame(currentTime, unprocessedTime, nextRenderTime);
+		}
+	}
+
+	private long update(long unprocessedTime, boolean isReadingInput) {
+		int updates = 0;
+		while (unprocessedTime >= updateNanos && isRunning) {
+			if (updates == maxUpdatesPerFrame) {
+				return unprocessedTime % updateNanos;
+			}
+			if (isReadingInput) {
+				display.update();
+			}
+			UPDATE_TIMER.start();
+			boolean shouldExit = scene.update(frameTime);
+			UPDATE_TIMER.stop();
+			if (shouldExit) {
+				isRunning = false;
+			}
+			unprocessedTime -= updateNanos;
+			updates++;
+		}
+		return unprocessedTime;
+	}
+
+	private static void logFrameTimes(String fpsString) {
+		if (Profiler.isEnabled()) {
+			Debug.log(Profiler.getSummary());
+		} else {
+			Debug.log(fpsString);
+		}
+	}
+
+	private boolean isCapped() {
+		return renderNanos != 0 && !Debug.isIgnoringFrameCap();
+	}
+
+	private boolean isRenderDue(long currentTime, long nextRenderTime) {
+		return !isCapped() || currentTime - nextRenderTime >= 0;
+	}
+
+	private long getNextRenderTime(long currentTime, long nextRenderTime) {
+		nextRenderTime += renderNanos;
+		// If rendering fell behind, the missed frames are dropped rather than
+		// rendered back to back.
+		if (currentTime - nextRenderTime >= 0) {
+			nextRenderTime = currentTime + renderNanos;
+		}
+		return nextRenderTime;
+	}
+
+	private void waitForNextFrame(long currentTime, long unprocessedTime,
+			long nextRenderTime) {
+		if (!isCapped()) {
+			return;
+		}
+		long nextUpdateTime = currentTime + updateNanos - unprocessedTime;
+		if (nextUpdateTime - nextRenderTime < 0) {
+			waitUntil(nextUpdateTime);
+		} else {
+			waitUntil(nextRenderTime);
+		}
+	}
+
+	private static void joinUninterruptibly(Thread thread) {
+		boolean isInterrupted = false;
+		while (true) {
+			try {
+				thread.join();
+				break;
+			} catch (InterruptedException ex) {
+				isInterrupted = true;
+			}
+		}
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void waitUntil(long time) {
+		while (true) {
+			long remainingTime = time - System.nanoTime();
+			if (remainingTime <= 0) {
+				return;
+			}
+			if (remainingTime > SPIN_TIME) {
 				try {
-					Thread.sleep(1);
+					Thread.sleep((remainingTime - SPIN_TIME) / 1000000L);
 				} catch (InterruptedException ex) {
 					Thread.currentThread().interrupt();
+					return;
 				}
+			} else {
+				Thread.yield();
 			}
 		}
 	}
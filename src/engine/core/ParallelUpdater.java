@@ -0,0 +1,122 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import engine.core.entity.CommandBuffer;
+import engine.core.entity.Entity;
+
+/**
+ * Updates entities on several threads at once.
+ * <p/>
+ * Entities are split into chunks of a fixed size, and each chunk is updated
+ * with its own {@link CommandBuffer} active. Once every chunk is updated, the
+ * buffers are applied in chunk order on the calling thread. Since the chunks
+ * only depend on the order of the entities, and not on how many threads there
+ * are or how the work is scheduled, the results are always the same as
+ * updating every chunk one after another on a single thread.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+class ParallelUpdater {
+	private static final int ENTITIES_PER_CHUNK = 256;
+
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final List<Entity> entities;
+		private final double delta;
+		private final int startChunk;
+		private final int endChunk;
+
+		public ChunkTask(List<Entity> entities, double delta,
+				int startChunk, int endChunk) {
+			this.entities = entities;
+			this.delta = delta;
+			this.startChunk = startChunk;
+			this.endChunk = endChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (endChunk - startChunk == 1) {
+				updateChunk(entities, delta, startChunk);
+				return;
+			}
+			int midChunk = (startChunk + endChunk) / 2;
+			invokeAll(new ChunkTask(entities, delta, startChunk, midChunk),
+					new ChunkTask(entities, delta, midChunk, endChunk));
+		}
+	}
+
+	private final ForkJoinPool pool;
+	private final List<CommandBuffer> buffers;
+
+	/**
+	 * Creates a new ParallelUpdater.
+	 * 
+	 * @param pool
+	 *            The pool that entities are updated on. If this is null,
+	 *            every chunk is updated on the calling thread.
+	 */
+	public ParallelUpdater(ForkJoinPool pool) {
+		this.pool = pool;
+		this.buffers = new ArrayList<>();
+	}
+
+	/**
+	 * Updates a set of entities, then applies any changes they made.
+	 * 
+	 * @param entities
+	 *            The entities to be updated.
+	 * @param delta
+	 *            How much time has passed since the last update.
+	 */
+	public void update(List<Entity> entities, double delta) {
+		int numChunks = (entities.size() + ENTITIES_PER_CHUNK - 1)
+				/ ENTITIES_PER_CHUNK;
+		while (buffers.size() < numChunks) {
+			buffers.add(new CommandBuffer());
+		}
+
+		try {
+			if (pool == null || numChunks <= 1) {
+				for (int i = 0; i < numChunks; i++) {
+					updateChunk(entities, delta, i);
+				}
+			} else {
+				pool.invoke(new ChunkTask(entities, delta, 0, numChunks));
+			}
+		} catch (RuntimeException e) {
+			for (int i = 0; i < numChunks; i++) {
+				buffers.get(i).clear();
+			}
+			throw e;
+		}
+
+		for (int i = 0; i < numChunks; i++) {
+			buffers.get(i).apply();
+		}
+	}
+
+	private void updateChunk(List<Entity> entities, double delta,
+			int chunk) {
+		int start = chunk * ENTITIES_PER_CHUNK;
+		int end = Math.min(start + ENTITIES_PER_CHUNK, entities.size());
+		CommandBuffer buffer = buffers.get(chunk);
+		buffer.begin();
+		try {
+			for (int i = start; i < end; i++) {
+				entities.get(i).update(delta);
+			}
+		} finally {
+			buffer.end();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.core;
+
+import java.util.Arrays;
+
+import engine.core.entity.Entity;
+
+/**
+ * Collects entities that are being rendered, and sorts them into the order
+ * they should be rendered in.
+ * <p/>
+ * Entities are ordered by the minimum Z of their AABB, and entities with equal
+ * depth are ordered by id. This is the same order given by comparing depths,
+ * then {@link Entity#compareTo}.
+ * <p/>
+ * Entities are sorted with a radix sort on their depth rounded to single
+ * precision, so sorting takes linear time no matter how many entities are
+ * being rendered. Entities whose depths round to the same value are then put
+ * into their exact order with a final insertion sort.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class RenderQueue {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int RADIX_BITS = 8;
+	private static final int RADIX_SIZE = 1 << RADIX_BITS;
+	private static final int RADIX_MASK = RADIX_SIZE - 1;
+	private static final int KEY_BITS = 64;
+	// Below this size, the setup cost of a radix sort outweighs its benefit.
+	private static final int INSERTION_SORT_THRESHOLD = 48;
+
+	private final int[] counts;
+	private long[] keys;
+	private long[] keyScratch;
+	private Entity[] entities;
+	private Entity[] entityScratch;
+	private int size;
+
+	/**
+	 * Creates a new, empty RenderQueue.
+	 */
+	public RenderQueue() {
+		this.counts = new int[RADIX_SIZE];
+		this.keys = new long[DEFAULT_CAPACITY];
+		this.keyScratch = new long[DEFAULT_CAPACITY];
+		this.entities = new Entity[DEFAULT_CAPACITY];
+		this.entityScratch = new Entity[DEFAULT_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds an entity to this queue. The entity's depth is read once, when it
+	 * is added.
+	 * 
+	 * @param entity
+	 *            The entity to be added.
+	 */
+	public void add(Entity entity) {
+		if (size == keys.length) {
+			int capacity = keys.length * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			entities = Arrays.copyOf(entities, capacity);
+			keyScratch = new long[capacity];
+			entityScratch = new Entity[capacity];
+		}
+		keys[size] = makeKey(entity.getAABB().getMinZ(), entity.getId());
+		entities[size] = entity;
+		size++;
+	}
+
+	/**
+	 * Removes every entity from this queue.
+	 */
+	public void clear() {
+		Arrays.fill(entities, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Gets the number of entities in this queue.
+	 * 
+	 * @return The number of entities in this queue.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets an entity in this queue by index. After {@link #sort()} is called,
+	 * this is the order the entities should be rendered in.
+	 * 
+	 * @param index
+	 *            The index of the entity, in the range of (0, size() - 1).
+	 * @return The entity at {@code index}.
+	 */
+	public Entity get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		}
+		return entities[index];
+	}
+
+	/**
+	 * Sorts the entities in this queue into the order they should be rendered
+	 * in.
+	 */
+	public void sort() {
+		if (size < INSERTION_SORT_THRESHOLD) {
+			insertionSort();
+		} else {
+			radixSort();
+		}
+		resolveTies();
+	}
+
+	private void radixSort() {
+		for (int shift = 0; shift < KEY_BITS; shift += RADIX_BITS) {
+			if (!countDigits(shift)) {
+				// Every key has the same digit here, so this pass would not
+				// change the order.
+				continue;
+			}
+			int total = 0;
+			for (int i = 0; i < RADIX_SIZE; i++) {
+				int count = counts[i];
+				counts[i] = total;
+				total += count;
+			}
+			for (int i = 0; i < size; i++) {
+				long key = keys[i];
+				int dest = counts[(int) (key >>> shift) & RADIX_MASK]++;
+				keyScratch[dest] = key;
+				entityScratch[dest] = entities[i];
+			}
+			swapScratch();
+		}
+		Arrays.fill(entityScratch, 0, size, null);
+	}
+
+	private boolean countDigits(int shift) {
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < size; i++) {
+			counts[(int) (keys[i] >>> shift) & RADIX_MASK]++;
+		}
+		return counts[(int) (keys[0] >>> shift) & RADIX_MASK] != size;
+	}
+
+	private void swapScratch() {
+		long[] tempKeys = keys;
+		keys = keyScratch;
+		keyScratch = tempKeys;
+		Entity[] tempEntities = entities;
+		entities = entityScratch;
+		entityScratch = tempEntities;
+	}
+
+	private void insertionSort() {
+		// Keys are compared as unsigned values by flipping their sign bits.
+		for (int i = 1; i < size; i++) {
+			long key = keys[i];
+			Entity entity = entities[i];
+			int j = i - 1;
+			while (j >= 0
+					&& (keys[j] ^ Long.MIN_VALUE) > (key ^ Long.MIN_VALUE)) {
+				keys[j + 1] = keys[j];
+				entities[j + 1] = entities[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			entities[j + 1] = entity;
+		}
+	}
+
+	private void resolveTies() {
+		for (int i = 1; i < size; i++) {
+			long key = keys[i];
+			Entity entity = entities[i];
+			double depth = entity.getAABB().getMinZ();
+			int j = i - 1;
+			while (j >= 0 && (keys[j] >>> 32) == (key >>> 32)
+					&& entities[j].getAABB().getMinZ() > depth) {
+				keys[j + 1] = keys[j];
+				entities[j + 1] = entities[j];
+				j--;
+			}
+			keys[j + 1] = key;
+			entities[j + 1] = entity;
+		}
+	}
+
+	private static long makeKey(double depth, int id) {
+		// Flipping the bits of a float this way makes its bits sort in the
+		// same order as its value when treated as an unsigned integer. Adding
+		// zero turns negative zero into positive zero, so they compare equal.
+		int bits = Float.floatToIntBits((float) depth + 0.0f);
+		bits ^= (bits >> 31) | 0x80000000;
+		return ((long) bits << 32) | (id & 0xFFFFFFFFL);
+	}
+}
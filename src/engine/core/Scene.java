@@ -4,16 +4,18 @@
  */
 package engine.core;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import engine.core.entity.Entity;
+import engine.core.entity.IDPool;
 import engine.rendering.IRenderContext;
 import engine.space.AABB;
 import engine.space.ISpatialStructure;
+import engine.space.ISpatialVisitor;
+import engine.util.profiling.ProfileTimer;
+import engine.util.profiling.Profiler;
 
 /**
  * Represents an entire game scene, including any objects or players.
@@ -25,7 +27,20 @@ import engine.space.ISpatialStructure;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public abstract class Scene {
+	private static final ProfileTimer QUERY_TIMER = Profiler.getTimer("query");
+
 	private ISpatialStructure<Entity> structure;
+	private final IDPool entityIDs;
+	private final List<Entity> updateBuffer;
+	private final ISpatialVisitor<Entity> updateVisitor;
+	private final RenderQueue renderQueue;
+	private final ISpatialVisitor<Entity> renderVisitor;
+	private AABB viewport;
+	private double viewportX;
+	private double viewportY;
+	private ForkJoinPool updatePool;
+	private boolean deferUpdates;
+	private ParallelUpdater updater;
 
 	/**
 	 * Creates a new Scene.
@@ -35,10 +50,84 @@ public abstract class Scene {
 	 */
 	public Scene(ISpatialStructure<Entity> structure) {
 		this.structure = structure;
+		this.entityIDs = new IDPool();
+		this.updateBuffer = new ArrayList<>();
+		this.updateVisitor = new ISpatialVisitor<Entity>() {
+			@Override
+			public void visit(Entity entity) {
+				updateBuffer.add(entity);
+			}
+		};
+		this.renderQueue = new RenderQueue();
+		this.renderVisitor = new ISpatialVisitor<Entity>() {
+			@Override
+			public void visit(Entity entity) {
+				renderQueue.add(entity);
+			}
+		};
+		this.viewport = null;
+		this.updatePool = null;
+		this.deferUpdates = false;
+		this.updater = null;
+	}
+
+	/**
+	 * Sets whether changes made while entities are updated are deferred.
+	 * <p/>
+	 * By default, entities in {@link #updateRange(double, AABB)} are updated
+	 * one at a time, and any changes they make to the scene, such as moving,
+	 * being created or being removed, are done immediately. When updates are
+	 * deferred, entities are instead updated in chunks, and their changes are
+	 * done once every entity has been updated, in the same order every time.
+	 * So while entities are being updated, they all see the scene as it was
+	 * before the update, moving an entity returns the amount requested rather
+	 * than the amount it will actually move, and entities created during the
+	 * update have an id of -1 until it is finished.
+	 * 
+	 * @param deferUpdates
+	 *            Whether changes made while entities are updated are deferred.
+	 */
+	protected void setDeferredUpdates(boolean deferUpdates) {
+		this.deferUpdates = deferUpdates;
+		resetUpdater();
+	}
+
+	/**
+	 * Sets the pool used to update entities in parallel.
+	 * <p/>
+	 * When a pool is set, updates are always deferred, as described in
+	 * {@link #setDeferredUpdates(boolean)}, and the chunks of entities are
+	 * updated on the pool rather than one after another. The deferred changes
+	 * are still done in the same order, so the results are exactly the same as
+	 * deferred updates without a pool, no matter how many threads the pool has.
+	 * They are not the same as updates that are not deferred. Components
+	 * updated in parallel must not change any shared state other than through
+	 * their entity.
+	 * 
+	 * @param pool
+	 *            The pool used to update entities, or null to update entities
+	 *            on the calling thread.
+	 */
+	protected void setUpdatePool(ForkJoinPool pool) {
+		this.updatePool = pool;
+		resetUpdater();
+	}
+
+	private void resetUpdater() {
+		if (updatePool != null || deferUpdates) {
+			updater = new ParallelUpdater(updatePool);
+		} else {
+			updater = null;
+		}
 	}
 
 	/**
 	 * Updates everything intersecting a specific range of space.
+	 * <p/>
+	 * Any changes entities make to the scene while being updated are done
+	 * immediately, unless updates are deferred with
+	 * {@link #setDeferredUpdates(boolean)} or
+	 * {@link #setUpdatePool(ForkJoinPool)}.
 	 * 
 	 * @param delta
 	 *            How much time has passed since the last update.
@@ -46,14 +135,17 @@ public abstract class Scene {
 	 *            The range of space to update.
 	 */
 	protected void updateRange(double delta, AABB range) {
-		Set<Entity> entities = structure.queryRange(new HashSet<Entity>(),
-				range);
-
-		Iterator<Entity> it = entities.iterator();
-		while (it.hasNext()) {
-			Entity current = (Entity) it.next();
-			current.update(delta);
+		QUERY_TIMER.start();
+		structure.visitRange(range, updateVisitor);
+		QUERY_TIMER.stop();
+		if (updater != null) {
+			updater.update(updateBuffer, delta);
+		} else {
+			for (int i = 0; i < updateBuffer.size(); i++) {
+				updateBuffer.get(i).update(delta);
+			}
 		}
+		updateBuffer.clear();
 	}
 
 	/**
@@ -65,6 +157,15 @@ public abstract class Scene {
 		return structure;
 	}
 
+	/**
+	 * Gets the pool that ids of entities in this scene are allocated from.
+	 * 
+	 * @return The pool that ids of entities in this scene are allocated from.
+	 */
+	protected IDPool getEntityIDs() {
+		return entityIDs;
+	}
+
 	/**
 	 * Updates this scene.
 	 * 
@@ -87,25 +188,22 @@ public abstract class Scene {
 	 */
 	protected void renderRange(IRenderContext target, double viewportX,
 			double viewportY) {
-		Set<Entity> renderableEntities = structure.queryRange(
-				new TreeSet<Entity>(new Comparator<Entity>() {
-					public int compare(Entity e0, Entity e1) {
-						if (e0.getAABB().getMinZ() > e1.getAABB().getMinZ()) {
-							return 1;
-						}
-						if (e0.getAABB().getMinZ() < e1.getAABB().getMinZ()) {
-							return -1;
-						}
-
-						return e0.compareTo(e1);
-					}
-				}), new AABB(viewportX - 1, viewportY - 1, viewportX + 1,
-						viewportY + 1));
-
-		Iterator<Entity> it = renderableEntities.iterator();
-		while (it.hasNext()) {
-			it.next().render(target, viewportX, viewportY);
+		if (viewport == null || this.viewportX != viewportX
+				|| this.viewportY != viewportY) {
+			viewport = new AABB(viewportX - 1, viewportY - 1, viewportX + 1,
+					viewportY + 1);
+			this.viewportX = viewportX;
+			this.viewportY = viewportY;
+		}
+
+		QUERY_TIMER.start();
+		structure.visitRange(viewport, renderVisitor);
+		QUERY_TIMER.stop();
+		renderQueue.sort();
+		for (int i = 0; i < renderQueue.size(); i++) {
+			renderQueue.get(i).render(target, viewportX, viewportY);
 		}
+		renderQueue.clear();
 	}
 
 	/**
@@ -115,4 +213,19 @@ public abstract class Scene {
 	 *            The context used for rendering.
 	 */
 	public abstract void render(IRenderContext target);
+
+	/**
+	 * Renders the scene at some point between two updates. By default, this
+	 * renders the scene as it was after the last update; scenes that
+	 * interpolate movement between updates should override this.
+	 * 
+	 * @param target
+	 *            The context used for rendering.
+	 * @param alpha
+	 *            How far between the last update and the next one this render
+	 *            is, from 0 to 1.
+	 */
+	public void render(IRenderContext target, double alpha) {
+		render(target);
+	}
 }
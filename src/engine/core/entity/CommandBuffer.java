@@ -0,0 +1,234 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.core.entity;
+
+import java.util.Arrays;
+
+import engine.space.AABB;
+
+/**
+ * Records changes to entities so they can be applied later, rather than when
+ * they are requested.
+ * <p/>
+ * While a buffer is active on a thread, any change that affects the spatial
+ * structure or other entities is recorded instead of being done immediately.
+ * This includes creating, moving, resizing and removing entities, removing
+ * components, and attaching components to shared systems. The changes are
+ * done, in the order they were recorded, when {@link #apply()} is called.
+ * <p/>
+ * This allows entities to be updated on several threads at once, as long as
+ * each thread records into its own buffer, and the buffers are applied on a
+ * single thread afterwards.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class CommandBuffer {
+	private static final int SPAWN = 0;
+	private static final int MOVE = 1;
+	private static final int FIT_AABB = 2;
+	private static final int REMOVE = 3;
+	private static final int FORCE_REMOVE = 4;
+	private static final int REMOVE_COMPONENT = 5;
+	private static final int REMOVE_COMPONENT_ID = 6;
+	private static final int COMPONENT_REMOVED = 7;
+	private static final int MOVE_SWEPT = 8;
+	private static final int ATTACH = 9;
+
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final ThreadLocal<CommandBuffer> ACTIVE = new ThreadLocal<>();
+
+	private int[] types;
+	private Entity[] entities;
+	private double[] amtsX;
+	private double[] amtsY;
+	private int[] componentIds;
+	private Object[] args;
+	private int size;
+
+	/**
+	 * Creates a new, empty CommandBuffer.
+	 */
+	public CommandBuffer() {
+		this.types = new int[DEFAULT_CAPACITY];
+		this.entities = new Entity[DEFAULT_CAPACITY];
+		this.amtsX = new double[DEFAULT_CAPACITY];
+		this.amtsY = new double[DEFAULT_CAPACITY];
+		this.componentIds = new int[DEFAULT_CAPACITY];
+		this.args = new Object[DEFAULT_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the buffer that is active on the current thread.
+	 * 
+	 * @return The buffer that is active on the current thread, or null if
+	 *         changes are currently done immediately.
+	 */
+	public static CommandBuffer getActive() {
+		return ACTIVE.get();
+	}
+
+	/**
+	 * Makes this the active buffer on the current thread. Until
+	 * {@link #end()} is called, changes made on this thread are recorded into
+	 * this buffer.
+	 * 
+	 * @throws IllegalStateException
+	 *             If a buffer is already active on the current thread.
+	 */
+	public void begin() {
+		if (ACTIVE.get() != null) {
+			throw new IllegalStateException(
+					"A command buffer is already active on this thread");
+		}
+		ACTIVE.set(this);
+	}
+
+	/**
+	 * Stops recording into this buffer on the current thread. Changes made on
+	 * this thread are done immediately again.
+	 */
+	public void end() {
+		if (ACTIVE.get() == this) {
+			// The value is cleared rather than removed, so beginning again does
+			// not allocate a new entry for it.
+			ACTIVE.set(null);
+		}
+	}
+
+	/**
+	 * Gets the number of changes recorded in this buffer.
+	 * 
+	 * @return The number of changes recorded in this buffer.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Does every change recorded in this buffer, in the order they were
+	 * recorded, then empties the buffer. This must not be called while this
+	 * buffer is active.
+	 */
+	public void apply() {
+		if (ACTIVE.get() == this) {
+			throw new IllegalStateException(
+					"A command buffer cannot be applied while it is active");
+		}
+		for (int i = 0; i < size; i++) {
+			Entity entity = entities[i];
+			switch (types[i]) {
+			case SPAWN:
+				entity.spawn();
+				break;
+			case MOVE:
+				entity.move((float) amtsX[i], (float) amtsY[i]);
+				break;
+			case MOVE_SWEPT:
+				entity.moveSwept(amtsX[i], amtsY[i]);
+				break;
+			case FIT_AABB:
+				entity.fitAABB((AABB) args[i]);
+				break;
+			case REMOVE:
+				entity.remove();
+				break;
+			case FORCE_REMOVE:
+				entity.forceRemove();
+				break;
+			case REMOVE_COMPONENT:
+				entity.remove((EntityComponent) args[i]);
+				break;
+			case REMOVE_COMPONENT_ID:
+				entity.remove(componentIds[i]);
+				break;
+			case COMPONENT_REMOVED:
+				((EntityComponent) args[i]).onRemove();
+				break;
+			case ATTACH:
+				((EntityComponent) args[i]).applyAttach();
+				break;
+			}
+		}
+		clear();
+	}
+
+	/**
+	 * Empties this buffer without doing any of the recorded changes.
+	 */
+	public void clear() {
+		Arrays.fill(entities, 0, size, null);
+		Arrays.fill(args, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Records that a component has been asked to attach to, or detach from, a
+	 * system shared with other components. When the change is applied, the
+	 * component's {@link EntityComponent#applyAttach()} is called.
+	 * 
+	 * @param component
+	 *            The component being attached.
+	 */
+	public void attach(EntityComponent component) {
+		add(ATTACH, component.getEntity(), 0, 0, -1, component);
+	}
+
+	void spawn(Entity entity) {
+		add(SPAWN, entity, 0, 0, -1, null);
+	}
+
+	void move(Entity entity, float amtX, float amtY) {
+		add(MOVE, entity, amtX, amtY, -1, null);
+	}
+
+	void moveSwept(Entity entity, double amtX, double amtY) {
+		add(MOVE_SWEPT, entity, amtX, amtY, -1, null);
+	}
+
+	void fitAABB(Entity entity, AABB aabb) {
+		add(FIT_AABB, entity, 0, 0, -1, aabb);
+	}
+
+	void remove(Entity entity) {
+		add(REMOVE, entity, 0, 0, -1, null);
+	}
+
+	void forceRemove(Entity entity) {
+		add(FORCE_REMOVE, entity, 0, 0, -1, null);
+	}
+
+	void removeComponent(Entity entity, EntityComponent component) {
+		add(REMOVE_COMPONENT, entity, 0, 0, -1, component);
+	}
+
+	void removeComponent(Entity entity, int id) {
+		add(REMOVE_COMPONENT_ID, entity, 0, 0, id, null);
+	}
+
+	void componentRemoved(EntityComponent component) {
+		add(COMPONENT_REMOVED, component.getEntity(), 0, 0, -1, component);
+	}
+
+	private void add(int type, Entity entity, double amtX, double amtY,
+			int componentId, Object arg) {
+		if (size == types.length) {
+			int capacity = types.length * 2;
+			types = Arrays.copyOf(types, capacity);
+			entities = Arrays.copyOf(entities, capacity);
+			amtsX = Arrays.copyOf(amtsX, capacity);
+			amtsY = Arrays.copyOf(amtsY, capacity);
+			componentIds = Arrays.copyOf(componentIds, capacity);
+			args = Arrays.copyOf(args, capacity);
+		}
+		types[size] = type;
+		entities[size] = entity;
+		amtsX[size] = amtX;
+		amtsY[size] = amtY;
+		componentIds[size] = componentId;
+		args[size] = arg;
+		size++;
+	}
+}
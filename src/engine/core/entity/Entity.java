@@ -5,10 +5,9 @@
 package engine.core.entity;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import engine.components.AudioComponent;
 import engine.components.CollisionComponent;
@@ -17,6 +16,7 @@ import engine.rendering.IRenderContext;
 import engine.space.AABB;
 import engine.space.ISpatialObject;
 import engine.space.ISpatialStructure;
+import engine.space.ISpatialVisitor;
 import engine.util.DoublePair;
 
 /**
@@ -25,25 +25,75 @@ import engine.util.DoublePair;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class Entity implements ISpatialObject, Comparable<Entity> {
-	private static int currentId = 0;
+	/**
+	 * Lists that entities found by {@link Entity#visitInRange} are collected
+	 * into, one for each call in progress on a thread, so visitors can search
+	 * for entities themselves.
+	 */
+	private static class VisitBuffers implements ISpatialVisitor<Entity> {
+		private final List<List<Entity>> buffers;
+		private List<Entity> current;
+		private int depth;
+
+		public VisitBuffers() {
+			this.buffers = new ArrayList<>();
+			this.current = null;
+			this.depth = 0;
+		}
+
+		public List<Entity> push() {
+			if (depth == buffers.size()) {
+				buffers.add(new ArrayList<Entity>());
+			}
+			current = buffers.get(depth++);
+			return current;
+		}
+
+		public void pop() {
+			buffers.get(--depth).clear();
+			current = null;
+		}
+
+		@Override
+		public void visit(Entity entity) {
+			current.add(entity);
+		}
+	}
+
+	private static final EntityComponent[] NO_SLOTS = new EntityComponent[0];
+	private static final ThreadLocal<VisitBuffers> VISIT_BUFFERS =
+			new ThreadLocal<VisitBuffers>() {
+				@Override
+				protected VisitBuffers initialValue() {
+					return new VisitBuffers();
+				}
+			};
 	private ISpatialStructure<Entity> structure;
+	private IDPool ids;
 	private List<EntityComponent> components;
 	private List<EntityComponent> componentsToRemove;
+	// The first component of each type, indexed by component id, so
+	// components can be found without searching.
+	private EntityComponent[] componentSlots;
 	private AABB aabb;
+	private AABB translatedAABB;
 	private int id;
+	// Whether this entity currently holds an id from its pool. Ids are
+	// recycled, so whether the id is still valid in the pool cannot be used
+	// to tell if this entity still holds it.
+	private boolean hasId;
 	private boolean isRemoved;
 	private double x;
 	private double y;
 
-	private static int getNextId() {
-		return currentId++;
-	}
-
 	/**
 	 * Creates a new Entity with minimum necessary construction.
 	 * 
 	 * @param structure
 	 *            The spatial structure this entity will be contained in.
+	 * @param ids
+	 *            The pool this entity's id is allocated from. The id is
+	 *            released when this entity is removed.
 	 * @param posX
 	 *            The location of the entity on the x axis.
 	 * @param posY
@@ -51,16 +101,32 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 * @param posZ
 	 *            The location of the entity on the z axis.
 	 */
-	public Entity(ISpatialStructure<Entity> structure, double posX,
-			double posY, double posZ) {
+	public Entity(ISpatialStructure<Entity> structure, IDPool ids,
+			double posX, double posY, double posZ) {
 		this.structure = structure;
+		this.ids = ids;
 		this.x = posX;
 		this.y = posY;
 		this.aabb = new AABB(0, 0, posZ, 0, 0);
+		this.translatedAABB = null;
 		this.isRemoved = false;
-		this.id = getNextId();
+		this.id = -1;
+		this.hasId = false;
 		this.components = new ArrayList<>();
 		this.componentsToRemove = new ArrayList<>();
+		this.componentSlots = NO_SLOTS;
+
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.spawn(this);
+		} else {
+			spawn();
+		}
+	}
+
+	void spawn() {
+		id = ids.allocate();
+		hasId = true;
 		structure.add(this);
 	}
 
@@ -72,19 +138,34 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *            The AABB this entity must be able to contain.
 	 */
 	public void fitAABB(AABB newAABB) {
-		structure.remove(this);
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.fitAABB(this, newAABB);
+			return;
+		}
+		AABB oldAABB = getAABB();
 		if (aabb.getWidth() == 0.0 && aabb.getHeight() == 0.0) {
 			aabb = newAABB;
 		} else {
 			aabb = aabb.combine(newAABB);
 		}
-		structure.add(this);
+		translatedAABB = null;
+		updateStructure(oldAABB);
+	}
+
+	private void updateStructure(AABB oldAABB) {
+		// An entity that has been forcibly removed no longer holds an id, and
+		// must not be put back into the spatial structure.
+		if (hasId) {
+			structure.update(this, oldAABB);
+		}
 	}
 
 	/**
 	 * Finds and returns a component attached to this entity by id. If more than
 	 * one is found, the first component in the list is returned. If none are
-	 * found, returns null.
+	 * found, returns null. This takes constant time, no matter how many
+	 * components are attached.
 	 * 
 	 * @param id
 	 *            The id of the component. This is typically found with
@@ -93,9 +174,31 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *         found.
 	 */
 	public EntityComponent getComponent(int id) {
-		Iterator<EntityComponent> it = components.iterator();
-		while (it.hasNext()) {
-			EntityComponent current = it.next();
+		if (id < 0) {
+			return findComponent(id);
+		}
+		if (id >= componentSlots.length) {
+			return null;
+		}
+		return componentSlots[id];
+	}
+
+	/**
+	 * Gets whether this entity has a component with a certain id. This takes
+	 * constant time, no matter how many components are attached.
+	 * 
+	 * @param id
+	 *            The id of the component. This is typically found with
+	 *            ComponentClass.ID.
+	 * @return Whether or not a component with the given id is attached.
+	 */
+	public boolean hasComponent(int id) {
+		return getComponent(id) != null;
+	}
+
+	private EntityComponent findComponent(int id) {
+		for (int i = 0; i < components.size(); i++) {
+			EntityComponent current = components.get(i);
 			if (current.getId() == id) {
 				return current;
 			}
@@ -117,19 +220,27 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *            The visitor that will be executed for every entity visited.
 	 */
 	public void visitInRange(int id, AABB range, IEntityVisitor visitor) {
-		Set<Entity> entities = structure.queryRange(new HashSet<Entity>(),
-				range);
-		Iterator<Entity> it = entities.iterator();
-		while (it.hasNext()) {
-			Entity entity = it.next();
-			if (entity.isRemoved) {
-				continue;
-			}
-			EntityComponent component = id == -1 ? null : entity
-					.getComponent(id);
-			if (component != null || id == -1) {
-				visitor.visit(entity, component);
+		// Entities are found before any are visited, so the visitor is free to
+		// change the spatial structure. They are visited in the order the
+		// structure finds them, so the same scene is always visited in the same
+		// order.
+		VisitBuffers buffers = VISIT_BUFFERS.get();
+		List<Entity> entities = buffers.push();
+		try {
+			structure.visitRange(range, buffers);
+			for (int i = 0; i < entities.size(); i++) {
+				Entity entity = entities.get(i);
+				if (entity.isRemoved) {
+					continue;
+				}
+				EntityComponent component = id == -1 ? null : entity
+						.getComponent(id);
+				if (component != null || id == -1) {
+					visitor.visit(entity, component);
+				}
 			}
+		} finally {
+			buffers.pop();
 		}
 	}
 
@@ -141,6 +252,16 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 */
 	public void add(EntityComponent component) {
 		components.add(component);
+		int id = component.getId();
+		if (id < 0) {
+			return;
+		}
+		if (id >= componentSlots.length) {
+			componentSlots = Arrays.copyOf(componentSlots, id + 1);
+		}
+		if (componentSlots[id] == null) {
+			componentSlots[id] = component;
+		}
 	}
 
 	/**
@@ -150,6 +271,11 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *            The component to remove.
 	 */
 	public void remove(EntityComponent component) {
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.removeComponent(this, component);
+			return;
+		}
 		componentsToRemove.add(component);
 	}
 
@@ -163,6 +289,11 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *            ComponentClass.ID.
 	 */
 	public void remove(int id) {
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.removeComponent(this, id);
+			return;
+		}
 		Iterator<EntityComponent> it = components.iterator();
 		while (it.hasNext()) {
 			EntityComponent current = it.next();
@@ -188,14 +319,17 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 * entity and it hits another colliding entity when it moves, then this will
 	 * only move the entity as far as it can without intersecting a colliding
 	 * entity. This function only works on one axis at a time; one of the
-	 * parameters must be 0.
+	 * parameters must be 0. To move on both axes at once, use
+	 * {@link #moveSwept(double, double)}.
 	 * 
 	 * @param amtXIn
 	 *            The amount to move on X.
 	 * @param amtYIn
 	 *            The amount to move on Y.
 	 * @return The amount actually moved on X or Y, depending on which was
-	 *         specified.
+	 *         specified. If a {@link CommandBuffer} is active, the movement is
+	 *         done when the buffer is applied, and the amount requested is
+	 *         returned instead.
 	 * @throws IllegalArgumentException
 	 *             If movement is specified on both axis; this function only
 	 *             works on one axis at a time.
@@ -205,7 +339,11 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 			throw new IllegalArgumentException(
 					"Can only move in 1 dimension per call");
 		}
-		structure.remove(this);
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.move(this, amtXIn, amtYIn);
+			return amtXIn != 0.0f ? amtXIn : amtYIn;
+		}
 		double amtX = (double) amtXIn;
 		double amtY = (double) amtYIn;
 
@@ -216,9 +354,13 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 			amtY = amts.getVal2();
 		}
 
-		x += amtX;
-		y += amtY;
-		structure.add(this);
+		if (amtX != 0.0 || amtY != 0.0) {
+			AABB oldAABB = getAABB();
+			x += amtX;
+			y += amtY;
+			translatedAABB = null;
+			updateStructure(oldAABB);
+		}
 		if (amtX != 0) {
 			return (float) amtX;
 		} else {
@@ -226,6 +368,47 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 		}
 	}
 
+	/**
+	 * Moves this entity by a certain amount on both axes at once. If this
+	 * entity is a colliding entity, the movement stops where it first hits
+	 * another colliding entity, and the rest of the movement slides along the
+	 * surface that was hit. Unlike {@link #move(float, float)}, the path is
+	 * checked as a whole, so entities cannot pass through each other
+	 * diagonally, and this entity is only moved in the spatial structure once.
+	 * 
+	 * @param amtX
+	 *            The amount to move on X.
+	 * @param amtY
+	 *            The amount to move on Y.
+	 * @return The amount actually moved on X and Y. If a {@link CommandBuffer}
+	 *         is active, the movement is done when the buffer is applied, and
+	 *         the amounts requested are returned instead.
+	 */
+	public DoublePair moveSwept(double amtX, double amtY) {
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.moveSwept(this, amtX, amtY);
+			return new DoublePair(amtX, amtY);
+		}
+		CollisionComponent c = (CollisionComponent) getComponent(
+				CollisionComponent.ID);
+		DoublePair amts;
+		if (c != null) {
+			amts = c.resolveSweptCollisions(amtX, amtY);
+		} else {
+			amts = new DoublePair(amtX, amtY);
+		}
+
+		if (amts.getVal1() != 0.0 || amts.getVal2() != 0.0) {
+			AABB oldAABB = getAABB();
+			x += amts.getVal1();
+			y += amts.getVal2();
+			translatedAABB = null;
+			updateStructure(oldAABB);
+		}
+		return amts;
+	}
+
 	/**
 	 * Removes this entity from the spatial structure, and triggers any remove
 	 * actions specified for this entity.
@@ -234,6 +417,11 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 		if (isRemoved) {
 			return;
 		}
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.remove(this);
+			return;
+		}
 		AudioComponent ac = (AudioComponent) getComponent(AudioComponent.ID);
 		if (ac != null) {
 			ac.play("remove");
@@ -254,8 +442,20 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 * cause errors if used inappropriately.
 	 */
 	public void forceRemove() {
+		CommandBuffer buffer = CommandBuffer.getActive();
+		if (buffer != null) {
+			buffer.forceRemove(this);
+			return;
+		}
 		isRemoved = true;
 		structure.remove(this);
+		if (hasId) {
+			hasId = false;
+			ids.release(id);
+			for (int i = 0; i < components.size(); i++) {
+				components.get(i).onRemove();
+			}
+		}
 	}
 
 	/**
@@ -276,12 +476,26 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *            How much time has passed since the last update.
 	 */
 	public void update(double delta) {
-		components.removeAll(componentsToRemove);
-		componentsToRemove.clear();
+		if (!componentsToRemove.isEmpty()) {
+			CommandBuffer buffer = CommandBuffer.getActive();
+			components.removeAll(componentsToRemove);
+			for (int i = 0; i < componentsToRemove.size(); i++) {
+				EntityComponent removed = componentsToRemove.get(i);
+				int id = removed.getId();
+				if (id >= 0 && id < componentSlots.length) {
+					componentSlots[id] = findComponent(id);
+				}
+				if (buffer != null) {
+					buffer.componentRemoved(removed);
+				} else {
+					removed.onRemove();
+				}
+			}
+			componentsToRemove.clear();
+		}
 
-		Iterator<EntityComponent> it = components.iterator();
-		while (it.hasNext()) {
-			it.next().update(delta);
+		for (int i = 0; i < components.size(); i++) {
+			components.get(i).update(delta);
 		}
 	}
 
@@ -296,15 +510,19 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 	 *            The location of the viewport on Y.
 	 */
 	public void render(IRenderContext target, double viewportX, double viewportY) {
-		Iterator<EntityComponent> it = components.iterator();
-		while (it.hasNext()) {
-			it.next().render(target, viewportX, viewportY);
+		for (int i = 0; i < components.size(); i++) {
+			components.get(i).render(target, viewportX, viewportY);
 		}
 	}
 
 	@Override
 	public AABB getAABB() {
-		return translateAABB(aabb);
+		// AABBs are immutable, so the translated AABB can be shared until
+		// this entity moves or changes size.
+		if (translatedAABB == null) {
+			translatedAABB = translateAABB(aabb);
+		}
+		return translatedAABB;
 	}
 
 	/**
@@ -325,6 +543,20 @@ public class Entity implements ISpatialObject, Comparable<Entity> {
 		return y;
 	}
 
+	/**
+	 * Gets the id of this entity. Entities are ordered by this id. The id is
+	 * unique among entities in use with the same IDPool, and its index can be
+	 * found with {@link IDPool#getIndex(int)}.
+	 * <p/>
+	 * Entities created while a {@link CommandBuffer} is active are not given
+	 * an id until the buffer is applied; until then, this returns -1.
+	 * 
+	 * @return The id of this entity.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	@Override
 	public int compareTo(Entity o) {
 		if (id > o.id) {
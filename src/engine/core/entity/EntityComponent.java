@@ -69,4 +69,22 @@ public abstract class EntityComponent {
 	 */
 	public void render(IRenderContext target, double viewportX, double viewportY) {
 	}
+
+	/**
+	 * Called once when this component is removed from its entity, or when its
+	 * entity is removed. Components holding resources outside of the entity
+	 * should release them here.
+	 */
+	public void onRemove() {
+	}
+
+	/**
+	 * Attaches this component to whatever it was last asked to be attached
+	 * to while a {@link CommandBuffer} was active. This is called when the
+	 * change recorded with {@link CommandBuffer#attach(EntityComponent)} is
+	 * applied. Components that can be attached to shared systems should
+	 * override this.
+	 */
+	protected void applyAttach() {
+	}
 }
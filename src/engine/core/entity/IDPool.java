@@ -0,0 +1,181 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.core.entity;
+
+import java.util.Arrays;
+
+/**
+ * Allocates entity ids, and recycles them once they are released.
+ * <p/>
+ * Each id is made of an index and a generation. The index is dense; it is
+ * never larger than the number of ids that have been in use at once, so it can
+ * be used to store data for an entity in an array. The generation is changed
+ * every time an index is recycled, so an id that has been released can be told
+ * apart from a newer id that shares its index.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class IDPool {
+	/** The number of bits of an id used to store its index. */
+	public static final int INDEX_BITS = 20;
+	/** The number of bits of an id used to store its generation. */
+	public static final int GENERATION_BITS = 11;
+	/** The maximum number of ids that can be in use at once. */
+	public static final int MAX_IDS = 1 << INDEX_BITS;
+
+	private static final int INDEX_MASK = MAX_IDS - 1;
+	private static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private int[] generations;
+	private boolean[] inUse;
+	private int numIndices;
+	private int numInUse;
+
+	// Released indices are reused in the order they were released, so an index
+	// goes through as many releases as possible before its generation repeats.
+	private int[] freeIndices;
+	private int freeStart;
+	private int numFree;
+
+	/**
+	 * Creates a new IDPool with no ids in use.
+	 */
+	public IDPool() {
+		this.generations = new int[DEFAULT_CAPACITY];
+		this.inUse = new boolean[DEFAULT_CAPACITY];
+		this.freeIndices = new int[DEFAULT_CAPACITY];
+		this.numIndices = 0;
+		this.numInUse = 0;
+		this.freeStart = 0;
+		this.numFree = 0;
+	}
+
+	/**
+	 * Gets the index of an id. Indices are dense, in the range of (0,
+	 * getNumIndices() - 1).
+	 * 
+	 * @param id
+	 *            The id.
+	 * @return The index of {@code id}.
+	 */
+	public static int getIndex(int id) {
+		return id & INDEX_MASK;
+	}
+
+	/**
+	 * Gets the generation of an id.
+	 * 
+	 * @param id
+	 *            The id.
+	 * @return The generation of {@code id}.
+	 */
+	public static int getGeneration(int id) {
+		return (id >>> INDEX_BITS) & GENERATION_MASK;
+	}
+
+	/**
+	 * Allocates a new id. The id is never negative, and is not returned again
+	 * until it has been released.
+	 * 
+	 * @return A new id.
+	 * @throws IllegalStateException
+	 *             If {@link #MAX_IDS} ids are already in use.
+	 */
+	public int allocate() {
+		int index;
+		if (numFree > 0) {
+			index = freeIndices[freeStart];
+			freeStart = (freeStart + 1) % freeIndices.length;
+			numFree--;
+		} else {
+			if (numIndices == MAX_IDS) {
+				throw new IllegalStateException("Cannot have more than "
+						+ MAX_IDS + " ids in use at once");
+			}
+			if (numIndices == generations.length) {
+				grow();
+			}
+			index = numIndices++;
+		}
+		inUse[index] = true;
+		numInUse++;
+		return (generations[index] << INDEX_BITS) | index;
+	}
+
+	/**
+	 * Releases an id, so its index can be recycled.
+	 * 
+	 * @param id
+	 *            The id to be released.
+	 * @throws IllegalArgumentException
+	 *             If {@code id} is not currently in use.
+	 */
+	public void release(int id) {
+		if (!isValid(id)) {
+			throw new IllegalArgumentException("Id " + id
+					+ " is not in use, and cannot be released");
+		}
+		int index = getIndex(id);
+		inUse[index] = false;
+		generations[index] = (generations[index] + 1) & GENERATION_MASK;
+		numInUse--;
+
+		// Free indices can never outnumber allocated indices, so the queue
+		// always has room.
+		freeIndices[(freeStart + numFree) % freeIndices.length] = index;
+		numFree++;
+	}
+
+	/**
+	 * Gets whether an id is currently in use. Ids that have been released
+	 * are no longer valid, even once their index has been recycled.
+	 * 
+	 * @param id
+	 *            The id to be checked.
+	 * @return Whether or not {@code id} is currently in use.
+	 */
+	public boolean isValid(int id) {
+		if (id < 0) {
+			return false;
+		}
+		int index = getIndex(id);
+		return index < numIndices && inUse[index]
+				&& generations[index] == getGeneration(id);
+	}
+
+	/**
+	 * Gets the number of ids currently in use.
+	 * 
+	 * @return The number of ids currently in use.
+	 */
+	public int size() {
+		return numInUse;
+	}
+
+	/**
+	 * Gets the number of indices that have been used by this pool. Every index
+	 * is less than this value, so it is the size an array needs to be to hold
+	 * data for every id.
+	 * 
+	 * @return The number of indices that have been used by this pool.
+	 */
+	public int getNumIndices() {
+		return numIndices;
+	}
+
+	private void grow() {
+		int capacity = Math.min(generations.length * 2, MAX_IDS);
+		generations = Arrays.copyOf(generations, capacity);
+		inUse = Arrays.copyOf(inUse, capacity);
+
+		int[] newFree = new int[capacity];
+		for (int i = 0; i < numFree; i++) {
+			newFree[i] = freeIndices[(freeStart + i) % freeIndices.length];
+		}
+		freeIndices = newFree;
+		freeStart = 0;
+	}
+}
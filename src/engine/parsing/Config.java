@@ -10,19 +10,48 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import engine.util.Debug;
 
 /**
  * Loads and parses a configuration file.
+ * <p/>
+ * An entry whose value starts with '$' refers to the entry named by the rest
+ * of its value. Every reference is followed, and every value is parsed, once
+ * when the file is loaded, so reading entries is just a lookup.
+ * <p/>
+ * Entries can be read from any thread. The file can be loaded again, either
+ * with {@link #reload()} or automatically whenever it changes with
+ * {@link #startWatching()}, in which case every entry is replaced at once:
+ * each read sees either all of the old entries or all of the new ones.
  * 
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class Config {
-	private Map<String, String> map;
+	// Files are often written in several steps, so changes are only loaded
+	// once the file has not changed for this long.
+	private static final long SETTLE_MILLIS = 50;
+
+	private final String fileName;
+	private final AtomicReference<Snapshot> snapshot;
+	private WatchService watchService;
 
 	/**
 	 * Loads and parses a configuration file.
@@ -34,43 +63,107 @@ public class Config {
 	 * @throws IOException
 	 *             If the file cannot be loaded.
 	 * @throws ParseException
-	 *             If the file cannot be properly parsed.
+	 *             If the file cannot be properly parsed, or any entries refer
+	 *             to each other in a cycle.
 	 */
 	public Config(String fileName) throws FileNotFoundException, IOException,
 			ParseException {
-		map = new HashMap<String, String>();
-		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
-			String line;
-			int lineNumber = 0;
-			while ((line = br.readLine()) != null) {
-				lineNumber++;
-				if (line.isEmpty()) {
-					continue;
-				}
-
-				char start = line.charAt(0);
-				if (start == '[' || start == '#') {
-					continue;
-				}
-				String[] tokens = line.split("=");
-				if (tokens.length != 2) {
-					throw new ParseException("Line has too many '=' (line "
-							+ lineNumber + ")", lineNumber);
-				}
-
-				map.put(tokens[0].trim(), tokens[1].trim());
-			}
-		}
+		this.fileName = fileName;
+		this.snapshot = new AtomicReference<Snapshot>(load(fileName));
 	}
 
 	/**
 	 * Creates a representation of a configuration file.
 	 * 
 	 * @param map
-	 *            The map of values in the configuration file.
+	 *            The map of values in the configuration file. It is copied,
+	 *            so changing it later does not change this.
+	 * @throws IllegalArgumentException
+	 *             If any entries refer to each other in a cycle.
 	 */
 	public Config(Map<String, String> map) {
-		this.map = map;
+		this.fileName = null;
+		try {
+			this.snapshot = new AtomicReference<Snapshot>(new Snapshot(
+					new HashMap<String, String>(map),
+					new HashMap<String, Integer>()));
+		} catch (ParseException ex) {
+			throw new IllegalArgumentException(ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Loads the configuration file again, and replaces every entry with the
+	 * ones in the file. If the file cannot be loaded, every entry is left as
+	 * it was.
+	 * 
+	 * @throws FileNotFoundException
+	 *             If the file cannot be found.
+	 * @throws IOException
+	 *             If the file cannot be loaded.
+	 * @throws ParseException
+	 *             If the file cannot be properly parsed, or any entries refer
+	 *             to each other in a cycle.
+	 * @throws IllegalStateException
+	 *             If this was not loaded from a file.
+	 */
+	public void reload() throws FileNotFoundException, IOException,
+			ParseException {
+		checkHasFile();
+		snapshot.set(load(fileName));
+	}
+
+	/**
+	 * Starts watching the configuration file, and reloading it whenever it
+	 * changes. The file is watched on a separate thread, so the entries can
+	 * change at any time until {@link #stopWatching()} is called. If the
+	 * changed file cannot be loaded, the error is logged and every entry is
+	 * left as it was.
+	 * <p/>
+	 * This and {@link #stopWatching()} should only be called from one
+	 * thread.
+	 * 
+	 * @throws IOException
+	 *             If the file cannot be watched.
+	 * @throws IllegalStateException
+	 *             If this was not loaded from a file, or is already watching
+	 *             it.
+	 */
+	public void startWatching() throws IOException {
+		checkHasFile();
+		if (watchService != null) {
+			throw new IllegalStateException("The file is already watched");
+		}
+		// Only directories can be watched, so the directory containing the
+		// file is watched for changes to the file.
+		final Path file = Paths.get(fileName).toAbsolutePath();
+		final WatchService service = file.getFileSystem().newWatchService();
+		file.getParent().register(service,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		Thread watcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch(service, file.getFileName());
+			}
+		}, "Config Watcher");
+		watcher.setDaemon(true);
+		watchService = service;
+		watcher.start();
+	}
+
+	/**
+	 * Stops watching the configuration file. Does nothing if it is not being
+	 * watched.
+	 * 
+	 * @throws IOException
+	 *             If the file cannot stop being watched.
+	 */
+	public void stopWatching() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchService = null;
+		}
 	}
 
 	/**
@@ -83,7 +176,8 @@ public class Config {
 	 */
 	public void write(String fileName) throws IOException {
 		try (BufferedWriter bw = new BufferedWriter(new FileWriter(fileName))) {
-			Iterator<Entry<String, String>> it = map.entrySet().iterator();
+			Iterator<Entry<String, String>> it = snapshot.get().entries
+					.entrySet().iterator();
 			while (it.hasNext()) {
 				Entry<String, String> pair = it.next();
 				String line = pair.getKey() + "=" + pair.getValue() + "\n";
@@ -100,11 +194,7 @@ public class Config {
 	 * @return The string assigned to that entry.
 	 */
 	public String getString(String entry) {
-		String result = map.get(entry);
-		if (result != null && result.charAt(0) == '$') {
-			return getString(result.substring(1));
-		}
-		return result;
+		return getString(snapshot.get().values.get(entry));
 	}
 
 	/**
@@ -115,7 +205,7 @@ public class Config {
 	 * @return The integer assigned to that entry.
 	 */
 	public int getInt(String entry) {
-		return Integer.parseInt(getString(entry));
+		return getInt(snapshot.get().values.get(entry));
 	}
 
 	/**
@@ -126,7 +216,7 @@ public class Config {
 	 * @return The double assigned to that entry.
 	 */
 	public double getDouble(String entry) {
-		return Double.parseDouble(getString(entry));
+		return getDouble(snapshot.get().values.get(entry));
 	}
 
 	/**
@@ -137,7 +227,8 @@ public class Config {
 	 * @return The boolean assigned to that entry.
 	 */
 	public boolean getBoolean(String entry) {
-		return Boolean.parseBoolean(getString(entry));
+		Value value = snapshot.get().values.get(entry);
+		return value != null && value.booleanValue;
 	}
 
 	/**
@@ -152,11 +243,7 @@ public class Config {
 	 *         assigned to the default entry.
 	 */
 	public String getStringWithDefault(String entry, String defaultEntry) {
-		String result = getString(entry);
-		if (result == null) {
-			result = getString(defaultEntry);
-		}
-		return result;
+		return getString(getValueWithDefault(entry, defaultEntry));
 	}
 
 	/**
@@ -171,7 +258,7 @@ public class Config {
 	 *         assigned to the default entry.
 	 */
 	public int getIntWithDefault(String entry, String defaultEntry) {
-		return Integer.parseInt(getStringWithDefault(entry, defaultEntry));
+		return getInt(getValueWithDefault(entry, defaultEntry));
 	}
 
 	/**
@@ -186,7 +273,7 @@ public class Config {
 	 *         assigned to the default entry.
 	 */
 	public double getDoubleWithDefault(String entry, String defaultEntry) {
-		return Double.parseDouble(getStringWithDefault(entry, defaultEntry));
+		return getDouble(getValueWithDefault(entry, defaultEntry));
 	}
 
 	/**
@@ -201,6 +288,199 @@ public class Config {
 	 *         assigned to the default entry.
 	 */
 	public boolean getBooleanWithDefault(String entry, String defaultEntry) {
-		return Boolean.parseBoolean(getStringWithDefault(entry, defaultEntry));
+		Value value = getValueWithDefault(entry, defaultEntry);
+		return value != null && value.booleanValue;
+	}
+
+	private Value getValueWithDefault(String entry, String defaultEntry) {
+		// The snapshot is only read once, so both entries come from the same
+		// version of the file.
+		Map<String, Value> values = snapshot.get().values;
+		Value result = values.get(entry);
+		if (result == null) {
+			result = values.get(defaultEntry);
+		}
+		return result;
+	}
+
+	private static String getString(Value value) {
+		return value == null ? null : value.string;
+	}
+
+	private static int getInt(Value value) {
+		if (value == null || !value.isInt) {
+			// Parsing the value again throws the same exception that it
+			// always has.
+			return Integer.parseInt(getString(value));
+		}
+		return value.intValue;
+	}
+
+	private static double getDouble(Value value) {
+		if (value == null || !value.isDouble) {
+			return Double.parseDouble(getString(value));
+		}
+		return value.doubleValue;
+	}
+
+	private void checkHasFile() {
+		if (fileName == null) {
+			throw new IllegalStateException("This configuration was not "
+					+ "loaded from a file");
+		}
+	}
+
+	private void watch(WatchService service, Path name) {
+		try {
+			while (true) {
+				boolean isChanged = hasChanged(service.take(), name);
+				WatchKey key;
+				while ((key = service.poll(SETTLE_MILLIS,
+						TimeUnit.MILLISECONDS)) != null) {
+					isChanged |= hasChanged(key, name);
+				}
+				if (!isChanged) {
+					continue;
+				}
+				try {
+					reload();
+				} catch (IOException | ParseException ex) {
+					Debug.log("Could not reload " + fileName + ": "
+							+ ex.getMessage());
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException ex) {
+			// The file is no longer being watched.
+		}
+	}
+
+	private static boolean hasChanged(WatchKey key, Path name) {
+		boolean result = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			// If too many events happened, they are not all reported, so the
+			// file may have changed.
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW
+					|| name.equals(event.context())) {
+				result = true;
+			}
+		}
+		key.reset();
+		return result;
+	}
+
+	private static Snapshot load(String fileName)
+			throws FileNotFoundException, IOException, ParseException {
+		Map<String, String> entries = new HashMap<String, String>();
+		Map<String, Integer> lineNumbers = new HashMap<String, Integer>();
+		try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = br.readLine()) != null) {
+				lineNumber++;
+				if (line.isEmpty()) {
+					continue;
+				}
+
+				char start = line.charAt(0);
+				if (start == '[' || start == '#') {
+					continue;
+				}
+				String[] tokens = line.split("=");
+				if (tokens.length != 2) {
+					throw new ParseException("Line has too many '=' (line "
+							+ lineNumber + ")", lineNumber);
+				}
+
+				String key = tokens[0].trim();
+				entries.put(key, tokens[1].trim());
+				lineNumbers.put(key, lineNumber);
+			}
+		}
+		return new Snapshot(entries, lineNumbers);
+	}
+
+	/**
+	 * Every entry in a configuration file, with all references followed and
+	 * all values parsed. A snapshot is never changed once it is created.
+	 */
+	private static class Snapshot {
+		private final Map<String, String> entries;
+		private final Map<String, Value> values;
+
+		public Snapshot(Map<String, String> entries,
+				Map<String, Integer> lineNumbers) throws ParseException {
+			this.entries = Collections.unmodifiableMap(entries);
+			Map<String, Value> values = new HashMap<String, Value>();
+			for (Entry<String, String> entry : entries.entrySet()) {
+				String value = resolve(entry.getKey(), entry.getValue(),
+						entries, lineNumbers);
+				// Entries that refer to entries that do not exist have no
+				// value, just like entries that do not exist.
+				if (value != null) {
+					values.put(entry.getKey(), new Value(value));
+				}
+			}
+			this.values = Collections.unmodifiableMap(values);
+		}
+
+		private static String resolve(String key, String value,
+				Map<String, String> entries, Map<String, Integer> lineNumbers)
+				throws ParseException {
+			if (value == null || !value.startsWith("$")) {
+				return value;
+			}
+			List<String> names = new ArrayList<String>();
+			names.add(key);
+			while (value != null && value.startsWith("$")) {
+				String name = value.substring(1);
+				if (names.contains(name)) {
+					names.add(name);
+					String message = "Entries refer to each other in a cycle: "
+							+ names;
+					Integer lineNumber = lineNumbers.get(key);
+					if (lineNumber == null) {
+						throw new ParseException(message, 0);
+					}
+					throw new ParseException(message + " (line " + lineNumber
+							+ ")", lineNumber);
+				}
+				names.add(name);
+				value = entries.get(name);
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * The value of an entry, parsed as every type it can be read as.
+	 */
+	private static class Value {
+		private final String string;
+		private final boolean isInt;
+		private final int intValue;
+		private final boolean isDouble;
+		private final double doubleValue;
+		private final boolean booleanValue;
+
+		public Value(String string) {
+			this.string = string;
+			Integer intValue = null;
+			try {
+				intValue = Integer.parseInt(string);
+			} catch (NumberFormatException ex) {
+				// The value is not an int, so reading it as one will fail.
+			}
+			Double doubleValue = null;
+			try {
+				doubleValue = Double.parseDouble(string);
+			} catch (NumberFormatException ex) {
+				// The value is not a double, so reading it as one will fail.
+			}
+			this.isInt = intValue != null;
+			this.intValue = isInt ? intValue : 0;
+			this.isDouble = doubleValue != null;
+			this.doubleValue = isDouble ? doubleValue : 0.0;
+			this.booleanValue = Boolean.parseBoolean(string);
+		}
 	}
 }
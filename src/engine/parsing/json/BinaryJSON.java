@@ -0,0 +1,518 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.parsing.json;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads or writes JSON values in a compact binary format, which loads much
+ * faster than JSON text.
+ * <p/>
+ * Keys are stored once each, in a table of strings, and numbers are stored
+ * as binary longs and doubles rather than as text. Every object and array
+ * stores where each of its values is, so any element can be found without
+ * reading the others, and any member can be found with a binary search.
+ * <p/>
+ * Binary files are memory mapped rather than read into memory, and values
+ * are only read from the file when they are used. They are read as ordinary
+ * JSONValues; objects and arrays cannot be changed until something is added
+ * to them, at which point they are copied.
+ * <p/>
+ * JSON files can be compiled into binary files ahead of time with
+ * {@code java engine.parsing.json.BinaryJSON input.json output.bin}.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class BinaryJSON {
+	// "BJSN" when the file is read as text.
+	private static final int MAGIC = 0x4E534A42;
+	private static final int VERSION = 1;
+	// The magic number, version, offset of the key table and offset of the
+	// root value.
+	private static final int HEADER_SIZE = 16;
+	private static final int DEFAULT_CAPACITY = 4096;
+
+	private static final byte OBJECT = 0;
+	private static final byte ARRAY = 1;
+	private static final byte STRING = 2;
+	private static final byte INTEGER = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte TRUE = 5;
+	private static final byte FALSE = 6;
+	private static final byte NULL = 7;
+
+	private JSONValue value;
+
+	/**
+	 * Loads a binary JSON file.
+	 * 
+	 * @param fileName
+	 *            The name and path to the file of interest.
+	 * @throws IOException
+	 *             If the file cannot be loaded, or is not a binary JSON file.
+	 */
+	public BinaryJSON(String fileName) throws IOException {
+		ByteBuffer buffer;
+		// The mapping stays valid after the file is closed.
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+				FileChannel channel = file.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException(fileName + " is not a binary JSON file");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(fileName + " has version "
+					+ buffer.getInt(4) + ", but only version " + VERSION
+					+ " can be loaded");
+		}
+		Source source = new Source(buffer, buffer.getInt(8));
+		value = source.read(buffer.getInt(12));
+	}
+
+	/**
+	 * Wraps a JSON value for writing.
+	 * 
+	 * @param value
+	 *            The value to write to file.
+	 */
+	public BinaryJSON(JSONValue value) {
+		this.value = value;
+	}
+
+	/**
+	 * Compiles a JSON file into a binary JSON file.
+	 * 
+	 * @param args
+	 *            The name and path of the JSON file, followed by the name and
+	 *            path of the binary file to write.
+	 * @throws IOException
+	 *             If either file cannot be used.
+	 * @throws ParseException
+	 *             If the JSON file cannot be properly parsed.
+	 */
+	public static void main(String[] args) throws IOException, ParseException {
+		if (args.length != 2) {
+			System.err.println("Usage: java engine.parsing.json.BinaryJSON "
+					+ "input.json output.bin");
+			System.exit(1);
+		}
+		new BinaryJSON(new JSON(args[0]).get()).write(args[1]);
+	}
+
+	/**
+	 * Writes a new binary JSON file.
+	 * 
+	 * @param fileName
+	 *            The name and path to the file to write to.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void write(String fileName) throws IOException {
+		ByteBuffer buffer = new Compiler(value).getResult();
+		try (FileOutputStream file = new FileOutputStream(fileName);
+				FileChannel channel = file.getChannel()) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	/**
+	 * Gets the JSONValue for this object
+	 * 
+	 * @return The JSONValue for this object.
+	 */
+	public JSONValue get() {
+		return value;
+	}
+
+	/**
+	 * Reads values from a binary JSON file, as they are used.
+	 */
+	private static class Source {
+		private final ByteBuffer buffer;
+		private final String[] keys;
+
+		public Source(ByteBuffer buffer, int keysOffset) {
+			this.buffer = buffer;
+			this.keys = new String[buffer.getInt(keysOffset)];
+			int offset = keysOffset + 4;
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = readString(offset);
+				offset += 4 + buffer.getInt(offset);
+			}
+		}
+
+		public JSONValue read(int offset) {
+			byte type = buffer.get(offset);
+			switch (type) {
+			case OBJECT:
+				return new JSONObject(new ObjectView(offset + 5,
+						buffer.getInt(offset + 1)));
+			case ARRAY:
+				return new JSONArray(new ArrayView(offset + 5,
+						buffer.getInt(offset + 1)));
+			case STRING:
+				return new JSONString(readString(offset + 1));
+			case INTEGER:
+				return new JSONNumber(buffer.getLong(offset + 1));
+			case DOUBLE:
+				return new JSONNumber(buffer.getDouble(offset + 1));
+			case TRUE:
+				return JSONLiteral.TRUE;
+			case FALSE:
+				return JSONLiteral.FALSE;
+			case NULL:
+				return JSONLiteral.NULL;
+			default:
+				throw new IllegalStateException("Value at " + offset
+						+ " has invalid type " + type);
+			}
+		}
+
+		private String readString(int offset) {
+			int length = buffer.getInt(offset);
+			// UTF-8 never uses fewer bytes than UTF-16 uses chars.
+			char[] chars = new char[length];
+			int numChars = 0;
+			int i = offset + 4;
+			int end = i + length;
+			while (i < end) {
+				int b = buffer.get(i++) & 0xFF;
+				if (b < 0x80) {
+					chars[numChars++] = (char) b;
+				} else if (b < 0xE0) {
+					chars[numChars++] = (char) (((b & 0x1F) << 6)
+							| (buffer.get(i++) & 0x3F));
+				} else if (b < 0xF0) {
+					chars[numChars++] = (char) (((b & 0x0F) << 12)
+							| ((buffer.get(i++) & 0x3F) << 6)
+							| (buffer.get(i++) & 0x3F));
+				} else {
+					int codePoint = ((b & 0x07) << 18)
+							| ((buffer.get(i++) & 0x3F) << 12)
+							| ((buffer.get(i++) & 0x3F) << 6)
+							| (buffer.get(i++) & 0x3F);
+					chars[numChars++] = Character.highSurrogate(codePoint);
+					chars[numChars++] = Character.lowSurrogate(codePoint);
+				}
+			}
+			return new String(chars, 0, numChars);
+		}
+
+		/**
+		 * The members of an object, as pairs of key indices and value offsets
+		 * sorted by key.
+		 */
+		private class ObjectView extends AbstractMap<String, JSONValue> {
+			private final int start;
+			private final int size;
+
+			public ObjectView(int start, int size) {
+				this.start = start;
+				this.size = size;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return find(key) != -1;
+			}
+
+			@Override
+			public JSONValue get(Object key) {
+				int index = find(key);
+				return index == -1 ? null : getValue(index);
+			}
+
+			@Override
+			public Set<Map.Entry<String, JSONValue>> entrySet() {
+				return new AbstractSet<Map.Entry<String, JSONValue>>() {
+					@Override
+					public int size() {
+						return size;
+					}
+
+					@Override
+					public Iterator<Map.Entry<String, JSONValue>> iterator() {
+						return new Iterator<Map.Entry<String, JSONValue>>() {
+							private int index = 0;
+
+							@Override
+							public boolean hasNext() {
+								return index < size;
+							}
+
+							@Override
+							public Map.Entry<String, JSONValue> next() {
+								if (index == size) {
+									throw new NoSuchElementException();
+								}
+								Map.Entry<String, JSONValue> result =
+										new AbstractMap.SimpleImmutableEntry<>(
+												getKey(index), getValue(index));
+								index++;
+								return result;
+							}
+
+							@Override
+							public void remove() {
+								throw new UnsupportedOperationException();
+							}
+						};
+					}
+				};
+			}
+
+			private String getKey(int index) {
+				return keys[buffer.getInt(start + index * 8)];
+			}
+
+			private JSONValue getValue(int index) {
+				return read(buffer.getInt(start + index * 8 + 4));
+			}
+
+			private int find(Object key) {
+				if (!(key instanceof String)) {
+					return -1;
+				}
+				int low = 0;
+				int high = size - 1;
+				while (low <= high) {
+					int mid = (low + high) >>> 1;
+					int comparison = getKey(mid).compareTo((String) key);
+					if (comparison < 0) {
+						low = mid + 1;
+					} else if (comparison > 0) {
+						high = mid - 1;
+					} else {
+						return mid;
+					}
+				}
+				return -1;
+			}
+		}
+
+		/**
+		 * The elements of an array, as value offsets.
+		 */
+		private class ArrayView extends AbstractList<JSONValue> implements
+				RandomAccess {
+			private final int start;
+			private final int size;
+
+			public ArrayView(int start, int size) {
+				this.start = start;
+				this.size = size;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public JSONValue get(int index) {
+				if (index < 0 || index >= size) {
+					throw new IndexOutOfBoundsException("Index: " + index
+							+ ", Size: " + size);
+				}
+				return read(buffer.getInt(start + index * 4));
+			}
+		}
+	}
+
+	/**
+	 * Writes a value, and everything in it, in the binary format. Values are
+	 * written before anything containing them, so every offset written is
+	 * already known.
+	 */
+	private static class Compiler {
+		private ByteBuffer buffer;
+		private final Map<String, Integer> keyIndices;
+		private final Map<JSONValue, Integer> valueOffsets;
+
+		public Compiler(JSONValue value) {
+			this.buffer = ByteBuffer.allocate(DEFAULT_CAPACITY).order(
+					ByteOrder.LITTLE_ENDIAN);
+			this.keyIndices = new HashMap<String, Integer>();
+			this.valueOffsets = new HashMap<JSONValue, Integer>();
+
+			// Keys are numbered in sorted order, so the members of each object
+			// are sorted both by key and by key index.
+			Set<String> keys = new TreeSet<String>();
+			addKeys(value, keys);
+			buffer.position(HEADER_SIZE);
+			int keysOffset = reserve(4);
+			buffer.putInt(keys.size());
+			for (String key : keys) {
+				keyIndices.put(key, keyIndices.size());
+				writeString(key);
+			}
+			int rootOffset = write(value);
+
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			buffer.putInt(8, keysOffset);
+			buffer.putInt(12, rootOffset);
+			buffer.flip();
+		}
+
+		public ByteBuffer getResult() {
+			return buffer;
+		}
+
+		private static void addKeys(JSONValue value, Set<String> keys) {
+			if (value.isObject()) {
+				for (Map.Entry<String, JSONValue> member : value.asObject()
+						.entrySet()) {
+					keys.add(member.getKey());
+					addKeys(member.getValue(), keys);
+				}
+			} else if (value.isArray()) {
+				List<JSONValue> elements = value.asArray();
+				for (int i = 0; i < elements.size(); i++) {
+					addKeys(elements.get(i), keys);
+				}
+			}
+		}
+
+		private int write(JSONValue value) {
+			if (value.isObject()) {
+				return writeObject(value.asObject());
+			} else if (value.isArray()) {
+				return writeArray(value.asArray());
+			}
+
+			// Values that are not objects or arrays are only written once, and
+			// every use of them refers to the same copy.
+			Integer offset = valueOffsets.get(value);
+			if (offset != null) {
+				return offset;
+			}
+			int result;
+			if (value.isString()) {
+				result = reserve(1);
+				buffer.put(STRING);
+				writeString(value.asString());
+			} else if (value.isNumber()) {
+				result = reserve(9);
+				if (((JSONNumber) value).isInteger()) {
+					buffer.put(INTEGER).putLong(value.asLong());
+				} else {
+					buffer.put(DOUBLE).putDouble(value.asDouble());
+				}
+			} else if (value.isBoolean()) {
+				result = reserve(1);
+				buffer.put(value.asBoolean() ? TRUE : FALSE);
+			} else {
+				result = reserve(1);
+				buffer.put(NULL);
+			}
+			valueOffsets.put(value, result);
+			return result;
+		}
+
+		private int writeObject(Map<String, JSONValue> members) {
+			String[] keys = members.keySet().toArray(
+					new String[members.size()]);
+			Arrays.sort(keys);
+			int[] offsets = new int[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				offsets[i] = write(members.get(keys[i]));
+			}
+
+			int result = reserve(5 + keys.length * 8);
+			buffer.put(OBJECT).putInt(keys.length);
+			for (int i = 0; i < keys.length; i++) {
+				buffer.putInt(keyIndices.get(keys[i])).putInt(offsets[i]);
+			}
+			return result;
+		}
+
+		private int writeArray(List<JSONValue> elements) {
+			int[] offsets = new int[elements.size()];
+			for (int i = 0; i < offsets.length; i++) {
+				offsets[i] = write(elements.get(i));
+			}
+
+			int result = reserve(5 + offsets.length * 4);
+			buffer.put(ARRAY).putInt(offsets.length);
+			for (int i = 0; i < offsets.length; i++) {
+				buffer.putInt(offsets[i]);
+			}
+			return result;
+		}
+
+		private void writeString(String value) {
+			// Strings are written as UTF-8, except that surrogates that are
+			// not part of a pair, which UTF-8 cannot represent, are written
+			// like any other char rather than being replaced. This way every
+			// string that can be parsed from JSON text is read back exactly.
+			int start = reserve(4 + value.length() * 3);
+			buffer.position(start + 4);
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c < 0x80) {
+					buffer.put((byte) c);
+				} else if (c < 0x800) {
+					buffer.put((byte) (0xC0 | (c >> 6)));
+					buffer.put((byte) (0x80 | (c & 0x3F)));
+				} else if (Character.isHighSurrogate(c)
+						&& i + 1 < value.length()
+						&& Character.isLowSurrogate(value.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c,
+							value.charAt(++i));
+					buffer.put((byte) (0xF0 | (codePoint >> 18)));
+					buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+					buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+					buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+				} else {
+					buffer.put((byte) (0xE0 | (c >> 12)));
+					buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+					buffer.put((byte) (0x80 | (c & 0x3F)));
+				}
+			}
+			buffer.putInt(start, buffer.position() - start - 4);
+		}
+
+		private int reserve(int amount) {
+			if (buffer.remaining() < amount) {
+				ByteBuffer newBuffer = ByteBuffer.allocate(
+						Math.max(buffer.capacity() * 2, buffer.position()
+								+ amount)).order(ByteOrder.LITTLE_ENDIAN);
+				buffer.flip();
+				newBuffer.put(buffer);
+				buffer = newBuffer;
+			}
+			return buffer.position();
+		}
+	}
+}
@@ -4,14 +4,9 @@
  */
 package engine.parsing.json;
 
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.ParseException;
 
-import engine.parsing.TokenReader;
-
 /**
  * Reads or writes JSON files.
  * 
@@ -31,15 +26,55 @@ public class JSON {
 	 *             If the file cannot be properly parsed.
 	 */
 	public JSON(String fileName) throws IOException, ParseException {
-		TokenReader tokens;
-		tokens = new TokenReader(new FileReader(fileName));
-		value = JSONValue.parse(tokens, tokens.next());
+		this(fileName, false);
+	}
 
-		String token;
-		tokens.parseAssert((token = tokens.next()) == null,
-				"Expected EOF; instead got " + token);
+	/**
+	 * Loads a JSON file, optionally without parsing its objects and arrays
+	 * until they are used.
+	 * <p/>
+	 * A lazily loaded file is still checked completely when it is loaded,
+	 * but each object and array only parses its members the first time
+	 * anything is read from it. This makes loading large files that are only
+	 * partly used much faster, and uses much less memory, although the text
+	 * of the file is kept in memory for as long as any part of it has not
+	 * been parsed. The values of a lazily loaded file must not be used from
+	 * more than one thread at once, even if they are only being read.
+	 * 
+	 * @param fileName
+	 *            The name and path to the file of interest.
+	 * @param isLazy
+	 *            Whether objects and arrays are parsed when they are first
+	 *            used, rather than all at once.
+	 * @throws IOException
+	 *             If the file cannot be loaded.
+	 * @throws ParseException
+	 *             If the file cannot be properly parsed.
+	 */
+	public JSON(String fileName, boolean isLazy) throws IOException,
+			ParseException {
+		if (isLazy) {
+			value = JSONDocument.load(fileName);
+			return;
+		}
+		try (JSONReader reader = JSONReader.open(fileName)) {
+			value = parse(reader);
+		}
+	}
 
-		tokens.close();
+	/**
+	 * Parses a whole JSON document from a reader.
+	 * 
+	 * @param reader
+	 *            The reader to parse from. Nothing should have been read from
+	 *            it yet.
+	 * @throws IOException
+	 *             If the reader cannot read its source.
+	 * @throws ParseException
+	 *             If the source cannot be properly parsed.
+	 */
+	public JSON(JSONReader reader) throws IOException, ParseException {
+		value = parse(reader);
 	}
 
 	/**
@@ -61,9 +96,24 @@ public class JSON {
 	 *             If the file cannot be written.
 	 */
 	public void write(String fileName) throws IOException {
-		BufferedWriter br = new BufferedWriter(new FileWriter(fileName));
-		value.write(br);
-		br.close();
+		write(fileName, false);
+	}
+
+	/**
+	 * Writes a new JSON file, encoded in UTF-8.
+	 * 
+	 * @param fileName
+	 *            The name and path to the file to write to.
+	 * @param isCompact
+	 *            Whether the file is written without any whitespace, rather
+	 *            than so it is easy to read.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public void write(String fileName, boolean isCompact) throws IOException {
+		try (JSONWriter writer = JSONWriter.open(fileName, isCompact)) {
+			writer.value(value);
+		}
 	}
 
 	/**
@@ -74,4 +124,13 @@ public class JSON {
 	public JSONValue get() {
 		return value;
 	}
+
+	private static JSONValue parse(JSONReader reader) throws IOException,
+			ParseException {
+		reader.next();
+		JSONValue result = JSONValue.parse(reader);
+		// Anything after the value is an error, rather than being ignored.
+		reader.next();
+		return result;
+	}
 }
@@ -5,11 +5,9 @@
 package engine.parsing.json;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
 import engine.parsing.TokenReader;
@@ -20,6 +18,26 @@ import engine.parsing.TokenReader;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class JSONArray extends JSONValue {
+	/**
+	 * Parses the value that a reader has just started reading.
+	 * 
+	 * @param reader
+	 *            The reader to parse from.
+	 * @return A JSONValue parsed from the reader
+	 * @throws IOException
+	 *             If the reader cannot read its source.
+	 * @throws ParseException
+	 *             If the source cannot be parsed into a JSONValue.
+	 */
+	public static JSONValue parse(JSONReader reader) throws IOException,
+			ParseException {
+		JSONArray result = new JSONArray();
+		while (reader.next() != JSONReader.Event.END_ARRAY) {
+			result.add(JSONValue.parse(reader));
+		}
+		return result;
+	}
+
 	/**
 	 * Parses a value from a token source.
 	 * 
@@ -32,7 +50,9 @@ public class JSONArray extends JSONValue {
 	 *             If a token cannot be read
 	 * @throws ParseException
 	 *             If the tokens cannot be parsed into a JSONValue.
+	 * @deprecated Use {@link #parse(JSONReader)}, which is much faster.
 	 */
+	@Deprecated
 	public static JSONValue parse(TokenReader tokens, String token)
 			throws IOException, ParseException {
 		JSONArray result = new JSONArray();
@@ -54,6 +74,9 @@ public class JSONArray extends JSONValue {
 	}
 
 	private List<JSONValue> values;
+	private JSONDocument document;
+	private int index;
+	private boolean isReadOnly;
 
 	/**
 	 * Creates a new JSONArray.
@@ -62,6 +85,33 @@ public class JSONArray extends JSONValue {
 		values = new ArrayList<JSONValue>();
 	}
 
+	/**
+	 * Creates a JSONArray whose elements are parsed from a document the first
+	 * time they are used.
+	 * 
+	 * @param document
+	 *            The document containing the array.
+	 * @param index
+	 *            The index of the array in the document.
+	 */
+	JSONArray(JSONDocument document, int index) {
+		this.values = null;
+		this.document = document;
+		this.index = index;
+	}
+
+	/**
+	 * Creates a JSONArray with the elements in a list that cannot be changed.
+	 * The list is copied the first time an element is added.
+	 * 
+	 * @param elements
+	 *            The elements of the array.
+	 */
+	JSONArray(List<JSONValue> elements) {
+		this.values = elements;
+		this.isReadOnly = true;
+	}
+
 	/**
 	 * Creates a new JSONArray from an existing array.
 	 * 
@@ -306,6 +356,11 @@ public class JSONArray extends JSONValue {
 		if (value == null) {
 			value = JSONLiteral.NULL;
 		}
+		load();
+		if (isReadOnly) {
+			values = new ArrayList<JSONValue>(values);
+			isReadOnly = false;
+		}
 		values.add(value);
 	}
 
@@ -406,16 +461,19 @@ public class JSONArray extends JSONValue {
 
 	@Override
 	public List<JSONValue> asArray() {
+		load();
 		return Collections.unmodifiableList(values);
 	}
 
 	@Override
 	public String toString() {
+		load();
 		return values.toString();
 	}
 
 	@Override
 	public int hashCode() {
+		load();
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((values == null) ? 0 : values.hashCode());
@@ -431,6 +489,8 @@ public class JSONArray extends JSONValue {
 		if (getClass() != obj.getClass())
 			return false;
 		JSONArray other = (JSONArray) obj;
+		load();
+		other.load();
 		if (values == null) {
 			if (other.values != null)
 				return false;
@@ -440,15 +500,23 @@ public class JSONArray extends JSONValue {
 	}
 
 	@Override
-	public void write(Writer writer) throws IOException {
-		writer.write('[');
-		Iterator<JSONValue> it = values.iterator();
-		while (it.hasNext()) {
-			it.next().write(writer);
-			if (it.hasNext()) {
-				writer.write(", ");
-			}
+	public void write(JSONWriter writer) throws IOException {
+		load();
+		writer.startArray();
+		for (int i = 0; i < values.size(); i++) {
+			writer.value(values.get(i));
+		}
+		writer.endArray();
+	}
+
+	private void load() {
+		if (document != null) {
+			// The document is cleared first, since adding the elements to the
+			// list loads it.
+			JSONDocument source = document;
+			document = null;
+			values = new ArrayList<JSONValue>();
+			source.load(this, index);
 		}
-		writer.write(']');
 	}
 }
@@ -0,0 +1,221 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.parsing.json;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * A JSON document whose objects and arrays are only parsed when they are
+ * first used.
+ * <p/>
+ * The whole document is checked and indexed once, recording where every
+ * object and array starts and ends. Each object or array is then created
+ * empty, and only parses its own members the first time anything is read
+ * from it. Any objects and arrays inside it are skipped using the index, and
+ * are themselves created empty.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+class JSONDocument {
+	private static final int CHUNK_SIZE = 65536;
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private final char[] chars;
+	private final JSONReader reader;
+	// Where each object and array starts and ends, and the index of the next
+	// one after it that is not inside it, in the order they start.
+	private int[] starts;
+	private int[] ends;
+	private int[] nexts;
+	private int numContainers;
+	private int nextContainer;
+
+	/**
+	 * Loads a JSON file encoded in UTF-8.
+	 * 
+	 * @param fileName
+	 *            The name and path to the file of interest.
+	 * @return The value of the whole file. Objects and arrays in it are
+	 *         parsed when they are first used.
+	 * @throws IOException
+	 *             If the file cannot be loaded.
+	 * @throws ParseException
+	 *             If the file cannot be properly parsed.
+	 */
+	static JSONValue load(String fileName) throws IOException,
+			ParseException {
+		CharBuffer chars;
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+				FileChannel channel = file.getChannel()) {
+			chars = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()));
+		}
+		return new JSONDocument(chars.array(), chars.limit()).getRoot();
+	}
+
+	private JSONDocument(char[] chars, int length) throws IOException,
+			ParseException {
+		this.chars = chars;
+		this.reader = new JSONReader(chars, 0, length);
+		this.starts = new int[DEFAULT_CAPACITY];
+		this.ends = new int[DEFAULT_CAPACITY];
+		this.nexts = new int[DEFAULT_CAPACITY];
+		this.numContainers = 0;
+		this.nextContainer = 0;
+		index(new JSONReader(chars, 0, length));
+	}
+
+	/**
+	 * Parses the members of an object in this document.
+	 * 
+	 * @param object
+	 *            The object to add the members to.
+	 * @param index
+	 *            The index of the object in this document.
+	 */
+	void load(JSONObject object, int index) {
+		try {
+			start(index);
+			while (reader.next() != JSONReader.Event.END_OBJECT) {
+				String key = reader.getString();
+				reader.next();
+				object.put(key, parseValue());
+			}
+		} catch (IOException | ParseException ex) {
+			throw new IllegalStateException("An indexed document could not "
+					+ "be parsed", ex);
+		}
+	}
+
+	/**
+	 * Parses the elements of an array in this document.
+	 * 
+	 * @param array
+	 *            The array to add the elements to.
+	 * @param index
+	 *            The index of the array in this document.
+	 */
+	void load(JSONArray array, int index) {
+		try {
+			start(index);
+			while (reader.next() != JSONReader.Event.END_ARRAY) {
+				array.add(parseValue());
+			}
+		} catch (IOException | ParseException ex) {
+			throw new IllegalStateException("An indexed document could not "
+					+ "be parsed", ex);
+		}
+	}
+
+	private JSONValue getRoot() throws IOException, ParseException {
+		if (numContainers == 0) {
+			reader.seek(0);
+			reader.next();
+			return JSONValue.parse(reader);
+		}
+		return createContainer(0);
+	}
+
+	private void index(JSONReader indexer) throws IOException,
+			ParseException {
+		int[] open = new int[DEFAULT_CAPACITY];
+		int numOpen = 0;
+		JSONReader.Event event;
+		while ((event = indexer.next()) != JSONReader.Event.END_DOCUMENT) {
+			switch (event) {
+			case START_OBJECT:
+			case START_ARRAY:
+				if (numContainers == starts.length) {
+					int capacity = starts.length * 2;
+					starts = Arrays.copyOf(starts, capacity);
+					ends = Arrays.copyOf(ends, capacity);
+					nexts = Arrays.copyOf(nexts, capacity);
+				}
+				if (numOpen == open.length) {
+					open = Arrays.copyOf(open, open.length * 2);
+				}
+				// The offset is just after the opening bracket.
+				starts[numContainers] = indexer.getOffset() - 1;
+				open[numOpen++] = numContainers++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				int container = open[--numOpen];
+				ends[container] = indexer.getOffset();
+				nexts[container] = numContainers;
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	private void start(int index) throws IOException, ParseException {
+		reader.seek(starts[index]);
+		reader.next();
+		nextContainer = index + 1;
+	}
+
+	private JSONValue parseValue() throws IOException, ParseException {
+		switch (reader.getEvent()) {
+		case START_OBJECT:
+		case START_ARRAY:
+			JSONValue result = createContainer(nextContainer);
+			reader.skipTo(ends[nextContainer]);
+			nextContainer = nexts[nextContainer];
+			return result;
+		default:
+			return JSONValue.parse(reader);
+		}
+	}
+
+	private JSONValue createContainer(int index) {
+		if (chars[starts[index]] == '[') {
+			return new JSONArray(this, index);
+		}
+		return new JSONObject(this, index);
+	}
+
+	private static CharBuffer decode(ByteBuffer bytes) throws IOException {
+		// UTF-8 never uses fewer bytes than characters, so the document always
+		// fits.
+		CharBuffer result = CharBuffer.allocate(bytes.remaining());
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+		// Bytes are copied to the heap before they are decoded, since
+		// decoding is much faster there than from a mapped file.
+		ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+		chunk.limit(0);
+		do {
+			chunk.compact();
+			int amount = Math.min(chunk.remaining(), bytes.remaining());
+			bytes.get(chunk.array(), chunk.position(), amount);
+			chunk.position(chunk.position() + amount);
+			chunk.flip();
+			CoderResult coderResult = decoder.decode(chunk, result,
+					!bytes.hasRemaining());
+			if (coderResult.isError()) {
+				try {
+					coderResult.throwException();
+				} catch (CharacterCodingException ex) {
+					throw new IOException("The document is not valid UTF-8",
+							ex);
+				}
+			}
+		} while (bytes.hasRemaining());
+		decoder.flush(result);
+		result.flip();
+		return result;
+	}
+}
@@ -5,7 +5,6 @@
 package engine.parsing.json;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.text.ParseException;
 
 import engine.parsing.TokenReader;
@@ -16,6 +15,25 @@ import engine.parsing.TokenReader;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class JSONLiteral extends JSONValue {
+	/**
+	 * Parses the value that a reader has just started reading.
+	 * 
+	 * @param reader
+	 *            The reader to parse from.
+	 * @return A JSONValue parsed from the reader
+	 * @throws IOException
+	 *             If the reader cannot read its source.
+	 * @throws ParseException
+	 *             If the source cannot be parsed into a JSONValue.
+	 */
+	public static JSONValue parse(JSONReader reader) throws IOException,
+			ParseException {
+		if (reader.getEvent() == JSONReader.Event.NULL) {
+			return NULL;
+		}
+		return create(reader.getBoolean());
+	}
+
 	/**
 	 * Parses a value from a token source.
 	 * 
@@ -28,7 +46,9 @@ public class JSONLiteral extends JSONValue {
 	 *             If a token cannot be read
 	 * @throws ParseException
 	 *             If the tokens cannot be parsed into a JSONValue.
+	 * @deprecated Use {@link #parse(JSONReader)}, which is much faster.
 	 */
+	@Deprecated
 	public static JSONValue parse(TokenReader tokens, String currentToken)
 			throws IOException, ParseException {
 		switch (currentToken.charAt(0)) {
@@ -112,7 +132,11 @@ public class JSONLiteral extends JSONValue {
 	}
 
 	@Override
-	public void write(Writer writer) throws IOException {
-		writer.write(string);
+	public void write(JSONWriter writer) throws IOException {
+		if (this == NULL) {
+			writer.nullValue();
+		} else {
+			writer.value(this == TRUE);
+		}
 	}
 }
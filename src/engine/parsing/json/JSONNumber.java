@@ -5,7 +5,6 @@
 package engine.parsing.json;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.text.ParseException;
 
 import engine.parsing.TokenReader;
@@ -16,6 +15,30 @@ import engine.parsing.TokenReader;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class JSONNumber extends JSONValue {
+	/**
+	 * Parses the value that a reader has just started reading.
+	 * 
+	 * @param reader
+	 *            The reader to parse from.
+	 * @return A JSONValue parsed from the reader
+	 * @throws IOException
+	 *             If the reader cannot read its source.
+	 * @throws ParseException
+	 *             If the source cannot be parsed into a JSONValue.
+	 */
+	public static JSONValue parse(JSONReader reader) throws IOException,
+			ParseException {
+		// Integers are kept exact, even if they are too large for a double.
+		if (reader.isInteger()) {
+			try {
+				return new JSONNumber(reader.getLong());
+			} catch (NumberFormatException ex) {
+				return new JSONNumber(reader.getString());
+			}
+		}
+		return new JSONNumber(reader.getDouble());
+	}
+
 	/**
 	 * Parses a value from a token source.
 	 * 
@@ -28,57 +51,73 @@ public class JSONNumber extends JSONValue {
 	 *             If a token cannot be read
 	 * @throws ParseException
 	 *             If the tokens cannot be parsed into a JSONValue.
+	 * @deprecated Use {@link #parse(JSONReader)}, which is much faster.
 	 */
+	@Deprecated
 	public static JSONValue parse(TokenReader tokens, String currentToken)
 			throws IOException, ParseException {
 		return new JSONNumber(currentToken);
 	}
 	
-	private String value;
-	
+	private final boolean isInteger;
+	private final long longValue;
+	private final double value;
+	private String text;
+
 	/**
 	 * Creates a JSONNumber from a value.
-	 * @param value The value representing the number.
+	 * 
+	 * @param value
+	 *            The value representing the number.
+	 * @throws NumberFormatException
+	 *             If {@code value} is not a number.
 	 */
 	public JSONNumber(String value) {
-		if(value == null) {
+		if (value == null) {
 			throw new NullPointerException("Number cannot have a null value");
 		}
-		this.value = value;
+		// The number is parsed once, here, rather than every time it is used.
+		this.isInteger = isLong(value);
+		this.longValue = isInteger ? Long.parseLong(value) : 0;
+		this.value = isInteger ? longValue : Double.parseDouble(value);
+		this.text = value;
 	}
-	
+
 	/**
 	 * Creates a JSONNumber from a value.
 	 * @param value The value representing the number.
 	 */
 	public JSONNumber(byte value) {
-		this(Byte.toString(value));
+		this((long) value);
 	}
-	
+
 	/**
 	 * Creates a JSONNumber from a value.
 	 * @param value The value representing the number.
 	 */
 	public JSONNumber(short value) {
-		this(Short.toString(value));
+		this((long) value);
 	}
-	
+
 	/**
 	 * Creates a JSONNumber from a value.
 	 * @param value The value representing the number.
 	 */
 	public JSONNumber(int value) {
-		this(Integer.toString(value));
+		this((long) value);
 	}
-	
+
 	/**
 	 * Creates a JSONNumber from a value.
 	 * @param value The value representing the number.
 	 */
 	public JSONNumber(long value) {
-		this(Long.toString(value));
+		this.isInteger = true;
+		this.longValue = value;
+		this.value = value;
+		this.text = null;
 	}
-	
+
 	/**
 	 * Creates a JSONNumber from a value.
 	 * @param value The value representing the number.
@@ -86,50 +125,76 @@ public class JSONNumber extends JSONValue {
 	public JSONNumber(float value) {
 		this(Float.toString(value));
 	}
-	
+
 	/**
 	 * Creates a JSONNumber from a value.
 	 * @param value The value representing the number.
 	 */
 	public JSONNumber(double value) {
-		this(Double.toString(value));
+		this.isInteger = false;
+		this.longValue = 0;
+		this.value = value;
+		this.text = null;
+	}
+
+	/**
+	 * Gets if this number is stored as an integer, rather than as a double.
+	 * 
+	 * @return True if this number is an integer, false otherwise.
+	 */
+	boolean isInteger() {
+		return isInteger;
 	}
 
 	@Override
 	public boolean isNumber() {
 		return true;
 	}
-	
+
 	@Override
 	public int asInt() {
-		return Integer.parseInt(value);
+		if (!isInteger || longValue < Integer.MIN_VALUE
+				|| longValue > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Not an int: " + toString());
+		}
+		return (int) longValue;
 	}
-	
+
 	@Override
 	public long asLong() {
-		return Long.parseLong(value);
+		if (!isInteger) {
+			throw new NumberFormatException("Not a long: " + toString());
+		}
+		return longValue;
 	}
-	
+
 	@Override
 	public float asFloat() {
-		return Float.parseFloat(value);
+		return (float) value;
 	}
-	
+
 	@Override
 	public double asDouble() {
-		return Double.parseDouble(value);
+		return value;
 	}
-	
+
 	@Override
 	public String toString() {
-		return value;
+		if (text == null) {
+			text = isInteger ? Long.toString(longValue) : Double
+					.toString(value);
+		}
+		return text;
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((value == null) ? 0 : value.hashCode());
+		long bits = Double.doubleToLongBits(value);
+		result = prime * result + (isInteger ? 1231 : 1237);
+		result = prime * result + (int) (longValue ^ (longValue >>> 32));
+		result = prime * result + (int) (bits ^ (bits >>> 32));
 		return result;
 	}
 
@@ -142,16 +207,42 @@ public class JSONNumber extends JSONValue {
 		if (getClass() != obj.getClass())
 			return false;
 		JSONNumber other = (JSONNumber) obj;
-		if (value == null) {
-			if (other.value != null)
-				return false;
-		} else if (!value.equals(other.value))
+		if (isInteger != other.isInteger)
+			return false;
+		if (longValue != other.longValue)
+			return false;
+		if (Double.doubleToLongBits(value) != Double
+				.doubleToLongBits(other.value))
 			return false;
 		return true;
 	}
 
 	@Override
-	public void write(Writer writer) throws IOException {
-		writer.write(value);
+	public void write(JSONWriter writer) throws IOException {
+		if (isInteger) {
+			writer.value(longValue);
+		} else if (text != null) {
+			// The text the number was created from is kept, since it may be
+			// more precise than the double.
+			writer.numberValue(text);
+		} else {
+			writer.value(value);
+		}
+	}
+
+	private static boolean isLong(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c < '0' || c > '9') && !(i == 0 && c == '-')) {
+				return false;
+			}
+		}
+		try {
+			Long.parseLong(value);
+			return true;
+		} catch (NumberFormatException ex) {
+			// The number is too large for a long, so it is stored as a double.
+			return false;
+		}
 	}
 }
@@ -5,11 +5,9 @@
 package engine.parsing.json;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.text.ParseException;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import engine.parsing.TokenReader;
@@ -20,6 +18,28 @@ import engine.parsing.TokenReader;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class JSONObject extends JSONValue {
+	/**
+	 * Parses the value that a reader has just started reading.
+	 * 
+	 * @param reader
+	 *            The reader to parse from.
+	 * @return A JSONValue parsed from the reader
+	 * @throws IOException
+	 *             If the reader cannot read its source.
+	 * @throws ParseException
+	 *             If the source cannot be parsed into a JSONValue.
+	 */
+	public static JSONValue parse(JSONReader reader) throws IOException,
+			ParseException {
+		JSONObject result = new JSONObject();
+		while (reader.next() != JSONReader.Event.END_OBJECT) {
+			String key = reader.getString();
+			reader.next();
+			result.put(key, JSONValue.parse(reader));
+		}
+		return result;
+	}
+
 	/**
 	 * Parses a value from a token source.
 	 * 
@@ -32,7 +52,9 @@ public class JSONObject extends JSONValue {
 	 *             If a token cannot be read
 	 * @throws ParseException
 	 *             If the tokens cannot be parsed into a JSONValue.
+	 * @deprecated Use {@link #parse(JSONReader)}, which is much faster.
 	 */
+	@Deprecated
 	public static JSONValue parse(TokenReader tokens, String token)
 			throws IOException, ParseException {
 		JSONObject result = new JSONObject();
@@ -57,12 +79,42 @@ public class JSONObject extends JSONValue {
 	}
 
 	private Map<String, JSONValue> map;
+	private JSONDocument document;
+	private int index;
+	private boolean isReadOnly;
 
 	/** Creates a new JSONObject */
 	public JSONObject() {
 		map = new HashMap<String, JSONValue>();
 	}
 
+	/**
+	 * Creates a JSONObject whose members are parsed from a document the first
+	 * time they are used.
+	 * 
+	 * @param document
+	 *            The document containing the object.
+	 * @param index
+	 *            The index of the object in the document.
+	 */
+	JSONObject(JSONDocument document, int index) {
+		this.map = null;
+		this.document = document;
+		this.index = index;
+	}
+
+	/**
+	 * Creates a JSONObject with the members in a map that cannot be changed.
+	 * The map is copied the first time a member is added.
+	 * 
+	 * @param members
+	 *            The members of the object.
+	 */
+	JSONObject(Map<String, JSONValue> members) {
+		this.map = members;
+		this.isReadOnly = true;
+	}
+
 	/**
 	 * Adds a new value to the JSONObject.
 	 * 
@@ -186,6 +238,11 @@ public class JSONObject extends JSONValue {
 		if (value == null) {
 			throw new NullPointerException("value cannot be null");
 		}
+		load();
+		if (isReadOnly) {
+			map = new HashMap<String, JSONValue>(map);
+			isReadOnly = false;
+		}
 		map.put(key, value);
 	}
 
@@ -196,16 +253,19 @@ public class JSONObject extends JSONValue {
 
 	@Override
 	public Map<String, JSONValue> asObject() {
+		load();
 		return Collections.unmodifiableMap(map);
 	}
 
 	@Override
 	public String toString() {
+		load();
 		return map.toString();
 	}
 
 	@Override
 	public int hashCode() {
+		load();
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((map == null) ? 0 : map.hashCode());
@@ -221,6 +281,8 @@ public class JSONObject extends JSONValue {
 		if (getClass() != obj.getClass())
 			return false;
 		JSONObject other = (JSONObject) obj;
+		load();
+		other.load();
 		if (map == null) {
 			if (other.map != null)
 				return false;
@@ -230,41 +292,24 @@ public class JSONObject extends JSONValue {
 	}
 
 	@Override
-	public void write(Writer writer) throws IOException {
-		write(writer, 1);
-	}
-
-	private void writeNewLine(Writer writer, int tabLevel) throws IOException {
-		writer.write('\n');
-		for (int i = 0; i < tabLevel; i++) {
-			writer.write('\t');
+	public void write(JSONWriter writer) throws IOException {
+		load();
+		writer.startObject();
+		for (Map.Entry<String, JSONValue> member : map.entrySet()) {
+			writer.key(member.getKey());
+			writer.value(member.getValue());
 		}
+		writer.endObject();
 	}
 
-	private void write(Writer writer, int tabLevel) throws IOException {
-		writer.write('{');
-		writeNewLine(writer, tabLevel);
-
-		Iterator<Map.Entry<String, JSONValue>> it = map.entrySet().iterator();
-		while (it.hasNext()) {
-			Map.Entry<String, JSONValue> current = it.next();
-			new JSONString(current.getKey()).write(writer);
-			writer.write(':');
-			writer.write(' ');
-
-			JSONValue value = current.getValue();
-			if (value.isObject()) {
-				((JSONObject) value).write(writer, tabLevel + 1);
-			} else {
-				value.write(writer);
-			}
-
-			if (it.hasNext()) {
-				writer.write(", ");
-				writeNewLine(writer, tabLevel);
-			}
+	private void load() {
+		if (document != null) {
+			// The document is cleared first, since adding the members to the
+			// map loads it.
+			JSONDocument source = document;
+			document = null;
+			map = new HashMap<String, JSONValue>();
+			source.load(this, index);
 		}
-		writeNewLine(writer, tabLevel - 1);
-		writer.write('}');
 	}
 }
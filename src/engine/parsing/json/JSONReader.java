@@ -0,0 +1,819 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.parsing.json;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Reads JSON one event at a time, without building a tree of values.
+ * <p/>
+ * Each call to {@link #next()} reads the next part of the document, such as
+ * the start of an object, a key, or a number, and the value of a key, string
+ * or number can then be read from the reader. Numbers are parsed directly
+ * from the source, and strings are only created when they are asked for, so
+ * a document can be read without allocating anything for most values.
+ * <p/>
+ * The document is checked as it is read, so every event is part of valid
+ * JSON up to that point.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class JSONReader implements AutoCloseable {
+	/**
+	 * A part of a JSON document.
+	 */
+	public static enum Event {
+		START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY, STRING, NUMBER,
+		BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int DEFAULT_TEXT_SIZE = 64;
+	private static final int DEFAULT_MAX_DEPTH = 16;
+	private static final int KEY_CACHE_SIZE = 256;
+
+	// What is expected next, at each level of nesting.
+	private static final int EXPECT_VALUE = 0;
+	private static final int EXPECT_FIRST_ELEMENT = 1;
+	private static final int EXPECT_ELEMENT_SEPARATOR = 2;
+	private static final int EXPECT_FIRST_KEY = 3;
+	private static final int EXPECT_KEY_SEPARATOR = 4;
+	private static final int EXPECT_MEMBER_SEPARATOR = 5;
+	private static final int EXPECT_END = 6;
+
+	// Numbers with up to this many digits always fit in a long.
+	private static final int MAX_LONG_DIGITS = 18;
+	// Numbers with up to this many digits can be stored exactly in a double,
+	// as can powers of ten up to MAX_EXACT_POWER, so dividing or multiplying
+	// them gives a correctly rounded result.
+	private static final int MAX_DOUBLE_DIGITS = 15;
+	private static final int MAX_EXACT_POWER = 22;
+	private static final double[] POWERS_OF_TEN =
+			new double[MAX_EXACT_POWER + 1];
+
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i <= MAX_EXACT_POWER; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	private final Reader reader;
+	private final ByteBuffer bytes;
+	private final ByteBuffer chunk;
+	private final CharBuffer decoded;
+	private final CharsetDecoder decoder;
+	private char[] buffer;
+	private int position;
+	private int limit;
+	private int lineNumber;
+
+	private int[] states;
+	private int depth;
+	private Event event;
+
+	// The text of the current key, string or number, which is either part of
+	// the buffer or a copy of it in scratch.
+	private char[] text;
+	private int textStart;
+	private int textLength;
+	private char[] scratch;
+	private final String[] keyCache;
+
+	private boolean booleanValue;
+	private boolean isNegative;
+	private boolean isInteger;
+	private boolean isExact;
+	private long mantissa;
+	private int numDigits;
+	private int exponent;
+
+	/**
+	 * Creates a JSONReader that reads from a character stream.
+	 * 
+	 * @param reader
+	 *            The source of the document. It is closed when this is closed.
+	 */
+	public JSONReader(Reader reader) {
+		this(reader, null, new char[DEFAULT_BUFFER_SIZE], 0, 0);
+	}
+
+	/**
+	 * Creates a JSONReader that reads from bytes encoded in UTF-8, such as a
+	 * memory mapped file.
+	 * 
+	 * @param bytes
+	 *            The source of the document. It is read from its position to
+	 *            its limit.
+	 */
+	public JSONReader(ByteBuffer bytes) {
+		this(null, bytes, new char[DEFAULT_BUFFER_SIZE], 0, 0);
+	}
+
+	/**
+	 * Creates a JSONReader that reads from an array of characters. Strings
+	 * are read directly from the array, so it must not be changed while it is
+	 * being read.
+	 * 
+	 * @param chars
+	 *            The array containing the document.
+	 * @param offset
+	 *            The index of the first character of the document.
+	 * @param length
+	 *            The number of characters in the document.
+	 */
+	public JSONReader(char[] chars, int offset, int length) {
+		this(null, null, chars, offset, offset + length);
+		if (offset < 0 || length < 0 || offset + length > chars.length) {
+			throw new IllegalArgumentException("The document must be within "
+					+ "the bounds of the array");
+		}
+	}
+
+	private JSONReader(Reader reader, ByteBuffer bytes, char[] buffer,
+			int position, int limit) {
+		this.reader = reader;
+		this.bytes = bytes;
+		this.decoder = bytes == null ? null : StandardCharsets.UTF_8
+				.newDecoder();
+		this.chunk = bytes == null ? null : ByteBuffer.allocate(buffer.length);
+		this.decoded = bytes == null ? null : CharBuffer.wrap(buffer);
+		this.buffer = buffer;
+		this.position = position;
+		this.limit = limit;
+		this.lineNumber = 1;
+		this.states = new int[DEFAULT_MAX_DEPTH];
+		this.states[0] = EXPECT_VALUE;
+		this.depth = 0;
+		this.event = null;
+		this.scratch = new char[DEFAULT_TEXT_SIZE];
+		this.text = scratch;
+		this.textStart = 0;
+		this.textLength = 0;
+		this.keyCache = new String[KEY_CACHE_SIZE];
+		if (chunk != null) {
+			// The chunk starts out with no bytes left to decode.
+			chunk.limit(0);
+		}
+	}
+
+	/**
+	 * Creates a JSONReader that reads a file encoded in UTF-8. The file is
+	 * memory mapped rather than read into memory.
+	 * 
+	 * @param fileName
+	 *            The name and path of the file to read.
+	 * @return A JSONReader for the file.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public static JSONReader open(String fileName) throws IOException {
+		// The mapping stays valid after the file is closed.
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+				FileChannel channel = file.getChannel()) {
+			return new JSONReader(channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the next part of the document.
+	 * 
+	 * @return The part of the document read. Once the whole document has been
+	 *         read, this is always {@link Event#END_DOCUMENT}.
+	 * @throws IOException
+	 *             If the source cannot be read.
+	 * @throws ParseException
+	 *             If the document is not valid JSON.
+	 */
+	public Event next() throws IOException, ParseException {
+		int c = skipWhitespace();
+		switch (states[depth]) {
+		case EXPECT_VALUE:
+			return event = readValue(c);
+		case EXPECT_FIRST_ELEMENT:
+			if (c == ']') {
+				return event = endContainer(Event.END_ARRAY);
+			}
+			return event = readValue(c);
+		case EXPECT_ELEMENT_SEPARATOR:
+			if (c == ']') {
+				return event = endContainer(Event.END_ARRAY);
+			}
+			check(c == ',', "Expected ',' or ']'");
+			return event = readValue(skipWhitespace());
+		case EXPECT_FIRST_KEY:
+			if (c == '}') {
+				return event = endContainer(Event.END_OBJECT);
+			}
+			return event = readKey(c);
+		case EXPECT_MEMBER_SEPARATOR:
+			if (c == '}') {
+				return event = endContainer(Event.END_OBJECT);
+			}
+			check(c == ',', "Expected ',' or '}'");
+			return event = readKey(skipWhitespace());
+		case EXPECT_KEY_SEPARATOR:
+			check(c == ':', "Expected ':'");
+			return event = readValue(skipWhitespace());
+		default:
+			check(c == -1, "Expected end of file");
+			return event = Event.END_DOCUMENT;
+		}
+	}
+
+	/**
+	 * Skips the value that was just read. If it is the start of an object or
+	 * array, everything up to and including its end is skipped, so the next
+	 * event is whatever follows it.
+	 * 
+	 * @throws IOException
+	 *             If the source cannot be read.
+	 * @throws ParseException
+	 *             If the document is not valid JSON.
+	 */
+	public void skipValue() throws IOException, ParseException {
+		if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+			return;
+		}
+		int end = depth - 1;
+		while (depth > end) {
+			next();
+		}
+	}
+
+	/**
+	 * Gets the part of the document that was read last.
+	 * 
+	 * @return The last event returned by {@link #next()}, or null if nothing
+	 *         has been read yet.
+	 */
+	public Event getEvent() {
+		return event;
+	}
+
+	/**
+	 * Gets how deeply the last part of the document read is nested within
+	 * objects and arrays.
+	 * 
+	 * @return The number of objects and arrays the reader is in.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets the line the reader is currently on.
+	 * 
+	 * @return The line the reader is currently on, starting from 1.
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Gets the text of the key, string or number that was just read. Keys
+	 * that were read recently are returned as the same string, but a new
+	 * string is created for anything else.
+	 * 
+	 * @return The text that was just read, with escape sequences replaced by
+	 *         the characters they represent.
+	 * @throws IllegalStateException
+	 *             If a key, string or number was not just read.
+	 */
+	public String getString() {
+		checkText();
+		if (event != Event.KEY) {
+			return new String(text, textStart, textLength);
+		}
+		// Documents usually repeat the same few keys many times, so they are
+		// cached rather than creating a string for every one of them.
+		int hash = 0;
+		for (int i = 0; i < textLength; i++) {
+			hash = 31 * hash + text[textStart + i];
+		}
+		int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+		String key = keyCache[slot];
+		if (key == null || !matches(key)) {
+			key = new String(text, textStart, textLength);
+			keyCache[slot] = key;
+		}
+		return key;
+	}
+
+	/**
+	 * Determines whether the key, string or number that was just read is the
+	 * same as some text, without creating a string.
+	 * 
+	 * @param other
+	 *            The text to compare with.
+	 * @return True if the text just read is the same as {@code other}, false
+	 *         otherwise.
+	 * @throws IllegalStateException
+	 *             If a key, string or number was not just read.
+	 */
+	public boolean matches(String other) {
+		checkText();
+		if (other.length() != textLength) {
+			return false;
+		}
+		for (int i = 0; i < textLength; i++) {
+			if (text[textStart + i] != other.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determines whether the number that was just read is an integer, written
+	 * without a fraction or exponent.
+	 * 
+	 * @return True if the number is an integer, false otherwise.
+	 * @throws IllegalStateException
+	 *             If a number was not just read.
+	 */
+	public boolean isInteger() {
+		checkEvent(Event.NUMBER);
+		return isInteger;
+	}
+
+	/**
+	 * Gets the number that was just read as an int.
+	 * 
+	 * @return The number that was just read.
+	 * @throws NumberFormatException
+	 *             If the number is not an integer, or does not fit in an int.
+	 * @throws IllegalStateException
+	 *             If a number was not just read.
+	 */
+	public int getInt() {
+		long result = getLong();
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Number does not fit in an int: "
+					+ getString());
+		}
+		return (int) result;
+	}
+
+	/**
+	 * Gets the number that was just read as a long.
+	 * 
+	 * @return The number that was just read.
+	 * @throws NumberFormatException
+	 *             If the number is not an integer, or does not fit in a long.
+	 * @throws IllegalStateException
+	 *             If a number was not just read.
+	 */
+	public long getLong() {
+		checkEvent(Event.NUMBER);
+		if (!isInteger) {
+			throw new NumberFormatException("Number is not an integer: "
+					+ getString());
+		}
+		if (numDigits > MAX_LONG_DIGITS) {
+			return Long.parseLong(getString());
+		}
+		return isNegative ? -mantissa : mantissa;
+	}
+
+	/**
+	 * Gets the number that was just read as a float.
+	 * 
+	 * @return The number that was just read, rounded to the nearest float.
+	 * @throws IllegalStateException
+	 *             If a number was not just read.
+	 */
+	public float getFloat() {
+		return (float) getDouble();
+	}
+
+	/**
+	 * Gets the number that was just read as a double.
+	 * 
+	 * @return The number that was just read, rounded to the nearest double.
+	 * @throws IllegalStateException
+	 *             If a number was not just read.
+	 */
+	public double getDouble() {
+		checkEvent(Event.NUMBER);
+		if (!isExact || numDigits > MAX_DOUBLE_DIGITS
+				|| exponent < -MAX_EXACT_POWER || exponent > MAX_EXACT_POWER) {
+			// Rounding correctly in every other case takes far more work, and
+			// these numbers are rare enough that it is left to the library.
+			return Double.parseDouble(getString());
+		}
+		double result = mantissa;
+		if (exponent < 0) {
+			result /= POWERS_OF_TEN[-exponent];
+		} else {
+			result *= POWERS_OF_TEN[exponent];
+		}
+		return isNegative ? -result : result;
+	}
+
+	/**
+	 * Gets the boolean that was just read.
+	 * 
+	 * @return The boolean that was just read.
+	 * @throws IllegalStateException
+	 *             If a boolean was not just read.
+	 */
+	public boolean getBoolean() {
+		checkEvent(Event.BOOLEAN);
+		return booleanValue;
+	}
+
+	/**
+	 * Gets the index in the array being read just after the last part of the
+	 * document read. Only readers of arrays of characters can use this.
+	 * 
+	 * @return The index in the array just after the last event read.
+	 */
+	int getOffset() {
+		checkArraySource();
+		return position;
+	}
+
+	/**
+	 * Starts reading a value at another index in the array being read, as if
+	 * it were the start of the document. Only readers of arrays of characters
+	 * can use this.
+	 * 
+	 * @param offset
+	 *            The index in the array where the value starts.
+	 */
+	void seek(int offset) {
+		checkArraySource();
+		position = offset;
+		depth = 0;
+		states[0] = EXPECT_VALUE;
+		event = null;
+	}
+
+	/**
+	 * Skips the object or array that was just started, when the index in the
+	 * array just after its end is already known. Nothing in it is read or
+	 * checked, and the line number is not updated. Only readers of arrays of
+	 * characters can use this.
+	 * 
+	 * @param offset
+	 *            The index in the array just after the end of the value.
+	 */
+	void skipTo(int offset) {
+		checkArraySource();
+		if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+			throw new IllegalStateException("Expected " + Event.START_OBJECT
+					+ " or " + Event.START_ARRAY + "; instead got " + event);
+		}
+		position = offset;
+		event = endContainer(event == Event.START_OBJECT ? Event.END_OBJECT
+				: Event.END_ARRAY);
+	}
+
+	private Event readValue(int c) throws IOException, ParseException {
+		endValue();
+		switch (c) {
+		case '{':
+			return startContainer(EXPECT_FIRST_KEY, Event.START_OBJECT);
+		case '[':
+			return startContainer(EXPECT_FIRST_ELEMENT, Event.START_ARRAY);
+		case '"':
+			readString();
+			return Event.STRING;
+		case 't':
+			readLiteral("rue");
+			booleanValue = true;
+			return Event.BOOLEAN;
+		case 'f':
+			readLiteral("alse");
+			booleanValue = false;
+			return Event.BOOLEAN;
+		case 'n':
+			readLiteral("ull");
+			return Event.NULL;
+		default:
+			check(c == '-' || isDigit(c), "Expected a value");
+			readNumber(c);
+			return Event.NUMBER;
+		}
+	}
+
+	private Event readKey(int c) throws IOException, ParseException {
+		check(c == '"', "Expected a key");
+		readString();
+		states[depth] = EXPECT_KEY_SEPARATOR;
+		return Event.KEY;
+	}
+
+	private void endValue() {
+		if (depth == 0) {
+			states[depth] = EXPECT_END;
+		} else if (states[depth] == EXPECT_KEY_SEPARATOR) {
+			states[depth] = EXPECT_MEMBER_SEPARATOR;
+		} else {
+			states[depth] = EXPECT_ELEMENT_SEPARATOR;
+		}
+	}
+
+	private Event startContainer(int state, Event result) {
+		depth++;
+		if (depth == states.length) {
+			states = Arrays.copyOf(states, states.length * 2);
+		}
+		states[depth] = state;
+		return result;
+	}
+
+	private Event endContainer(Event result) {
+		depth--;
+		return result;
+	}
+
+	private void readString() throws IOException, ParseException {
+		// Most strings are read directly from the buffer. Only strings with
+		// escape sequences, or which continue past the end of the buffer,
+		// have to be copied.
+		int start = position;
+		while (position < limit) {
+			char c = buffer[position];
+			if (c == '"') {
+				setText(buffer, start, position - start);
+				position++;
+				return;
+			} else if (c == '\\' || c < ' ') {
+				break;
+			}
+			position++;
+		}
+
+		textLength = 0;
+		appendText(buffer, start, position - start);
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				break;
+			} else if (c == '\\') {
+				c = readEscape();
+			} else {
+				check(c != -1, "Expected closing '\"'");
+				check(c >= ' ', "Strings cannot contain control characters");
+			}
+			appendText((char) c);
+		}
+		text = scratch;
+		textStart = 0;
+	}
+
+	private int readEscape() throws IOException, ParseException {
+		int c = read();
+		switch (c) {
+		case '"':
+		case '\\':
+		case '/':
+			return c;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u':
+			int result = 0;
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(read(), 16);
+				check(digit != -1, "Expected 4 hexadecimal digits");
+				result = result * 16 + digit;
+			}
+			return result;
+		default:
+			throw error("Invalid escape sequence");
+		}
+	}
+
+	private void readNumber(int c) throws IOException, ParseException {
+		textLength = 0;
+		isNegative = c == '-';
+		isInteger = true;
+		isExact = true;
+		mantissa = 0;
+		numDigits = 0;
+		exponent = 0;
+
+		if (isNegative) {
+			appendText((char) c);
+			c = read();
+			check(isDigit(c), "Expected a digit");
+		}
+		if (c == '0') {
+			// Leading zeros are not allowed, so a zero is always on its own.
+			appendText((char) c);
+			c = read();
+		} else {
+			while (isDigit(c)) {
+				addDigit(c, 0);
+				c = read();
+			}
+		}
+		if (c == '.') {
+			isInteger = false;
+			appendText((char) c);
+			c = read();
+			check(isDigit(c), "Expected a digit");
+			while (isDigit(c)) {
+				addDigit(c, -1);
+				c = read();
+			}
+		}
+		if (c == 'e' || c == 'E') {
+			isInteger = false;
+			appendText((char) c);
+			c = read();
+			boolean isExponentNegative = c == '-';
+			if (c == '-' || c == '+') {
+				appendText((char) c);
+				c = read();
+			}
+			check(isDigit(c), "Expected a digit");
+			int value = 0;
+			while (isDigit(c)) {
+				appendText((char) c);
+				// Exponents this large are left for the library to parse.
+				if (value < 1000) {
+					value = value * 10 + (c - '0');
+				}
+				c = read();
+			}
+			exponent += isExponentNegative ? -value : value;
+		}
+		if (c != -1) {
+			position--;
+		}
+		text = scratch;
+		textStart = 0;
+	}
+
+	private void addDigit(int c, int exponentChange) {
+		appendText((char) c);
+		if (numDigits == 0 && c == '0') {
+			// Leading zeros in a fraction do not count towards its precision.
+			exponent += exponentChange;
+			return;
+		}
+		if (numDigits < MAX_LONG_DIGITS) {
+			mantissa = mantissa * 10 + (c - '0');
+			exponent += exponentChange;
+		} else {
+			isExact = false;
+			exponent += exponentChange + 1;
+		}
+		numDigits++;
+	}
+
+	private void readLiteral(String rest) throws IOException, ParseException {
+		for (int i = 0; i < rest.length(); i++) {
+			check(read() == rest.charAt(i), "Expected a value");
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		while (position < limit || fill()) {
+			char c = buffer[position++];
+			// Every whitespace character comes before any other character
+			// that can appear outside of a string.
+			if (c > ' ') {
+				return c;
+			} else if (c == '\n') {
+				lineNumber++;
+			} else if (c != ' ' && c != '\t' && c != '\r') {
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	private int read() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	private boolean fill() throws IOException {
+		if (reader != null) {
+			int amount = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			limit = Math.max(amount, 0);
+		} else if (bytes != null) {
+			position = 0;
+			limit = 0;
+			while (limit == 0
+					&& (bytes.hasRemaining() || chunk.hasRemaining())) {
+				// Bytes are copied to the heap before they are decoded, since
+				// decoding is much faster there than from a mapped file.
+				chunk.compact();
+				int amount = Math.min(chunk.remaining(), bytes.remaining());
+				bytes.get(chunk.array(), chunk.position(), amount);
+				chunk.position(chunk.position() + amount);
+				chunk.flip();
+				decoded.clear();
+				CoderResult result = decoder.decode(chunk, decoded,
+						!bytes.hasRemaining());
+				if (result.isError()) {
+					try {
+						result.throwException();
+					} catch (CharacterCodingException ex) {
+						throw new IOException("The document is not valid "
+								+ "UTF-8 (line " + lineNumber + ")", ex);
+					}
+				}
+				limit = decoded.position();
+			}
+		}
+		return position < limit;
+	}
+
+	private void setText(char[] source, int start, int length) {
+		text = source;
+		textStart = start;
+		textLength = length;
+	}
+
+	private void appendText(char[] source, int start, int length) {
+		if (textLength + length > scratch.length) {
+			scratch = Arrays.copyOf(scratch,
+					Math.max(scratch.length * 2, textLength + length));
+		}
+		System.arraycopy(source, start, scratch, textLength, length);
+		textLength += length;
+	}
+
+	private void appendText(char c) {
+		if (textLength == scratch.length) {
+			scratch = Arrays.copyOf(scratch, scratch.length * 2);
+		}
+		scratch[textLength++] = c;
+	}
+
+	private void checkText() {
+		if (event != Event.KEY && event != Event.STRING
+				&& event != Event.NUMBER) {
+			throw new IllegalStateException("Expected a key, string or "
+					+ "number; instead got " + event);
+		}
+	}
+
+	private void checkEvent(Event expected) {
+		if (event != expected) {
+			throw new IllegalStateException("Expected " + expected
+					+ "; instead got " + event);
+		}
+	}
+
+	private void checkArraySource() {
+		if (reader != null || bytes != null) {
+			throw new IllegalStateException("Only readers of arrays of "
+					+ "characters can move to an index");
+		}
+	}
+
+	private void check(boolean condition, String message)
+			throws ParseException {
+		if (!condition) {
+			throw error(message);
+		}
+	}
+
+	private ParseException error(String message) {
+		return new ParseException(message + " (line " + lineNumber + ")",
+				lineNumber);
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+}
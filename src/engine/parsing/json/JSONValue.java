@@ -18,6 +18,40 @@ import engine.parsing.TokenReader;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public abstract class JSONValue {
+	/**
+	 * Parses the value that a reader has just started reading.
+	 * 
+	 * @param reader
+	 *            The reader to parse from. The last event it read must be the
+	 *            start of a value; when this returns, the last event it read
+	 *            is the end of that value.
+	 * @return A JSONValue parsed from the reader
+	 * @throws IOException
+	 *             If the reader cannot read its source.
+	 * @throws ParseException
+	 *             If the source cannot be parsed into a JSONValue.
+	 */
+	public static JSONValue parse(JSONReader reader) throws IOException,
+			ParseException {
+		switch (reader.getEvent()) {
+		case START_OBJECT:
+			return JSONObject.parse(reader);
+		case START_ARRAY:
+			return JSONArray.parse(reader);
+		case STRING:
+			return JSONString.parse(reader);
+		case NUMBER:
+			return JSONNumber.parse(reader);
+		case BOOLEAN:
+		case NULL:
+			return JSONLiteral.parse(reader);
+		default:
+			throw new ParseException(reader.getEvent()
+					+ " is not a JSON value (line " + reader.getLineNumber()
+					+ ")", reader.getLineNumber());
+		}
+	}
+
 	/**
 	 * Parses a value from a token source.
 	 * 
@@ -30,7 +64,9 @@ public abstract class JSONValue {
 	 *             If a token cannot be read
 	 * @throws ParseException
 	 *             If the tokens cannot be parsed into a JSONValue.
+	 * @deprecated Use {@link #parse(JSONReader)}, which is much faster.
 	 */
+	@Deprecated
 	public static JSONValue parse(TokenReader tokens, String currentToken)
 			throws IOException, ParseException {
 		int c = currentToken.charAt(0);
@@ -165,7 +201,25 @@ public abstract class JSONValue {
 	 * @throws IOException
 	 *             If the value cannot be written.
 	 */
-	public abstract void write(Writer writer) throws IOException;
+	public void write(Writer writer) throws IOException {
+		JSONWriter jsonWriter = JSONWriter.obtain(writer);
+		try {
+			jsonWriter.value(this);
+			jsonWriter.flush();
+		} finally {
+			jsonWriter.release();
+		}
+	}
+
+	/**
+	 * Writes this JSONValue, and everything in it, with a JSONWriter.
+	 * 
+	 * @param writer
+	 *            The JSONWriter to write with.
+	 * @throws IOException
+	 *             If the value cannot be written.
+	 */
+	public abstract void write(JSONWriter writer) throws IOException;
 
 	/**
 	 * Gets if this is a JSONObject.
@@ -0,0 +1,652 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.parsing.json;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes JSON one part at a time, without building a tree of values.
+ * <p/>
+ * Everything is written to a buffer that is reused, and only passed on once
+ * it is full, so writing is not slowed down by the destination. Numbers are
+ * formatted directly into the buffer, without creating strings for them.
+ * <p/>
+ * JSON can either be written so it is easy to read, with each member of an
+ * object on its own line, or compactly, with no whitespace at all. Writing
+ * something where it does not belong, such as a value where a key is
+ * expected, throws an IllegalStateException rather than writing invalid
+ * JSON.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class JSONWriter implements AutoCloseable {
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+	private static final int DEFAULT_MAX_DEPTH = 16;
+
+	// What can be written next, at each level of nesting.
+	private static final int EXPECT_VALUE = 0;
+	private static final int EXPECT_FIRST_ELEMENT = 1;
+	private static final int EXPECT_ELEMENT = 2;
+	private static final int EXPECT_FIRST_KEY = 3;
+	private static final int EXPECT_KEY = 4;
+	private static final int EXPECT_MEMBER_VALUE = 5;
+	private static final int EXPECT_END = 6;
+
+	// Doubles whose magnitude is below this are integers that can be stored
+	// exactly.
+	private static final double MAX_EXACT_INTEGER = 9007199254740992.0;
+	private static final int MAX_FRACTION_DIGITS = 17;
+	private static final double[] POWERS_OF_TEN =
+			new double[MAX_FRACTION_DIGITS + 1];
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final char[] MIN_LONG = Long.toString(Long.MIN_VALUE)
+			.toCharArray();
+
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i <= MAX_FRACTION_DIGITS; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	// Writers used by JSONValue.write, which are kept so their buffers can be
+	// used again.
+	private static final ThreadLocal<JSONWriter> POOL =
+			new ThreadLocal<JSONWriter>();
+
+	private Writer writer;
+	private final WritableByteChannel channel;
+	private final ByteBuffer bytes;
+	private final CharsetEncoder encoder;
+	private final boolean isCompact;
+	private final char[] buffer;
+	private int position;
+	private final char[] digits;
+
+	private int[] states;
+	private int depth;
+	private int numObjects;
+
+	/**
+	 * Creates a JSONWriter that writes to a character stream.
+	 * 
+	 * @param writer
+	 *            The destination of the document. It is closed when this is
+	 *            closed.
+	 * @param isCompact
+	 *            Whether the document is written without any whitespace,
+	 *            rather than so it is easy to read.
+	 */
+	public JSONWriter(Writer writer, boolean isCompact) {
+		this(writer, null, isCompact);
+	}
+
+	/**
+	 * Creates a JSONWriter that writes to a channel, such as a file, encoded
+	 * in UTF-8.
+	 * 
+	 * @param channel
+	 *            The destination of the document. It is closed when this is
+	 *            closed.
+	 * @param isCompact
+	 *            Whether the document is written without any whitespace,
+	 *            rather than so it is easy to read.
+	 */
+	public JSONWriter(WritableByteChannel channel, boolean isCompact) {
+		this(null, channel, isCompact);
+	}
+
+	private JSONWriter(Writer writer, WritableByteChannel channel,
+			boolean isCompact) {
+		this.writer = writer;
+		this.channel = channel;
+		this.bytes = channel == null ? null : ByteBuffer
+				.allocate(DEFAULT_BUFFER_SIZE * 3);
+		this.encoder = channel == null ? null : StandardCharsets.UTF_8
+				.newEncoder();
+		this.isCompact = isCompact;
+		this.buffer = new char[DEFAULT_BUFFER_SIZE];
+		this.position = 0;
+		this.digits = new char[MIN_LONG.length];
+		this.states = new int[DEFAULT_MAX_DEPTH];
+		this.states[0] = EXPECT_VALUE;
+		this.depth = 0;
+		this.numObjects = 0;
+	}
+
+	/**
+	 * Creates a JSONWriter that writes a file encoded in UTF-8.
+	 * 
+	 * @param fileName
+	 *            The name and path of the file to write.
+	 * @param isCompact
+	 *            Whether the document is written without any whitespace,
+	 *            rather than so it is easy to read.
+	 * @return A JSONWriter for the file.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public static JSONWriter open(String fileName, boolean isCompact)
+			throws IOException {
+		// Closing the channel also closes the file.
+		FileChannel channel = new FileOutputStream(fileName).getChannel();
+		return new JSONWriter(channel, isCompact);
+	}
+
+	/**
+	 * Gets a JSONWriter that writes to a character stream, which was used
+	 * before if possible. It must be given back with {@link #release()} once
+	 * it is no longer used.
+	 * 
+	 * @param writer
+	 *            The destination of the document.
+	 * @return A JSONWriter for the character stream, which writes so the
+	 *         document is easy to read.
+	 */
+	static JSONWriter obtain(Writer writer) {
+		JSONWriter result = POOL.get();
+		if (result == null) {
+			return new JSONWriter(writer, false);
+		}
+		// The writer is taken out of the pool while it is used, so writing
+		// inside another write gets a new writer.
+		POOL.remove();
+		result.writer = writer;
+		result.position = 0;
+		result.depth = 0;
+		result.numObjects = 0;
+		result.states[0] = EXPECT_VALUE;
+		return result;
+	}
+
+	/**
+	 * Gives back a JSONWriter from {@link #obtain(Writer)}, so it can be used
+	 * again. Anything not yet flushed is discarded.
+	 */
+	void release() {
+		writer = null;
+		POOL.set(this);
+	}
+
+	/**
+	 * Writes everything in the buffer to the destination, and flushes it.
+	 * 
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 */
+	public void flush() throws IOException {
+		drain(false);
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			drain(true);
+		} finally {
+			if (writer != null) {
+				writer.close();
+			} else {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts writing an object.
+	 * 
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void startObject() throws IOException {
+		startValue();
+		write('{');
+		push(EXPECT_FIRST_KEY);
+		numObjects++;
+	}
+
+	/**
+	 * Finishes writing an object.
+	 * 
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If an object is not being written, or a value is expected
+	 *             for its last key.
+	 */
+	public void endObject() throws IOException {
+		int state = states[depth];
+		if (state != EXPECT_FIRST_KEY && state != EXPECT_KEY) {
+			throw new IllegalStateException("An object cannot end here");
+		}
+		depth--;
+		numObjects--;
+		if (state == EXPECT_KEY) {
+			writeNewLine();
+		}
+		write('}');
+	}
+
+	/**
+	 * Starts writing an array.
+	 * 
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void startArray() throws IOException {
+		startValue();
+		write('[');
+		push(EXPECT_FIRST_ELEMENT);
+	}
+
+	/**
+	 * Finishes writing an array.
+	 * 
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If an array is not being written.
+	 */
+	public void endArray() throws IOException {
+		int state = states[depth];
+		if (state != EXPECT_FIRST_ELEMENT && state != EXPECT_ELEMENT) {
+			throw new IllegalStateException("An array cannot end here");
+		}
+		depth--;
+		write(']');
+	}
+
+	/**
+	 * Writes the key of the next member of an object.
+	 * 
+	 * @param key
+	 *            The key to write.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a key cannot be written here.
+	 */
+	public void key(String key) throws IOException {
+		int state = states[depth];
+		if (state == EXPECT_KEY) {
+			write(',');
+		} else if (state != EXPECT_FIRST_KEY) {
+			throw new IllegalStateException("A key cannot be written here");
+		}
+		writeNewLine();
+		writeString(key);
+		write(':');
+		if (!isCompact) {
+			write(' ');
+		}
+		states[depth] = EXPECT_MEMBER_VALUE;
+	}
+
+	/**
+	 * Writes a string.
+	 * 
+	 * @param value
+	 *            The string to write, or null to write a null value.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void value(String value) throws IOException {
+		if (value == null) {
+			nullValue();
+			return;
+		}
+		startValue();
+		writeString(value);
+	}
+
+	/**
+	 * Writes an integer.
+	 * 
+	 * @param value
+	 *            The integer to write.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void value(long value) throws IOException {
+		startValue();
+		writeLong(value);
+	}
+
+	/**
+	 * Writes a number. It is always written with a fraction or exponent, so
+	 * it is read back as a double rather than an integer.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalArgumentException
+	 *             If the number is infinite or NaN, which JSON cannot
+	 *             represent.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			throw new IllegalArgumentException("JSON cannot represent "
+					+ value);
+		}
+		startValue();
+		writeDouble(value);
+	}
+
+	/**
+	 * Writes a boolean.
+	 * 
+	 * @param value
+	 *            The boolean to write.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void value(boolean value) throws IOException {
+		startValue();
+		write(value ? "true" : "false");
+	}
+
+	/**
+	 * Writes a null value.
+	 * 
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void nullValue() throws IOException {
+		startValue();
+		write("null");
+	}
+
+	/**
+	 * Writes a JSONValue, and everything in it.
+	 * 
+	 * @param value
+	 *            The value to write.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	public void value(JSONValue value) throws IOException {
+		value.write(this);
+	}
+
+	/**
+	 * Writes a number that is already formatted.
+	 * 
+	 * @param text
+	 *            The text of the number.
+	 * @throws IOException
+	 *             If the destination cannot be written to.
+	 * @throws IllegalStateException
+	 *             If a value cannot be written here.
+	 */
+	void numberValue(String text) throws IOException {
+		startValue();
+		write(text);
+	}
+
+	private void startValue() throws IOException {
+		switch (states[depth]) {
+		case EXPECT_VALUE:
+			states[depth] = EXPECT_END;
+			break;
+		case EXPECT_MEMBER_VALUE:
+			states[depth] = EXPECT_KEY;
+			break;
+		case EXPECT_FIRST_ELEMENT:
+			states[depth] = EXPECT_ELEMENT;
+			break;
+		case EXPECT_ELEMENT:
+			write(',');
+			if (!isCompact) {
+				write(' ');
+			}
+			break;
+		default:
+			throw new IllegalStateException("A value cannot be written here");
+		}
+	}
+
+	private void push(int state) {
+		depth++;
+		if (depth == states.length) {
+			states = Arrays.copyOf(states, states.length * 2);
+		}
+		states[depth] = state;
+	}
+
+	private void writeNewLine() throws IOException {
+		if (isCompact) {
+			return;
+		}
+		// Only objects are indented, since arrays are written on one line.
+		write('\n');
+		for (int i = 0; i < numObjects; i++) {
+			write('\t');
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		write('"');
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= ' ' && c != '"' && c != '\\'
+					&& !Character.isSurrogate(c)) {
+				if (position == buffer.length) {
+					drain(false);
+				}
+				buffer[position++] = c;
+				continue;
+			}
+			if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				write(c);
+				write(value.charAt(++i));
+				continue;
+			}
+			// Characters that cannot appear in a JSON string, or cannot be
+			// encoded on their own, are escaped, so the string reads back as
+			// the same value.
+			write('\\');
+			switch (c) {
+			case '"':
+			case '\\':
+				write(c);
+				break;
+			case '\n':
+				write('n');
+				break;
+			case '\r':
+				write('r');
+				break;
+			case '\t':
+				write('t');
+				break;
+			default:
+				write('u');
+				write(HEX_DIGITS[c >> 12]);
+				write(HEX_DIGITS[(c >> 8) & 0xF]);
+				write(HEX_DIGITS[(c >> 4) & 0xF]);
+				write(HEX_DIGITS[c & 0xF]);
+				break;
+			}
+		}
+		write('"');
+	}
+
+	private void writeLong(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			// This is the only long whose negation is not a long.
+			write(MIN_LONG, 0, MIN_LONG.length);
+			return;
+		}
+		int start = digits.length;
+		long remaining = Math.abs(value);
+		do {
+			digits[--start] = (char) ('0' + remaining % 10);
+			remaining /= 10;
+		} while (remaining != 0);
+		if (value < 0) {
+			digits[--start] = '-';
+		}
+		write(digits, start, digits.length - start);
+	}
+
+	private void writeDouble(double value) throws IOException {
+		if (value == 0.0) {
+			write(1.0 / value < 0.0 ? "-0.0" : "0.0");
+			return;
+		}
+		// Most numbers in games have only a few decimal places. If a number
+		// is some integer divided by a power of ten, and both are exact, then
+		// dividing them is correctly rounded, so writing the integer with a
+		// decimal point gives back exactly the same number. The first power
+		// that works gives the fewest digits.
+		double magnitude = Math.abs(value);
+		for (int i = 0; i <= MAX_FRACTION_DIGITS; i++) {
+			double scaled = magnitude * POWERS_OF_TEN[i];
+			if (scaled >= MAX_EXACT_INTEGER) {
+				break;
+			}
+			double mantissa = Math.rint(scaled);
+			if (mantissa / POWERS_OF_TEN[i] == magnitude) {
+				writeDecimal(value < 0.0, (long) mantissa, i);
+				return;
+			}
+		}
+		// Anything else is rare, and is left to the library.
+		write(Double.toString(value));
+	}
+
+	private void writeDecimal(boolean isNegative, long mantissa,
+			int fractionDigits) throws IOException {
+		int start = digits.length;
+		int numDigits = 0;
+		// Leading zeros are written up to the units digit, so there is
+		// always at least one digit before the decimal point.
+		while (mantissa != 0 || numDigits <= fractionDigits) {
+			digits[--start] = (char) ('0' + mantissa % 10);
+			mantissa /= 10;
+			numDigits++;
+		}
+		if (isNegative) {
+			write('-');
+		}
+		int pointIndex = digits.length - fractionDigits;
+		write(digits, start, pointIndex - start);
+		write('.');
+		if (fractionDigits == 0) {
+			write('0');
+		} else {
+			write(digits, pointIndex, fractionDigits);
+		}
+	}
+
+	private void write(char c) throws IOException {
+		if (position == buffer.length) {
+			drain(false);
+		}
+		buffer[position++] = c;
+	}
+
+	private void write(String text) throws IOException {
+		int length = text.length();
+		if (position + length > buffer.length) {
+			drain(false);
+			if (length > buffer.length) {
+				writeLarge(text);
+				return;
+			}
+		}
+		text.getChars(0, length, buffer, position);
+		position += length;
+	}
+
+	private void write(char[] source, int start, int length)
+			throws IOException {
+		if (position + length > buffer.length) {
+			drain(false);
+		}
+		System.arraycopy(source, start, buffer, position, length);
+		position += length;
+	}
+
+	private void writeLarge(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			write(text.charAt(i));
+		}
+	}
+
+	private void drain(boolean isEnd) throws IOException {
+		if (writer != null) {
+			writer.write(buffer, 0, position);
+			position = 0;
+			return;
+		}
+		CharBuffer chars = CharBuffer.wrap(buffer, 0, position);
+		while (true) {
+			CoderResult result = encoder.encode(chars, bytes, isEnd);
+			if (result.isError()) {
+				try {
+					result.throwException();
+				} catch (CharacterCodingException ex) {
+					throw new IOException("The document cannot be encoded "
+							+ "as UTF-8", ex);
+				}
+			}
+			if (!result.isOverflow()) {
+				break;
+			}
+			writeBytes();
+		}
+		if (isEnd) {
+			while (encoder.flush(bytes).isOverflow()) {
+				writeBytes();
+			}
+		}
+		writeBytes();
+		// Half of a surrogate pair at the end of the buffer is kept until the
+		// rest of it is written.
+		position = chars.remaining();
+		chars.get(buffer, 0, position);
+	}
+
+	private void writeBytes() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+}
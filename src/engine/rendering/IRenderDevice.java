@@ -85,6 +85,22 @@ public interface IRenderDevice {
 	 */
 	public ArrayBitmap getTexture(int id, int x, int y, int width, int height);
 
+	/**
+	 * Replaces part of a texture on this device with a new image. It is
+	 * preferred to use this through the {@link Texture} class when possible.
+	 * 
+	 * @param id
+	 *            The integer identifying the texture to be updated.
+	 * @param x
+	 *            The x location in the texture where the image should start.
+	 * @param y
+	 *            The y location in the texture where the image should start.
+	 * @param image
+	 *            The image to be copied into the texture. It must fit within
+	 *            the texture at the given location.
+	 */
+	public void updateTexture(int id, int x, int y, ArrayBitmap image);
+
 	/**
 	 * Creates a render target that can be used by this device. It is preferred
 	 * to use this through the {@link RenderTarget} class when possible.
@@ -128,6 +144,11 @@ public interface IRenderDevice {
 	/**
 	 * Produces a rendering effect within a rectangle. It is preferred to use
 	 * this through the {@link RenderTarget} class when possible.
+	 * <p/>
+	 * The rendering may be deferred and batched with other rectangles sharing
+	 * the same render target, texture, and blend mode. Deferred rendering is
+	 * always finished before the device reads or clears a render target, and
+	 * when {@link #flush()} is called.
 	 * 
 	 * @param fbo
 	 *            The integer identifying the render target.
@@ -164,4 +185,18 @@ public interface IRenderDevice {
 			double startY, double endX, double endY, double texStartX,
 			double texStartY, double texEndX, double texEndY, Color c,
 			double transparency);
+
+	/**
+	 * Finishes any rendering that has been deferred by this device. This
+	 * should be called before the results of rendering are displayed.
+	 */
+	public void flush();
+
+	/**
+	 * Gets the sprite batch used to group rectangles before rendering. This
+	 * can be used to read how much rendering was done each frame.
+	 * 
+	 * @return The sprite batch used by this device.
+	 */
+	public SpriteBatch getSpriteBatch();
 }
@@ -0,0 +1,203 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.rendering;
+
+import java.util.Arrays;
+
+/**
+ * A render context that records everything drawn to it, so it can be drawn to
+ * another context later.
+ * <p/>
+ * A recording is a snapshot of one frame: every position, size and flag is
+ * copied when it is recorded, so the scene can keep changing while the
+ * recording is drawn, even on another thread. Sprite sheets, light maps and
+ * colors are stored by reference, and must not be disposed until the
+ * recording has been drawn. Strings are recorded as one sprite for each
+ * character.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class RecordingRenderContext implements IRenderContext {
+	private static final int CLEAR = 0;
+	private static final int DRAW_SPRITE = 1;
+	private static final int CLEAR_LIGHTING = 2;
+	private static final int DRAW_LIGHT = 3;
+	private static final int APPLY_LIGHTING = 4;
+
+	private static final int TYPE_MASK = 0xFF;
+	private static final int FLIP_X = 1 << 8;
+	private static final int FLIP_Y = 1 << 9;
+
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private int[] commands;
+	private int[] indices;
+	private Object[] resources;
+	private Color[] colors;
+	private int size;
+	private double[] values;
+	private int numValues;
+	private final StringBuilder wrapBuffer;
+
+	/**
+	 * Creates a new, empty RecordingRenderContext.
+	 */
+	public RecordingRenderContext() {
+		this.commands = new int[DEFAULT_CAPACITY];
+		this.indices = new int[DEFAULT_CAPACITY];
+		this.resources = new Object[DEFAULT_CAPACITY];
+		this.colors = new Color[DEFAULT_CAPACITY];
+		this.values = new double[DEFAULT_CAPACITY * 8];
+		this.size = 0;
+		this.numValues = 0;
+		this.wrapBuffer = new StringBuilder();
+	}
+
+	/**
+	 * Gets the number of commands recorded.
+	 * 
+	 * @return The number of commands recorded.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Draws everything recorded, in the order it was recorded.
+	 * 
+	 * @param target
+	 *            The context to draw to.
+	 */
+	public void replay(IRenderContext target) {
+		int value = 0;
+		for (int i = 0; i < size; i++) {
+			int command = commands[i];
+			switch (command & TYPE_MASK) {
+			case CLEAR:
+				target.clear(colors[i]);
+				break;
+			case DRAW_SPRITE:
+				target.drawSprite((SpriteSheet) resources[i], indices[i],
+						values[value], values[value + 1], values[value + 2],
+						values[value + 3], values[value + 4],
+						(command & FLIP_X) != 0, (command & FLIP_Y) != 0,
+						colors[i]);
+				value += 5;
+				break;
+			case CLEAR_LIGHTING:
+				target.clearLighting(colors[i]);
+				break;
+			case DRAW_LIGHT:
+				target.drawLight((LightMap) resources[i], values[value],
+						values[value + 1], values[value + 2],
+						values[value + 3], values[value + 4],
+						values[value + 5], values[value + 6],
+						values[value + 7], colors[i]);
+				value += 8;
+				break;
+			case APPLY_LIGHTING:
+				target.applyLighting();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Removes everything recorded, so this context can record a new frame.
+	 */
+	public void reset() {
+		Arrays.fill(resources, 0, size, null);
+		Arrays.fill(colors, 0, size, null);
+		size = 0;
+		numValues = 0;
+	}
+
+	@Override
+	public void clear(Color color) {
+		add(CLEAR, 0, null, color);
+	}
+
+	@Override
+	public void drawSprite(SpriteSheet sheet, int index, double startX,
+			double startY, double endX, double endY, double transparency,
+			boolean flipX, boolean flipY, Color color) {
+		int command = DRAW_SPRITE;
+		if (flipX) {
+			command |= FLIP_X;
+		}
+		if (flipY) {
+			command |= FLIP_Y;
+		}
+		add(command, index, sheet, color);
+		int i = reserveValues(5);
+		values[i] = startX;
+		values[i + 1] = startY;
+		values[i + 2] = endX;
+		values[i + 3] = endY;
+		values[i + 4] = transparency;
+	}
+
+	@Override
+	public double drawString(String msg, SpriteSheet font, double x, double y,
+			double scale, Color color, double wrapX) {
+		return RenderContext.drawString(this, wrapBuffer, msg, font, x, y,
+				scale, color, wrapX);
+	}
+
+	@Override
+	public void clearLighting(Color color) {
+		add(CLEAR_LIGHTING, 0, null, color);
+	}
+
+	@Override
+	public void drawLight(LightMap light, double startX, double startY,
+			double endX, double endY, double texStartX, double texStartY,
+			double texEndX, double texEndY, Color color) {
+		add(DRAW_LIGHT, 0, light, color);
+		int i = reserveValues(8);
+		values[i] = startX;
+		values[i + 1] = startY;
+		values[i + 2] = endX;
+		values[i + 3] = endY;
+		values[i + 4] = texStartX;
+		values[i + 5] = texStartY;
+		values[i + 6] = texEndX;
+		values[i + 7] = texEndY;
+	}
+
+	@Override
+	public void applyLighting() {
+		add(APPLY_LIGHTING, 0, null, null);
+	}
+
+	@Override
+	public void dispose() {
+		reset();
+	}
+
+	private void add(int command, int index, Object resource, Color color) {
+		if (size == commands.length) {
+			int capacity = commands.length * 2;
+			commands = Arrays.copyOf(commands, capacity);
+			indices = Arrays.copyOf(indices, capacity);
+			resources = Arrays.copyOf(resources, capacity);
+			colors = Arrays.copyOf(colors, capacity);
+		}
+		commands[size] = command;
+		indices[size] = index;
+		resources[size] = resource;
+		colors[size] = color;
+		size++;
+	}
+
+	private int reserveValues(int amount) {
+		if (numValues + amount > values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		int start = numValues;
+		numValues += amount;
+		return start;
+	}
+}
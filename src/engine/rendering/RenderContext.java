@@ -14,6 +14,7 @@ import engine.util.Util;
 public class RenderContext implements IRenderContext {
 	private final LightMap lightMap;
 	private final RenderTarget target;
+	private final StringBuilder wrapBuffer;
 
 	/**
 	 * Creates a new RenderContext.
@@ -23,6 +24,7 @@ public class RenderContext implements IRenderContext {
 	 */
 	public RenderContext(IRenderDevice device, RenderTarget target) {
 		this.target = target;
+		this.wrapBuffer = new StringBuilder();
 		this.lightMap = new LightMap(device, target.getWidth(), target.getHeight(), 1);
 	}
 
@@ -69,35 +71,69 @@ public class RenderContext implements IRenderContext {
 	@Override
 	public double drawString(String str, SpriteSheet font, double x, double y,
 			double scale, Color color, double wrapX) {
+		return drawString(this, wrapBuffer, str, font, x, y, scale, color,
+				wrapX);
+	}
+
+	/**
+	 * Draws a string to a render context as a series of sprites, one for each
+	 * character, laid out as described by {@link IRenderContext#drawString}.
+	 * 
+	 * @param target
+	 *            The context the characters are drawn to.
+	 * @param wrapBuffer
+	 *            A buffer used to store the string after it is wrapped.
+	 * @return The Y location of the line after the string.
+	 */
+	static double drawString(IRenderContext target, StringBuilder wrapBuffer,
+			String str, SpriteSheet font, double x, double y, double scale,
+			Color color, double wrapX) {
 		double aspect = font.getSpriteAspect();
 		double maxLength = (wrapX - x) / (scale * aspect);
 		if (wrapX <= x || wrapX <= -1 || str.length() < maxLength) {
-			drawStringLine(str, font, x, y, scale, color);
+			drawStringLine(target, str, 0, str.length(), font, x, y, scale,
+					color);
 			return y - scale;
 		}
-		str = Util.wrapString(str, maxLength);
-		String[] strs = str.split("\n");
-		for (int i = 0; i < strs.length; i++) {
-			String[] wrappedStrings = strs[i].split("(?<=\\G.{"
-					+ ((int) maxLength) + "})");
-			for (int j = 0; j < wrappedStrings.length; j++, y -= scale) {
-				drawStringLine(wrappedStrings[j], font, x, y, scale, color);
+		wrapBuffer.setLength(0);
+		Util.wrapString(wrapBuffer, str, maxLength);
+		int lineLength = (int) maxLength;
+		int end = wrapBuffer.length();
+		int lineStart = 0;
+		do {
+			int lineEnd = lineStart;
+			while (lineEnd < end && wrapBuffer.charAt(lineEnd) != '\n') {
+				lineEnd++;
 			}
-		}
+			if (lineStart == lineEnd) {
+				y -= scale;
+			}
+			// Lines that are still too long are split wherever they reach
+			// the maximum length.
+			for (int i = lineStart; i < lineEnd; y -= scale) {
+				int splitEnd = lineLength > 0 ? Math.min(i + lineLength,
+						lineEnd) : lineEnd;
+				drawStringLine(target, wrapBuffer, i, splitEnd, font, x, y,
+						scale, color);
+				i = splitEnd;
+			}
+			lineStart = lineEnd + 1;
+		} while (lineStart < end);
 		return y;
 	}
 
-	private void drawStringLine(String str, SpriteSheet font, double x,
+	private static void drawStringLine(IRenderContext target,
+			CharSequence str, int start, int end, SpriteSheet font, double x,
 			double y, double scale, Color color) {
 		double aspect = font.getSpriteAspect();
 		double startX = x;
 		double startY = y;
 		double width = scale * aspect;
 		double height = scale;
-		for (int i = 0; i < str.length(); i++, startX += width) {
+		for (int i = start; i < end; i++, startX += width) {
 			char c = str.charAt(i);
-			drawSprite(font, (int) c, startX, startY, startX + width, startY
-					+ height, 1.0, false, false, color);
+			target.drawSprite(font, (int) c, startX, startY, startX + width,
+					startY + height, 1.0, false, false, color);
 		}
 	}
 
@@ -0,0 +1,222 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.rendering;
+
+import engine.rendering.IRenderDevice.BlendMode;
+
+/**
+ * Collects rectangles drawn with the same render target, texture, and blend
+ * mode into a single stream of vertices, so they can be rendered together
+ * rather than one at a time.
+ * <p/>
+ * Each rectangle is stored as four vertices, in the order start/start,
+ * start/end, end/end, end/start. Each vertex is stored as
+ * {@link #FLOATS_PER_VERTEX} floats: position on X and Y, texture coordinate
+ * on X and Y, then red, green, blue, and alpha.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class SpriteBatch {
+	/**
+	 * Interface for an object that can render the rectangles collected by a
+	 * sprite batch.
+	 */
+	public static interface IRenderer {
+		/**
+		 * Renders a group of rectangles that all share the same state.
+		 * 
+		 * @param fbo
+		 *            The integer identifying the render target.
+		 * @param texId
+		 *            The integer identifying the texture being used for
+		 *            rendering.
+		 * @param mode
+		 *            The blend mode being used.
+		 * @param vertices
+		 *            The vertices of every rectangle, in the layout described
+		 *            by {@link SpriteBatch}.
+		 * @param numRects
+		 *            How many rectangles are stored in {@code vertices}.
+		 */
+		public void drawRects(int fbo, int texId, BlendMode mode,
+				float[] vertices, int numRects);
+	}
+
+	/** The number of floats used to store a single vertex. */
+	public static final int FLOATS_PER_VERTEX = 8;
+	/** The number of vertices used to store a single rectangle. */
+	public static final int VERTICES_PER_RECT = 4;
+	/** The number of floats used to store a single rectangle. */
+	public static final int FLOATS_PER_RECT = FLOATS_PER_VERTEX
+			* VERTICES_PER_RECT;
+
+	private final IRenderer renderer;
+	private final float[] vertices;
+	private final int maxRects;
+	private int numRects;
+	private int fbo;
+	private int texId;
+	private BlendMode mode;
+
+	private int drawCalls;
+	private int flushes;
+	private int lastDrawCalls;
+	private int lastFlushes;
+
+	/**
+	 * Creates a new SpriteBatch.
+	 * 
+	 * @param renderer
+	 *            The object that renders the rectangles when they are
+	 *            flushed.
+	 * @param maxRects
+	 *            The maximum number of rectangles that can be collected before
+	 *            they must be flushed.
+	 */
+	public SpriteBatch(IRenderer renderer, int maxRects) {
+		if (maxRects <= 0) {
+			throw new IllegalArgumentException(
+					"A sprite batch must be able to hold at least one rectangle");
+		}
+		this.renderer = renderer;
+		this.maxRects = maxRects;
+		this.vertices = new float[maxRects * FLOATS_PER_RECT];
+		this.numRects = 0;
+		this.fbo = -1;
+		this.texId = -1;
+		this.mode = null;
+	}
+
+	/**
+	 * Gets the maximum number of rectangles that can be collected before they
+	 * must be flushed.
+	 * 
+	 * @return The maximum number of rectangles in a single flush.
+	 */
+	public int getMaxRects() {
+		return maxRects;
+	}
+
+	/**
+	 * Adds a rectangle to the batch. If the rectangle does not share the state
+	 * of the rectangles already in the batch, or the batch is full, the batch
+	 * is flushed first. The parameters are the same as
+	 * {@link IRenderDevice#drawRect}.
+	 * 
+	 * @param fbo
+	 *            The integer identifying the render target.
+	 * @param texId
+	 *            The integer identifying the texture being used for rendering.
+	 * @param mode
+	 *            The blend mode being used
+	 * @param startX
+	 *            The start location on X, normalized into the range (-1, 1)
+	 * @param startY
+	 *            The start location on Y, normalized into the range (-1, 1)
+	 * @param endX
+	 *            The end location on X, normalized into the range (-1, 1)
+	 * @param endY
+	 *            The end location on Y, normalized into the range (-1, 1)
+	 * @param texStartX
+	 *            The location in the image on X where pixels should begin being
+	 *            copied, normalized into the range (0, 1)
+	 * @param texStartY
+	 *            The location in the image on Y where pixels should begin being
+	 *            copied, normalized into the range (0, 1)
+	 * @param texEndX
+	 *            The location in the image on X where pixels should finish
+	 *            being copied, normalized into the range (0, 1)
+	 * @param texEndY
+	 *            The location in the image on Y where pixels should finish
+	 *            being copied, normalized into the range (0, 1)
+	 * @param c
+	 *            The color masking everything.
+	 * @param transparency
+	 *            The amount of transparency being used.
+	 */
+	public void add(int fbo, int texId, BlendMode mode, double startX,
+			double startY, double endX, double endY, double texStartX,
+			double texStartY, double texEndX, double texEndY, Color c,
+			double transparency) {
+		if (numRects == maxRects || fbo != this.fbo || texId != this.texId
+				|| mode != this.mode) {
+			flush();
+			this.fbo = fbo;
+			this.texId = texId;
+			this.mode = mode;
+		}
+
+		float r = (float) c.getRed();
+		float g = (float) c.getGreen();
+		float b = (float) c.getBlue();
+		float a = (float) (c.getAlpha() * transparency);
+
+		int i = numRects * FLOATS_PER_RECT;
+		i = putVertex(i, startX, startY, texStartX, texStartY, r, g, b, a);
+		i = putVertex(i, startX, endY, texStartX, texEndY, r, g, b, a);
+		i = putVertex(i, endX, endY, texEndX, texEndY, r, g, b, a);
+		i = putVertex(i, endX, startY, texEndX, texStartY, r, g, b, a);
+		numRects++;
+		drawCalls++;
+	}
+
+	/**
+	 * Renders every rectangle currently in the batch, and empties the batch.
+	 * Does nothing if the batch is empty.
+	 */
+	public void flush() {
+		if (numRects == 0) {
+			return;
+		}
+		renderer.drawRects(fbo, texId, mode, vertices, numRects);
+		numRects = 0;
+		flushes++;
+	}
+
+	/**
+	 * Marks the end of a frame. The counts for the frame are stored so they
+	 * can be read with {@link #getDrawCalls()} and {@link #getFlushes()}, and
+	 * counting starts over for the next frame. This does not flush the batch.
+	 */
+	public void endFrame() {
+		lastDrawCalls = drawCalls;
+		lastFlushes = flushes;
+		drawCalls = 0;
+		flushes = 0;
+	}
+
+	/**
+	 * Gets how many rectangles were drawn during the last completed frame.
+	 * 
+	 * @return The number of rectangles drawn during the last frame.
+	 */
+	public int getDrawCalls() {
+		return lastDrawCalls;
+	}
+
+	/**
+	 * Gets how many times the batch was flushed during the last completed
+	 * frame. This is the number of times rendering was actually done by the
+	 * renderer.
+	 * 
+	 * @return The number of flushes during the last frame.
+	 */
+	public int getFlushes() {
+		return lastFlushes;
+	}
+
+	private int putVertex(int i, double x, double y, double texX,
+			double texY, float r, float g, float b, float a) {
+		vertices[i++] = (float) x;
+		vertices[i++] = (float) y;
+		vertices[i++] = (float) texX;
+		vertices[i++] = (float) texY;
+		vertices[i++] = r;
+		vertices[i++] = g;
+		vertices[i++] = b;
+		vertices[i++] = a;
+		return i;
+	}
+}
@@ -13,6 +13,7 @@ import engine.util.Util;
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
 public class SpriteSheet {
+	private final TextureRegion region;
 	private final Texture sheet;
 	private final int spritesPerX;
 	private final int spritesPerY;
@@ -37,17 +38,37 @@ public class SpriteSheet {
 	 */
 	public SpriteSheet(Texture spriteSheet, int spritesPerX, int spritesPerY,
 			int spriteBorderSize) {
-		this.sheet = spriteSheet;
+		this(new TextureRegion(spriteSheet), spritesPerX, spritesPerY,
+				spriteBorderSize);
+	}
+
+	/**
+	 * Creates a SpriteSheet from part of a texture, such as a region of a
+	 * {@link TextureAtlas}.
+	 * 
+	 * @param region
+	 *            The region of a texture containing the sprites
+	 * @param spritesPerX
+	 *            Number of sprites on the X axis.
+	 * @param spritesPerY
+	 *            Number of sprites on the Y axis.
+	 * @param spriteBorderSize
+	 *            The number of pixels bordering each sprite on all sides.
+	 */
+	public SpriteSheet(TextureRegion region, int spritesPerX,
+			int spritesPerY, int spriteBorderSize) {
+		this.region = region;
+		this.sheet = region.getTexture();
 		this.spritesPerX = spritesPerX;
 		this.spritesPerY = spritesPerY;
 		this.spriteBorderSize = spriteBorderSize;
-		this.borderedSpriteWidth = spriteSheet.getWidth() / spritesPerX;
-		this.borderedSpriteHeight = spriteSheet.getHeight() / spritesPerY;
+		this.borderedSpriteWidth = region.getWidth() / spritesPerX;
+		this.borderedSpriteHeight = region.getHeight() / spritesPerY;
 		this.spriteWidth = borderedSpriteWidth - 2 * spriteBorderSize;
 		this.spriteHeight = borderedSpriteHeight - 2 * spriteBorderSize;
 
 		spriteAABBs = new AABB[getNumSprites()];
-		ArrayBitmap pixels = sheet.getPixels();
+		ArrayBitmap pixels = region.getPixels();
 		for (int i = 0; i < getNumSprites(); i++) {
 			spriteAABBs[i] = generateAABB(i, pixels);
 		}
@@ -81,7 +102,8 @@ public class SpriteSheet {
 	}
 
 	/**
-	 * Gets the texture containing the sprite images.
+	 * Gets the texture containing the sprite images. If the sprites are part
+	 * of a {@link TextureAtlas}, this is the atlas page containing them.
 	 * 
 	 * @return The texture containing the sprite images.
 	 */
@@ -89,6 +111,15 @@ public class SpriteSheet {
 		return sheet;
 	}
 
+	/**
+	 * Gets the region of the texture containing the sprite images.
+	 * 
+	 * @return The region of the texture containing the sprite images.
+	 */
+	public TextureRegion getRegion() {
+		return region;
+	}
+
 	/**
 	 * Gets the total number of sprites.
 	 * 
@@ -125,8 +156,7 @@ public class SpriteSheet {
 	 *         texture.
 	 */
 	public int getStartX(int index) {
-		Util.boundsAssert(index, 0, getNumSprites() - 1);
-		return (index % spritesPerX) * borderedSpriteWidth + spriteBorderSize;
+		return region.getX() + getRegionStartX(index);
 	}
 
 	/**
@@ -139,6 +169,15 @@ public class SpriteSheet {
 	 *         texture.
 	 */
 	public int getStartY(int index) {
+		return region.getY() + getRegionStartY(index);
+	}
+
+	private int getRegionStartX(int index) {
+		Util.boundsAssert(index, 0, getNumSprites() - 1);
+		return (index % spritesPerX) * borderedSpriteWidth + spriteBorderSize;
+	}
+
+	private int getRegionStartY(int index) {
 		Util.boundsAssert(index, 0, getNumSprites() - 1);
 		return ((index / spritesPerX) % spritesPerY) * borderedSpriteHeight
 				+ spriteBorderSize;
@@ -165,8 +204,8 @@ public class SpriteSheet {
 	}
 
 	private AABB generateAABB(int index, ArrayBitmap pixels) {
-		int imgStartX = getStartX(index);
-		int imgStartY = getStartY(index);
+		int imgStartX = getRegionStartX(index);
+		int imgStartY = getRegionStartY(index);
 		int imgEndX = imgStartX + spriteWidth;
 		int imgEndY = imgStartY + spriteHeight;
 		int imgHeight = imgEndY - imgStartY;
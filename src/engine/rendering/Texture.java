@@ -103,4 +103,19 @@ public class Texture {
 	public ArrayBitmap getPixels(int x, int y, int width, int height) {
 		return device.getTexture(id, x, y, width, height);
 	}
+
+	/**
+	 * Replaces part of this texture with a new image.
+	 * 
+	 * @param x
+	 *            The x location in this texture where the image should start.
+	 * @param y
+	 *            The y location in this texture where the image should start.
+	 * @param image
+	 *            The image to be copied into this texture. It must fit within
+	 *            this texture at the given location.
+	 */
+	public void setPixels(int x, int y, ArrayBitmap image) {
+		device.updateTexture(id, x, y, image);
+	}
 }
@@ -0,0 +1,246 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.rendering;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import engine.util.Util;
+
+/**
+ * Packs many images into a few large textures, called pages, so that images
+ * from different sources can be rendered without changing textures.
+ * <p/>
+ * Images are packed with a skyline packer. Each image is surrounded by a
+ * border of its own edge pixels, so filtering never blends in pixels from
+ * neighbouring images.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class TextureAtlas {
+	private static final int PADDING = 1;
+
+	private class Segment {
+		public Segment(int x, int y, int width) {
+			this.x = x;
+			this.y = y;
+			this.width = width;
+		}
+
+		private int x;
+		private int y;
+		private int width;
+	}
+
+	private class Page {
+		public Page(Texture texture) {
+			this.texture = texture;
+			this.skyline = new ArrayList<>();
+			skyline.add(new Segment(0, 0, texture.getWidth()));
+		}
+
+		private Texture texture;
+		private List<Segment> skyline;
+	}
+
+	private final IRenderDevice device;
+	private final int pageWidth;
+	private final int pageHeight;
+	private final int filter;
+	private final List<Page> pages;
+	private final List<Texture> oversized;
+
+	/**
+	 * Creates a new TextureAtlas.
+	 * 
+	 * @param device
+	 *            The device the atlas pages are created for.
+	 * @param pageWidth
+	 *            The width of each page, in pixels.
+	 * @param pageHeight
+	 *            The height of each page, in pixels.
+	 * @param filter
+	 *            The type of filtering to be used for every page. Should be
+	 *            one of the IRenderDevice.FILTER options.
+	 */
+	public TextureAtlas(IRenderDevice device, int pageWidth, int pageHeight,
+			int filter) {
+		this.device = device;
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+		this.filter = filter;
+		this.pages = new ArrayList<>();
+		this.oversized = new ArrayList<>();
+	}
+
+	/**
+	 * Releases this object. This should be called when the object will no
+	 * longer be used, and no methods or fields should be used after this method
+	 * is called.
+	 */
+	public void dispose() {
+		for (int i = 0; i < pages.size(); i++) {
+			pages.get(i).texture.dispose();
+		}
+		for (int i = 0; i < oversized.size(); i++) {
+			oversized.get(i).dispose();
+		}
+		pages.clear();
+		oversized.clear();
+	}
+
+	/**
+	 * Gets the type of filtering used for every page in this atlas.
+	 * 
+	 * @return One of the IRenderDevice.FILTER options.
+	 */
+	public int getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Gets the number of pages in this atlas.
+	 * 
+	 * @return The number of pages in this atlas.
+	 */
+	public int getNumPages() {
+		return pages.size();
+	}
+
+	/**
+	 * Gets one of the pages of this atlas.
+	 * 
+	 * @param index
+	 *            The index of the page.
+	 * @return The texture used as the page.
+	 */
+	public Texture getPage(int index) {
+		return pages.get(index).texture;
+	}
+
+	/**
+	 * Packs an image into this atlas. If the image is too large to fit in a
+	 * page, it is given a texture of its own instead.
+	 * 
+	 * @param image
+	 *            The image to be packed.
+	 * @return The region of the atlas containing the image.
+	 */
+	public TextureRegion add(ArrayBitmap image) {
+		int width = image.getWidth() + 2 * PADDING;
+		int height = image.getHeight() + 2 * PADDING;
+		if (width > pageWidth || height > pageHeight) {
+			Texture texture = new Texture(device, image, filter);
+			oversized.add(texture);
+			return new TextureRegion(texture);
+		}
+
+		for (int i = 0; i < pages.size(); i++) {
+			TextureRegion result = add(pages.get(i), image, width, height);
+			if (result != null) {
+				return result;
+			}
+		}
+		Page page = new Page(new Texture(device, new ArrayBitmap(pageWidth,
+				pageHeight), filter));
+		pages.add(page);
+		return add(page, image, width, height);
+	}
+
+	private TextureRegion add(Page page, ArrayBitmap image, int width,
+			int height) {
+		List<Segment> skyline = page.skyline;
+		int bestIndex = -1;
+		int bestX = 0;
+		int bestY = 0;
+		int bestTop = Integer.MAX_VALUE;
+		int bestWidth = Integer.MAX_VALUE;
+		for (int i = 0; i < skyline.size(); i++) {
+			int y = fit(skyline, i, width);
+			if (y < 0 || y + height > pageHeight) {
+				continue;
+			}
+			int top = y + height;
+			int segmentWidth = skyline.get(i).width;
+			if (top < bestTop || (top == bestTop && segmentWidth < bestWidth)) {
+				bestIndex = i;
+				bestX = skyline.get(i).x;
+				bestY = y;
+				bestTop = top;
+				bestWidth = segmentWidth;
+			}
+		}
+		if (bestIndex == -1) {
+			return null;
+		}
+
+		place(skyline, bestIndex, bestX, bestTop, width);
+		page.texture.setPixels(bestX, bestY, pad(image));
+		return new TextureRegion(page.texture, bestX + PADDING, bestY
+				+ PADDING, image.getWidth(), image.getHeight());
+	}
+
+	private int fit(List<Segment> skyline, int index, int width) {
+		int x = skyline.get(index).x;
+		if (x + width > pageWidth) {
+			return -1;
+		}
+		int y = 0;
+		int remaining = width;
+		for (int i = index; remaining > 0; i++) {
+			Segment segment = skyline.get(i);
+			y = Math.max(y, segment.y);
+			remaining -= segment.width;
+		}
+		return y;
+	}
+
+	private void place(List<Segment> skyline, int index, int x, int y,
+			int width) {
+		skyline.add(index, new Segment(x, y, width));
+		int end = x + width;
+		int i = index + 1;
+		while (i < skyline.size()) {
+			Segment segment = skyline.get(i);
+			if (segment.x >= end) {
+				break;
+			}
+			int segmentEnd = segment.x + segment.width;
+			if (segmentEnd <= end) {
+				skyline.remove(i);
+			} else {
+				segment.width = segmentEnd - end;
+				segment.x = end;
+				break;
+			}
+		}
+
+		for (i = 0; i < skyline.size() - 1;) {
+			Segment current = skyline.get(i);
+			Segment next = skyline.get(i + 1);
+			if (current.y == next.y) {
+				current.width += next.width;
+				skyline.remove(i + 1);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private static ArrayBitmap pad(ArrayBitmap image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		ArrayBitmap result = new ArrayBitmap(width + 2 * PADDING, height + 2
+				* PADDING);
+		for (int j = 0; j < result.getHeight(); j++) {
+			int srcY = Util.clamp(j - PADDING, 0, height - 1);
+			for (int i = 0; i < result.getWidth(); i++) {
+				int srcX = Util.clamp(i - PADDING, 0, width - 1);
+				result.set(i, j, image.get(srcX, srcY));
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,110 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.rendering;
+
+/**
+ * Represents a rectangular area of a texture, such as one image packed into a
+ * {@link TextureAtlas}.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class TextureRegion {
+	private final Texture texture;
+	private final int x;
+	private final int y;
+	private final int width;
+	private final int height;
+
+	/**
+	 * Creates a region covering an entire texture.
+	 * 
+	 * @param texture
+	 *            The texture containing the region.
+	 */
+	public TextureRegion(Texture texture) {
+		this(texture, 0, 0, texture.getWidth(), texture.getHeight());
+	}
+
+	/**
+	 * Creates a region covering part of a texture.
+	 * 
+	 * @param texture
+	 *            The texture containing the region.
+	 * @param x
+	 *            The location of the region in the texture on X.
+	 * @param y
+	 *            The location of the region in the texture on Y.
+	 * @param width
+	 *            The width of the region, in pixels.
+	 * @param height
+	 *            The height of the region, in pixels.
+	 */
+	public TextureRegion(Texture texture, int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || x + width > texture.getWidth()
+				|| y + height > texture.getHeight()) {
+			throw new IllegalArgumentException(
+					"Region does not fit within the texture");
+		}
+		this.texture = texture;
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Gets the texture containing this region.
+	 * 
+	 * @return The texture containing this region.
+	 */
+	public Texture getTexture() {
+		return texture;
+	}
+
+	/**
+	 * Gets the location of this region in the texture on X.
+	 * 
+	 * @return The location of this region in the texture on X.
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Gets the location of this region in the texture on Y.
+	 * 
+	 * @return The location of this region in the texture on Y.
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Gets the width of this region.
+	 * 
+	 * @return The width of this region.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of this region.
+	 * 
+	 * @return The height of this region.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets an ArrayBitmap containing the pixels of this region.
+	 * 
+	 * @return An ArrayBitmap containing the pixels of this region.
+	 */
+	public ArrayBitmap getPixels() {
+		return texture.getPixels(x, y, width, height);
+	}
+}
@@ -84,6 +84,8 @@ public class OpenGLDisplay implements IDisplay {
 
 	@Override
 	public void present() {
+		device.flush();
+		device.getSpriteBatch().endFrame();
 		glfwSwapBuffers(window);
 	}
 
@@ -9,6 +9,7 @@ import static org.lwjgl.opengl.EXTFramebufferObject.*;
 //import static org.lwjgl.opengl.GL30.*;
 
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,13 +18,18 @@ import org.lwjgl.BufferUtils;
 import engine.rendering.ArrayBitmap;
 import engine.rendering.Color;
 import engine.rendering.IRenderDevice;
+import engine.rendering.SpriteBatch;
 
 /**
  * A device that is capable of OpenGL rendering
  * 
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
  */
-public class OpenGLRenderDevice implements IRenderDevice {
+public class OpenGLRenderDevice implements IRenderDevice,
+		SpriteBatch.IRenderer {
+	private static final int MAX_BATCH_RECTS = 4096;
+	private static final int VERTEX_STRIDE = SpriteBatch.FLOATS_PER_VERTEX * 4;
+
 	private class FramebufferData {
 		public FramebufferData(int width, int height) {
 			this.width = width;
@@ -46,8 +52,11 @@ public class OpenGLRenderDevice implements IRenderDevice {
 
 	private final Map<Integer, FramebufferData> framebuffers = new HashMap<>();
 	private final Map<Integer, TextureData> textures = new HashMap<>();
+	private final SpriteBatch batch;
+	private final FloatBuffer vertexBuffer;
 	private int boundFbo;
 	private int boundTex;
+	private BlendMode boundMode;
 
 	/**
 	 * Creates a new OpenGLRenderDevice
@@ -58,6 +67,10 @@ public class OpenGLRenderDevice implements IRenderDevice {
 	public OpenGLRenderDevice(int width, int height) {
 		boundFbo = -1;
 		boundTex = -1;
+		boundMode = null;
+		batch = new SpriteBatch(this, MAX_BATCH_RECTS);
+		vertexBuffer = BufferUtils.createFloatBuffer(MAX_BATCH_RECTS
+				* SpriteBatch.FLOATS_PER_RECT);
 
 		framebuffers.put(0, new FramebufferData(width, height));
 		bindRenderTarget(0);
@@ -65,11 +78,20 @@ public class OpenGLRenderDevice implements IRenderDevice {
 		glEnable(GL_TEXTURE_2D);
 
 		glEnable(GL_BLEND);
+
+		// The vertex buffer never moves, so the pointers into it only need to
+		// be specified once.
+		glEnableClientState(GL_VERTEX_ARRAY);
+		glEnableClientState(GL_TEXTURE_COORD_ARRAY);
+		glEnableClientState(GL_COLOR_ARRAY);
+		glVertexPointer(2, VERTEX_STRIDE, vertexSlice(0));
+		glTexCoordPointer(2, VERTEX_STRIDE, vertexSlice(2));
+		glColorPointer(4, VERTEX_STRIDE, vertexSlice(4));
 	}
 
 	@Override
 	public void dispose() {
-		// Do nothing
+		batch.flush();
 	}
 
 	@Override
@@ -81,6 +103,7 @@ public class OpenGLRenderDevice implements IRenderDevice {
 	@Override
 	public int releaseTexture(int id) {
 		if (id != 0) {
+			batch.flush();
 			glDeleteTextures(id);
 			textures.remove(id);
 			if (id == boundTex) {
@@ -92,15 +115,27 @@ public class OpenGLRenderDevice implements IRenderDevice {
 
 	@Override
 	public ArrayBitmap getTexture(int id, int x, int y, int width, int height) {
-		int[] dest = new int[width * height];
+		batch.flush();
 		TextureData tex = textures.get(id);
+		// OpenGL can only read back whole textures, so the requested region
+		// is returned as a view into the full image.
+		int[] dest = new int[tex.width * tex.height];
 		ByteBuffer buffer = BufferUtils.createByteBuffer(tex.width * tex.height
 				* 4);
 		bindTexture(id);
 		glGetTexImage(GL_TEXTURE_2D, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
 
 		dest = byteBufferToInt(dest, buffer, tex.width, tex.height);
-		return new ArrayBitmap(width, height, dest, x, y, width);
+		return new ArrayBitmap(width, height, dest, x, y, tex.width);
+	}
+
+	@Override
+	public void updateTexture(int id, int x, int y, ArrayBitmap image) {
+		batch.flush();
+		bindTexture(id);
+		glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, image.getWidth(),
+				image.getHeight(), GL_RGBA, GL_UNSIGNED_BYTE,
+				makeRGBABuffer(image));
 	}
 
 	@Override
@@ -119,6 +154,7 @@ public class OpenGLRenderDevice implements IRenderDevice {
 	@Override
 	public int releaseRenderTarget(int fbo) {
 		if (fbo != 0 && fbo != -1) {
+			batch.flush();
 			glDeleteFramebuffersEXT(fbo);
 			framebuffers.remove(fbo);
 			if (fbo == boundFbo) {
@@ -130,6 +166,7 @@ public class OpenGLRenderDevice implements IRenderDevice {
 
 	@Override
 	public void clear(int fbo, Color color) {
+		batch.flush();
 		bindRenderTarget(fbo);
 		glClearColor((float) color.getRed(), (float) color.getGreen(),
 				(float) color.getBlue(), (float) color.getAlpha());
@@ -141,11 +178,43 @@ public class OpenGLRenderDevice implements IRenderDevice {
 			double startY, double endX, double endY, double texStartX,
 			double texStartY, double texEndX, double texEndY, Color c,
 			double transparency) {
+		batch.add(fbo, texId, mode, startX, startY, endX, endY, texStartX,
+				texStartY, texEndX, texEndY, c, transparency);
+	}
+
+	@Override
+	public void flush() {
+		batch.flush();
+	}
+
+	@Override
+	public SpriteBatch getSpriteBatch() {
+		return batch;
+	}
+
+	@Override
+	public void drawRects(int fbo, int texId, BlendMode mode,
+			float[] vertices, int numRects) {
 		bindRenderTarget(fbo);
+		bindBlendMode(mode);
+		bindTexture(texId);
+
+		vertexBuffer.clear();
+		vertexBuffer.put(vertices, 0, numRects * SpriteBatch.FLOATS_PER_RECT);
+		glDrawArrays(GL_QUADS, 0, numRects * SpriteBatch.VERTICES_PER_RECT);
+	}
 
-		glColor4f((float) c.getRed(), (float) c.getGreen(),
-				(float) c.getBlue(), (float) (c.getAlpha() * transparency));
+	private FloatBuffer vertexSlice(int offset) {
+		vertexBuffer.position(offset);
+		FloatBuffer result = vertexBuffer.slice();
+		vertexBuffer.clear();
+		return result;
+	}
 
+	private void bindBlendMode(BlendMode mode) {
+		if (mode == boundMode) {
+			return;
+		}
 		switch (mode) {
 		case ADD_LIGHT:
 			glBlendFunc(GL_ONE, GL_ONE);
@@ -157,20 +226,7 @@ public class OpenGLRenderDevice implements IRenderDevice {
 			glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
 			break;
 		}
-		bindTexture(texId);
-
-		glBegin(GL_TRIANGLE_FAN);
-		{
-			glTexCoord2f((float) texStartX, (float) texStartY);
-			glVertex2f((float) startX, (float) startY);
-			glTexCoord2f((float) texStartX, (float) texEndY);
-			glVertex2f((float) startX, (float) endY);
-			glTexCoord2f((float) texEndX, (float) texEndY);
-			glVertex2f((float) endX, (float) endY);
-			glTexCoord2f((float) texEndX, (float) texStartY);
-			glVertex2f((float) endX, (float) startY);
-		}
-		glEnd();
+		boundMode = mode;
 	}
 
 	private void bindRenderTarget(int fbo) {
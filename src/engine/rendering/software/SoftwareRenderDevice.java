@@ -0,0 +1,449 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.rendering.software;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import engine.rendering.ArrayBitmap;
+import engine.rendering.Color;
+import engine.rendering.IRenderDevice;
+import engine.rendering.SpriteBatch;
+import engine.util.Util;
+
+/**
+ * A device that renders entirely on the CPU, into arrays of 32-bit ARGB
+ * pixels. No graphics hardware is required, so this can be used to render on
+ * machines without a display or a GPU.
+ * <p/>
+ * Like OpenGL, a texture's first row is at texture coordinate 0 on Y, and a
+ * render target's first row is at the bottom of the target.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class SoftwareRenderDevice implements IRenderDevice,
+		SpriteBatch.IRenderer {
+	private static final int MAX_BATCH_RECTS = 1024;
+	private static final int FIXED_SHIFT = 16;
+	private static final double FIXED_ONE = 1 << FIXED_SHIFT;
+	private static final double ALIGNMENT_EPSILON = 1.0 / 4096.0;
+	private static final int OPAQUE_WHITE = 0xFFFFFFFF;
+
+	private class FramebufferData {
+		public FramebufferData(int width, int height, TextureData texture) {
+			this.width = width;
+			this.height = height;
+			this.texture = texture;
+		}
+
+		private int width;
+		private int height;
+		private TextureData texture;
+	}
+
+	private class TextureData {
+		public TextureData(int width, int height, int filter) {
+			this.width = width;
+			this.height = height;
+			this.filter = filter;
+			this.pixels = new int[width * height];
+		}
+
+		private int width;
+		private int height;
+		private int filter;
+		private int[] pixels;
+	}
+
+	private final List<FramebufferData> framebuffers = new ArrayList<>();
+	private final List<TextureData> textures = new ArrayList<>();
+	private final SpriteBatch batch;
+	private int[] span;
+	private int[] texelRow;
+
+	/**
+	 * Creates a new SoftwareRenderDevice
+	 * 
+	 * @param width
+	 *            The width of the primary render target.
+	 * @param height
+	 *            The height of the primary render target.
+	 */
+	public SoftwareRenderDevice(int width, int height) {
+		// Id 0 is the null id for both textures and render targets, so the
+		// primary render target's texture is never given out.
+		textures.add(null);
+		framebuffers.add(new FramebufferData(width, height, new TextureData(
+				width, height, FILTER_NEAREST)));
+		span = new int[width];
+		texelRow = new int[width + 1];
+		batch = new SpriteBatch(this, MAX_BATCH_RECTS);
+	}
+
+	@Override
+	public void dispose() {
+		batch.flush();
+		textures.clear();
+		framebuffers.clear();
+	}
+
+	/**
+	 * Gets the pixels currently in the primary render target, with the first
+	 * row at the top of the image as it would appear on a display.
+	 * 
+	 * @return An ArrayBitmap containing the pixels of the primary render
+	 *         target.
+	 */
+	public ArrayBitmap getFrame() {
+		batch.flush();
+		TextureData frame = framebuffers.get(0).texture;
+		int[] dest = new int[frame.pixels.length];
+		for (int j = 0; j < frame.height; j++) {
+			System.arraycopy(frame.pixels, j * frame.width, dest,
+					(frame.height - j - 1) * frame.width, frame.width);
+		}
+		return new ArrayBitmap(frame.width, frame.height, dest);
+	}
+
+	@Override
+	public int createTexture(int width, int height, ArrayBitmap image,
+			int filter) {
+		TextureData data = new TextureData(width, height, filter);
+		if (image != null) {
+			int[] pixels = data.pixels;
+			for (int j = 0; j < height; j++) {
+				for (int i = 0; i < width; i++) {
+					pixels[i + j * width] = image.get(i, j);
+				}
+			}
+		}
+		textures.add(data);
+		return textures.size() - 1;
+	}
+
+	@Override
+	public int releaseTexture(int id) {
+		if (id != 0) {
+			batch.flush();
+			textures.set(id, null);
+		}
+		return 0;
+	}
+
+	@Override
+	public ArrayBitmap getTexture(int id, int x, int y, int width, int height) {
+		batch.flush();
+		TextureData tex = textures.get(id);
+		int[] dest = new int[width * height];
+		for (int j = 0; j < height; j++) {
+			System.arraycopy(tex.pixels, x + (y + j) * tex.width, dest, j
+					* width, width);
+		}
+		return new ArrayBitmap(width, height, dest);
+	}
+
+	@Override
+	public void updateTexture(int id, int x, int y, ArrayBitmap image) {
+		batch.flush();
+		TextureData tex = textures.get(id);
+		int width = image.getWidth();
+		int height = image.getHeight();
+		for (int j = 0; j < height; j++) {
+			int offset = x + (y + j) * tex.width;
+			for (int i = 0; i < width; i++) {
+				tex.pixels[offset + i] = image.get(i, j);
+			}
+		}
+	}
+
+	@Override
+	public int createRenderTarget(int width, int height, int texId) {
+		TextureData texture = null;
+		if (texId != 0 && texId != -1) {
+			texture = textures.get(texId);
+		}
+		framebuffers.add(new FramebufferData(width, height, texture));
+		if (width > span.length) {
+			span = new int[width];
+			texelRow = new int[width + 1];
+		}
+		return framebuffers.size() - 1;
+	}
+
+	@Override
+	public int releaseRenderTarget(int fbo) {
+		if (fbo != 0 && fbo != -1) {
+			batch.flush();
+			framebuffers.set(fbo, null);
+		}
+		return 0;
+	}
+
+	@Override
+	public void clear(int fbo, Color color) {
+		batch.flush();
+		FramebufferData target = framebuffers.get(fbo);
+		if (target.texture == null) {
+			return;
+		}
+		Arrays.fill(target.texture.pixels, Color.makeARGB(color.getAlpha(),
+				color.getRed(), color.getGreen(), color.getBlue()));
+	}
+
+	@Override
+	public void drawRect(int fbo, int texId, BlendMode mode, double startX,
+			double startY, double endX, double endY, double texStartX,
+			double texStartY, double texEndX, double texEndY, Color c,
+			double transparency) {
+		batch.add(fbo, texId, mode, startX, startY, endX, endY, texStartX,
+				texStartY, texEndX, texEndY, c, transparency);
+	}
+
+	@Override
+	public void flush() {
+		batch.flush();
+	}
+
+	@Override
+	public SpriteBatch getSpriteBatch() {
+		return batch;
+	}
+
+	@Override
+	public void drawRects(int fbo, int texId, BlendMode mode,
+			float[] vertices, int numRects) {
+		FramebufferData target = framebuffers.get(fbo);
+		if (target.texture == null) {
+			return;
+		}
+		TextureData tex = texId == 0 ? null : textures.get(texId);
+		int end = numRects * SpriteBatch.FLOATS_PER_RECT;
+		// Only the first and third vertices are needed, since together they
+		// hold both corners of the rectangle.
+		int endOffset = 2 * SpriteBatch.FLOATS_PER_VERTEX;
+		for (int i = 0; i < end; i += SpriteBatch.FLOATS_PER_RECT) {
+			int color = Color.makeARGB(vertices[i + 7], vertices[i + 4],
+					vertices[i + 5], vertices[i + 6]);
+			drawRect(target, tex, mode, vertices[i], vertices[i + 1],
+					vertices[i + endOffset], vertices[i + endOffset + 1],
+					vertices[i + 2], vertices[i + 3], vertices[i + endOffset
+							+ 2], vertices[i + endOffset + 3], color);
+		}
+	}
+
+	private void drawRect(FramebufferData target, TextureData tex,
+			BlendMode mode, double startX, double startY, double endX,
+			double endY, double texStartX, double texStartY, double texEndX,
+			double texEndY, int color) {
+		TextureData dest = target.texture;
+		int width = Math.min(target.width, dest.width);
+		int height = Math.min(target.height, dest.height);
+
+		double x0 = (startX + 1.0) * 0.5 * width;
+		double x1 = (endX + 1.0) * 0.5 * width;
+		double y0 = (startY + 1.0) * 0.5 * height;
+		double y1 = (endY + 1.0) * 0.5 * height;
+
+		// Pixels are drawn if their centers are within the rectangle.
+		int minX = Math.max(0, (int) Math.ceil(Math.min(x0, x1) - 0.5));
+		int maxX = Math.min(width, (int) Math.ceil(Math.max(x0, x1) - 0.5));
+		int minY = Math.max(0, (int) Math.ceil(Math.min(y0, y1) - 0.5));
+		int maxY = Math.min(height, (int) Math.ceil(Math.max(y0, y1) - 0.5));
+		if (minX >= maxX || minY >= maxY) {
+			return;
+		}
+
+		double du = (texEndX - texStartX) / (x1 - x0);
+		double dv = (texEndY - texStartY) / (y1 - y0);
+		double u = texStartX + (minX + 0.5 - x0) * du;
+		double v = texStartY + (minY + 0.5 - y0) * dv;
+
+		boolean linear = tex != null && tex.filter == FILTER_LINEAR
+				&& !(isTexelAligned(u * tex.width, du * tex.width) && isTexelAligned(
+						v * tex.height, dv * tex.height));
+
+		int count = maxX - minX;
+		for (int j = minY; j < maxY; j++, v += dv) {
+			if (tex == null) {
+				Arrays.fill(span, 0, count, color);
+			} else {
+				if (linear) {
+					sampleLinear(tex, u, du, v, count);
+				} else {
+					sampleNearest(tex, u, du, v, count);
+				}
+				if (color != OPAQUE_WHITE) {
+					modulate(color, count);
+				}
+			}
+			blend(mode, dest.pixels, minX + j * dest.width, count);
+		}
+	}
+
+	private static boolean isTexelAligned(double texelPos, double texelStep) {
+		// When every pixel lands exactly on a texel center, linear filtering
+		// gives the same result as nearest filtering.
+		double offset = texelPos - 0.5;
+		return Math.abs(Math.abs(texelStep) - 1.0) < ALIGNMENT_EPSILON
+				&& Math.abs(offset - Math.rint(offset)) < ALIGNMENT_EPSILON;
+	}
+
+	private static int wrap(int texel, int size) {
+		if (texel < 0 || texel >= size) {
+			return Util.floorMod(texel, size);
+		}
+		return texel;
+	}
+
+	private void sampleNearest(TextureData tex, double u, double du, double v,
+			int count) {
+		int[] pixels = tex.pixels;
+		int texWidth = tex.width;
+		int row = wrap((int) Math.floor(v * tex.height), tex.height) * texWidth;
+		long texelX = (long) Math.floor(u * texWidth * FIXED_ONE);
+		long step = (long) (du * texWidth * FIXED_ONE);
+		for (int i = 0; i < count; i++, texelX += step) {
+			span[i] = pixels[row
+					+ wrap((int) (texelX >> FIXED_SHIFT), texWidth)];
+		}
+	}
+
+	private void sampleLinear(TextureData tex, double u, double du, double v,
+			int count) {
+		int[] pixels = tex.pixels;
+		int texWidth = tex.width;
+		double texelY = v * tex.height - 0.5;
+		int y = (int) Math.floor(texelY);
+		int fracY = (int) ((texelY - y) * 256.0);
+		int row0 = wrap(y, tex.height) * texWidth;
+		int row1 = wrap(y + 1, tex.height) * texWidth;
+
+		long texelX = (long) Math.floor((u * texWidth - 0.5) * FIXED_ONE);
+		long step = (long) (du * texWidth * FIXED_ONE);
+		long lastTexelX = texelX + step * (count - 1);
+		int first = (int) (Math.min(texelX, lastTexelX) >> FIXED_SHIFT);
+		int last = (int) (Math.max(texelX, lastTexelX) >> FIXED_SHIFT) + 1;
+		if (last - first >= count) {
+			// Minifying, so every pixel uses different texels.
+			for (int i = 0; i < count; i++, texelX += step) {
+				int x = (int) (texelX >> FIXED_SHIFT);
+				int fracX = (int) ((texelX >> (FIXED_SHIFT - 8)) & 0xFF);
+				int xa = wrap(x, texWidth);
+				int xb = wrap(x + 1, texWidth);
+				int top = lerp(pixels[row0 + xa], pixels[row0 + xb], fracX);
+				int bottom = lerp(pixels[row1 + xa], pixels[row1 + xb], fracX);
+				span[i] = lerp(top, bottom, fracY);
+			}
+			return;
+		}
+
+		// Magnifying, so the rows only need to be blended once per texel
+		// rather than once per pixel.
+		for (int x = first; x <= last; x++) {
+			int xw = wrap(x, texWidth);
+			texelRow[x - first] = lerp(pixels[row0 + xw], pixels[row1 + xw],
+					fracY);
+		}
+		texelX -= (long) first << FIXED_SHIFT;
+		for (int i = 0; i < count; i++, texelX += step) {
+			int x = (int) (texelX >> FIXED_SHIFT);
+			int fracX = (int) ((texelX >> (FIXED_SHIFT - 8)) & 0xFF);
+			span[i] = lerp(texelRow[x], texelRow[x + 1], fracX);
+		}
+	}
+
+	private static int lerp(int c0, int c1, int amt) {
+		// Interpolates two channels at a time; amt is in the range (0, 256).
+		int inv = 256 - amt;
+		int rb = (((c0 & 0xFF00FF) * inv + (c1 & 0xFF00FF) * amt) >>> 8) & 0xFF00FF;
+		int ag = (((c0 >>> 8) & 0xFF00FF) * inv + ((c1 >>> 8) & 0xFF00FF)
+				* amt)
+				& 0xFF00FF00;
+		return ag | rb;
+	}
+
+	private static int mul(int a, int b) {
+		// Exact, rounded (a * b) / 255 for components in range (0, 255).
+		int t = a * b + 128;
+		return (t + (t >> 8)) >> 8;
+	}
+
+	private void modulate(int color, int count) {
+		int ca = color >>> 24;
+		int cr = (color >> 16) & 0xFF;
+		int cg = (color >> 8) & 0xFF;
+		int cb = color & 0xFF;
+		for (int i = 0; i < count; i++) {
+			int s = span[i];
+			span[i] = (mul(s >>> 24, ca) << 24)
+					| (mul((s >> 16) & 0xFF, cr) << 16)
+					| (mul((s >> 8) & 0xFF, cg) << 8) | mul(s & 0xFF, cb);
+		}
+	}
+
+	private void blend(BlendMode mode, int[] dest, int offset, int count) {
+		switch (mode) {
+		case SPRITE:
+			blendSprite(dest, offset, count);
+			break;
+		case ADD_LIGHT:
+			blendAddLight(dest, offset, count);
+			break;
+		case APPLY_LIGHT:
+			blendApplyLight(dest, offset, count);
+			break;
+		}
+	}
+
+	private void blendSprite(int[] dest, int offset, int count) {
+		// Equivalent to glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA)
+		for (int i = 0; i < count; i++) {
+			int s = span[i];
+			int sa = s >>> 24;
+			if (sa == 0) {
+				continue;
+			}
+			if (sa == 0xFF) {
+				dest[offset + i] = s;
+				continue;
+			}
+			int d = dest[offset + i];
+			int inv = 0xFF - sa;
+			int a = mul(sa, sa) + mul(d >>> 24, inv);
+			int r = mul((s >> 16) & 0xFF, sa) + mul((d >> 16) & 0xFF, inv);
+			int g = mul((s >> 8) & 0xFF, sa) + mul((d >> 8) & 0xFF, inv);
+			int b = mul(s & 0xFF, sa) + mul(d & 0xFF, inv);
+			dest[offset + i] = (a << 24) | (r << 16) | (g << 8) | b;
+		}
+	}
+
+	private void blendAddLight(int[] dest, int offset, int count) {
+		// Equivalent to glBlendFunc(GL_ONE, GL_ONE), saturating each channel.
+		for (int i = 0; i < count; i++) {
+			int s = span[i];
+			int d = dest[offset + i];
+			int rb = (s & 0xFF00FF) + (d & 0xFF00FF);
+			int ag = ((s >>> 8) & 0xFF00FF) + ((d >>> 8) & 0xFF00FF);
+			int rbOverflow = rb & 0x1000100;
+			int agOverflow = ag & 0x1000100;
+			rb = (rb | (rbOverflow - (rbOverflow >>> 8))) & 0xFF00FF;
+			ag = (ag | (agOverflow - (agOverflow >>> 8))) & 0xFF00FF;
+			dest[offset + i] = (ag << 8) | rb;
+		}
+	}
+
+	private void blendApplyLight(int[] dest, int offset, int count) {
+		// Equivalent to glBlendFunc(GL_DST_COLOR, GL_ZERO)
+		for (int i = 0; i < count; i++) {
+			int s = span[i];
+			int d = dest[offset + i];
+			dest[offset + i] = (mul(s >>> 24, d >>> 24) << 24)
+					| (mul((s >> 16) & 0xFF, (d >> 16) & 0xFF) << 16)
+					| (mul((s >> 8) & 0xFF, (d >> 8) & 0xFF) << 8)
+					| mul(s & 0xFF, d & 0xFF);
+		}
+	}
+}
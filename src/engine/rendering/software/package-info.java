@@ -0,0 +1,4 @@
+/**
+ * Classes for rendering graphics on the CPU, without any graphics hardware.
+ */
+package engine.rendering.software;
\ No newline at end of file
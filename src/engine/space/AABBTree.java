@@ -0,0 +1,493 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.space;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Represents a 2D space as a balanced binary tree of bounding boxes, where
+ * each leaf holds one object.
+ * <p/>
+ * Each leaf stores a fattened copy of its object's bounds, so an object can
+ * move a little without the tree changing at all. Only when an object leaves
+ * its fattened bounds is its leaf removed and inserted again, and the tree is
+ * kept balanced with rotations as leaves are inserted and removed. Since the
+ * tree adapts to the objects, rather than dividing space evenly, it works
+ * equally well for very large and very small objects side by side.
+ * <p/>
+ * Nodes are stored in a set of arrays indexed by node number, so the tree
+ * does not allocate anything unless it needs to grow. Querying does not modify
+ * the structure, so several threads can query at once as long as nothing is
+ * being added or removed.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ * 
+ * @param <T>
+ *            The type of object stored in the structure.
+ */
+public class AABBTree<T extends ISpatialObject> implements
+		ISpatialStructure<T> {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int NONE = -1;
+	// How far ahead of a moving object its fattened bounds are extended, in
+	// multiples of how far it moved since it was last updated.
+	private static final double DISPLACEMENT_MULTIPLIER = 2.0;
+
+	private final double margin;
+
+	// Nodes, indexed by node number. Leaves have a height of 0 and no
+	// children, and free nodes have a height of -1 and are linked through
+	// parents.
+	// The fattened bounds of each node are stored as 4 values in a row, and
+	// its children as 2 values in a row, so checking a node reads as little
+	// memory as possible.
+	private double[] boxes;
+	private int[] parents;
+	private int[] children;
+	private int[] heights;
+	private Object[] objects;
+	private AABB[] bounds;
+	private int numNodes;
+	private int freeNode;
+	private int root;
+	private final IdentitySlotTable leafTable;
+
+	/**
+	 * Creates a new AABBTree.
+	 * 
+	 * @param margin
+	 *            How far the bounds stored for each object are extended past
+	 *            the object's actual bounds. Larger margins let objects move
+	 *            further before the tree needs to change, but make queries
+	 *            check more objects.
+	 */
+	public AABBTree(double margin) {
+		if (margin < 0.0) {
+			throw new IllegalArgumentException("Margin must not be negative");
+		}
+		this.margin = margin;
+		this.boxes = new double[DEFAULT_CAPACITY * 4];
+		this.parents = new int[DEFAULT_CAPACITY];
+		this.children = new int[DEFAULT_CAPACITY * 2];
+		this.heights = new int[DEFAULT_CAPACITY];
+		this.objects = new Object[DEFAULT_CAPACITY];
+		this.bounds = new AABB[DEFAULT_CAPACITY];
+		this.leafTable = new IdentitySlotTable(DEFAULT_CAPACITY);
+		clear();
+	}
+
+	@Override
+	public void add(T obj) {
+		if (leafTable.get(obj) != NONE) {
+			return;
+		}
+		int leaf = allocateNode();
+		AABB aabb = obj.getAABB();
+		objects[leaf] = obj;
+		bounds[leaf] = aabb;
+		heights[leaf] = 0;
+		fatten(leaf, aabb, 0.0, 0.0);
+		leafTable.put(obj, leaf);
+		insertLeaf(leaf);
+	}
+
+	@Override
+	public void remove(T obj) {
+		int leaf = leafTable.get(obj);
+		if (leaf == NONE) {
+			return;
+		}
+		leafTable.remove(obj);
+		removeLeaf(leaf);
+		freeNode(leaf);
+	}
+
+	@Override
+	public void update(T obj, AABB oldBounds) {
+		int leaf = leafTable.get(obj);
+		if (leaf == NONE) {
+			add(obj);
+			return;
+		}
+		AABB aabb = obj.getAABB();
+		bounds[leaf] = aabb;
+		int i = leaf * 4;
+		if (boxes[i] <= aabb.getMinX() && boxes[i + 1] <= aabb.getMinY()
+				&& boxes[i + 2] >= aabb.getMaxX()
+				&& boxes[i + 3] >= aabb.getMaxY()) {
+			return;
+		}
+
+		removeLeaf(leaf);
+		// Objects tend to keep moving the way they were already moving, so
+		// the fattened bounds are stretched in that direction.
+		fatten(leaf, aabb, aabb.getCenterX() - oldBounds.getCenterX(),
+				aabb.getCenterY() - oldBounds.getCenterY());
+		insertLeaf(leaf);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(objects, 0, numNodes, null);
+		Arrays.fill(bounds, 0, numNodes, null);
+		leafTable.clear();
+		numNodes = 0;
+		freeNode = NONE;
+		root = NONE;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Set<T> getAll(Set<T> result) {
+		for (int i = 0; i < numNodes; i++) {
+			if (heights[i] == 0) {
+				result.add((T) objects[i]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Set<T> queryRange(final Set<T> result, AABB range) {
+		visitRange(range, new ISpatialVisitor<T>() {
+			@Override
+			public void visit(T obj) {
+				result.add(obj);
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public void visitRange(AABB range, ISpatialVisitor<T> visitor) {
+		if (root != NONE) {
+			visitNode(root, range, visitor, range.getMinX(), range.getMinY(),
+					range.getMaxX(), range.getMaxY());
+		}
+	}
+
+	/**
+	 * Visits every pair of objects in the tree whose bounds intersect. Each
+	 * pair is visited exactly once.
+	 * 
+	 * @param visitor
+	 *            The visitor to call for each intersecting pair.
+	 */
+	public void visitPairs(IPairVisitor<T> visitor) {
+		if (root != NONE) {
+			visitPairs(root, visitor);
+		}
+	}
+
+	/**
+	 * Gets the height of the tree.
+	 * 
+	 * @return The number of nodes on the longest path from the root to a leaf,
+	 *         or 0 if the tree is empty.
+	 */
+	public int getHeight() {
+		return root == NONE ? 0 : heights[root] + 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visitNode(int node, AABB range, ISpatialVisitor<T> visitor,
+			double minX, double minY, double maxX, double maxY) {
+		// The fattened bounds always contain the object's bounds, so a node
+		// that only touches the range cannot contain anything intersecting it.
+		int i = node * 4;
+		if (boxes[i] >= maxX || boxes[i + 2] <= minX || boxes[i + 1] >= maxY
+				|| boxes[i + 3] <= minY) {
+			return;
+		}
+		if (heights[node] == 0) {
+			if (bounds[node].intersects(range)) {
+				visitor.visit((T) objects[node]);
+			}
+			return;
+		}
+		int j = node * 2;
+		visitNode(children[j], range, visitor, minX, minY, maxX, maxY);
+		visitNode(children[j + 1], range, visitor, minX, minY, maxX, maxY);
+	}
+
+	private void visitPairs(int node, IPairVisitor<T> visitor) {
+		if (heights[node] == 0) {
+			return;
+		}
+		visitPairs(children[node * 2], visitor);
+		visitPairs(children[node * 2 + 1], visitor);
+		visitPairs(children[node * 2], children[node * 2 + 1], visitor);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visitPairs(int a, int b, IPairVisitor<T> visitor) {
+		int i = a * 4;
+		int j = b * 4;
+		if (boxes[i] >= boxes[j + 2] || boxes[i + 2] <= boxes[j]
+				|| boxes[i + 1] >= boxes[j + 3]
+				|| boxes[i + 3] <= boxes[j + 1]) {
+			return;
+		}
+		boolean isLeafA = heights[a] == 0;
+		boolean isLeafB = heights[b] == 0;
+		if (isLeafA && isLeafB) {
+			if (bounds[a].intersects(bounds[b])) {
+				visitor.visit((T) objects[a], (T) objects[b]);
+			}
+		} else if (isLeafB || (!isLeafA && heights[a] >= heights[b])) {
+			visitPairs(children[a * 2], b, visitor);
+			visitPairs(children[a * 2 + 1], b, visitor);
+		} else {
+			visitPairs(a, children[b * 2], visitor);
+			visitPairs(a, children[b * 2 + 1], visitor);
+		}
+	}
+
+	private void fatten(int leaf, AABB aabb, double moveX, double moveY) {
+		double minX = aabb.getMinX() - margin;
+		double minY = aabb.getMinY() - margin;
+		double maxX = aabb.getMaxX() + margin;
+		double maxY = aabb.getMaxY() + margin;
+		moveX *= DISPLACEMENT_MULTIPLIER;
+		moveY *= DISPLACEMENT_MULTIPLIER;
+		if (moveX < 0.0) {
+			minX += moveX;
+		} else {
+			maxX += moveX;
+		}
+		if (moveY < 0.0) {
+			minY += moveY;
+		} else {
+			maxY += moveY;
+		}
+		int i = leaf * 4;
+		boxes[i] = minX;
+		boxes[i + 1] = minY;
+		boxes[i + 2] = maxX;
+		boxes[i + 3] = maxY;
+	}
+
+	private void insertLeaf(int leaf) {
+		if (root == NONE) {
+			root = leaf;
+			parents[leaf] = NONE;
+			return;
+		}
+
+		// Finds the sibling that increases the total perimeter of the tree
+		// the least, which keeps nodes small and queries fast.
+		int index = root;
+		while (heights[index] != 0) {
+			int child1 = children[index * 2];
+			int child2 = children[index * 2 + 1];
+			double perimeter = getPerimeter(index);
+			double combinedPerimeter = getCombinedPerimeter(index, leaf);
+			double cost = 2.0 * combinedPerimeter;
+			double inheritanceCost = 2.0 * (combinedPerimeter - perimeter);
+			double cost1 = getDescendCost(child1, leaf) + inheritanceCost;
+			double cost2 = getDescendCost(child2, leaf) + inheritanceCost;
+			if (cost < cost1 && cost < cost2) {
+				break;
+			}
+			index = cost1 < cost2 ? child1 : child2;
+		}
+
+		int sibling = index;
+		int oldParent = parents[sibling];
+		int newParent = allocateNode();
+		parents[newParent] = oldParent;
+		heights[newParent] = heights[sibling] + 1;
+		children[newParent * 2] = sibling;
+		children[newParent * 2 + 1] = leaf;
+		parents[sibling] = newParent;
+		parents[leaf] = newParent;
+		if (oldParent == NONE) {
+			root = newParent;
+		} else if (children[oldParent * 2] == sibling) {
+			children[oldParent * 2] = newParent;
+		} else {
+			children[oldParent * 2 + 1] = newParent;
+		}
+		refitAncestors(newParent);
+	}
+
+	private void removeLeaf(int leaf) {
+		if (leaf == root) {
+			root = NONE;
+			return;
+		}
+
+		int parent = parents[leaf];
+		int grandParent = parents[parent];
+		int sibling = children[parent * 2] == leaf ? children[parent * 2 + 1]
+				: children[parent * 2];
+		parents[sibling] = grandParent;
+		if (grandParent == NONE) {
+			root = sibling;
+		} else {
+			if (children[grandParent * 2] == parent) {
+				children[grandParent * 2] = sibling;
+			} else {
+				children[grandParent * 2 + 1] = sibling;
+			}
+			refitAncestors(grandParent);
+		}
+		freeNode(parent);
+	}
+
+	private void refitAncestors(int index) {
+		while (index != NONE) {
+			index = balance(index);
+			int child1 = children[index * 2];
+			int child2 = children[index * 2 + 1];
+			heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+			combine(index, child1, child2);
+			index = parents[index];
+		}
+	}
+
+	/**
+	 * Rotates a child of a node above it if the node is unbalanced.
+	 * 
+	 * @param a
+	 *            The node to balance.
+	 * @return The node now at the position {@code a} was at.
+	 */
+	private int balance(int a) {
+		if (heights[a] < 2) {
+			return a;
+		}
+		int b = children[a * 2];
+		int c = children[a * 2 + 1];
+		int balance = heights[c] - heights[b];
+
+		if (balance > 1) {
+			int f = children[c * 2];
+			int g = children[c * 2 + 1];
+			rotateUp(a, c);
+			children[c * 2] = a;
+			if (heights[f] > heights[g]) {
+				children[c * 2 + 1] = f;
+				children[a * 2 + 1] = g;
+				parents[g] = a;
+				refit(a, b, g);
+				refit(c, a, f);
+			} else {
+				children[c * 2 + 1] = g;
+				children[a * 2 + 1] = f;
+				parents[f] = a;
+				refit(a, b, f);
+				refit(c, a, g);
+			}
+			return c;
+		}
+
+		if (balance < -1) {
+			int d = children[b * 2];
+			int e = children[b * 2 + 1];
+			rotateUp(a, b);
+			children[b * 2] = a;
+			if (heights[d] > heights[e]) {
+				children[b * 2 + 1] = d;
+				children[a * 2] = e;
+				parents[e] = a;
+				refit(a, c, e);
+				refit(b, a, d);
+			} else {
+				children[b * 2 + 1] = e;
+				children[a * 2] = d;
+				parents[d] = a;
+				refit(a, c, d);
+				refit(b, a, e);
+			}
+			return b;
+		}
+		return a;
+	}
+
+	private void rotateUp(int a, int child) {
+		int parent = parents[a];
+		parents[child] = parent;
+		parents[a] = child;
+		if (parent == NONE) {
+			root = child;
+		} else if (children[parent * 2] == a) {
+			children[parent * 2] = child;
+		} else {
+			children[parent * 2 + 1] = child;
+		}
+	}
+
+	private void refit(int node, int child1, int child2) {
+		heights[node] = 1 + Math.max(heights[child1], heights[child2]);
+		combine(node, child1, child2);
+	}
+
+	private void combine(int node, int a, int b) {
+		int i = node * 4;
+		int j = a * 4;
+		int k = b * 4;
+		boxes[i] = Math.min(boxes[j], boxes[k]);
+		boxes[i + 1] = Math.min(boxes[j + 1], boxes[k + 1]);
+		boxes[i + 2] = Math.max(boxes[j + 2], boxes[k + 2]);
+		boxes[i + 3] = Math.max(boxes[j + 3], boxes[k + 3]);
+	}
+
+	private double getPerimeter(int node) {
+		int i = node * 4;
+		double width = boxes[i + 2] - boxes[i];
+		double height = boxes[i + 3] - boxes[i + 1];
+		return 2.0 * (width + height);
+	}
+
+	private double getCombinedPerimeter(int a, int b) {
+		int i = a * 4;
+		int j = b * 4;
+		double width = Math.max(boxes[i + 2], boxes[j + 2])
+				- Math.min(boxes[i], boxes[j]);
+		double height = Math.max(boxes[i + 3], boxes[j + 3])
+				- Math.min(boxes[i + 1], boxes[j + 1]);
+		return 2.0 * (width + height);
+	}
+
+	private double getDescendCost(int child, int leaf) {
+		if (heights[child] == 0) {
+			return getCombinedPerimeter(child, leaf);
+		}
+		return getCombinedPerimeter(child, leaf) - getPerimeter(child);
+	}
+
+	private int allocateNode() {
+		int node;
+		if (freeNode != NONE) {
+			node = freeNode;
+			freeNode = parents[node];
+		} else {
+			if (numNodes == parents.length) {
+				int capacity = parents.length * 2;
+				boxes = Arrays.copyOf(boxes, capacity * 4);
+				parents = Arrays.copyOf(parents, capacity);
+				children = Arrays.copyOf(children, capacity * 2);
+				heights = Arrays.copyOf(heights, capacity);
+				objects = Arrays.copyOf(objects, capacity);
+				bounds = Arrays.copyOf(bounds, capacity);
+			}
+			node = numNodes++;
+		}
+		parents[node] = NONE;
+		children[node * 2] = NONE;
+		children[node * 2 + 1] = NONE;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		objects[node] = null;
+		bounds[node] = null;
+		heights[node] = -1;
+		parents[node] = freeNode;
+		freeNode = node;
+	}
+}
@@ -5,7 +5,6 @@
 package engine.space;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -64,23 +63,39 @@ public class Grid<T extends ISpatialObject> implements ISpatialStructure<T> {
 		public void onVisit(List<T> tile);
 	}
 
-	private void visit(final AABB aabb, final IVisitor<T> visitor) {
-		int minX, minY, maxX, maxY;
+	private int getMinX(AABB aabb) {
+		if (aabb.getWidth() > (double) (width * tileSize)) {
+			return 0;
+		}
+		return getGridPosMin(aabb.getMinX());
+	}
 
+	private int getMaxX(AABB aabb) {
 		if (aabb.getWidth() > (double) (width * tileSize)) {
-			minX = 0;
-			maxX = width - 1;
-		} else {
-			minX = getGridPosMin(aabb.getMinX());
-			maxX = getGridPosMax(aabb.getMaxX());
+			return width - 1;
+		}
+		return getGridPosMax(aabb.getMaxX());
+	}
+
+	private int getMinY(AABB aabb) {
+		if (aabb.getHeight() > (double) (height * tileSize)) {
+			return 0;
 		}
+		return getGridPosMin(aabb.getMinY());
+	}
+
+	private int getMaxY(AABB aabb) {
 		if (aabb.getHeight() > (double) (height * tileSize)) {
-			minY = 0;
-			maxY = height - 1;
-		} else {
-			minY = getGridPosMin(aabb.getMinY());
-			maxY = getGridPosMax(aabb.getMaxY());
+			return height - 1;
 		}
+		return getGridPosMax(aabb.getMaxY());
+	}
+
+	private void visit(final AABB aabb, final IVisitor<T> visitor) {
+		int minX = getMinX(aabb);
+		int minY = getMinY(aabb);
+		int maxX = getMaxX(aabb);
+		int maxY = getMaxY(aabb);
 
 		for (int j = minY; j <= maxY; j++) {
 			for (int i = minX; i <= maxX; i++) {
@@ -110,33 +125,105 @@ public class Grid<T extends ISpatialObject> implements ISpatialStructure<T> {
 	}
 
 	@Override
-	public Set<T> getAll(Set<T> result) {
-		return result;
-	}
+	public void update(T obj, AABB oldBounds) {
+		AABB newBounds = obj.getAABB();
+		int oldMinX = getMinX(oldBounds);
+		int oldMinY = getMinY(oldBounds);
+		int oldMaxX = getMaxX(oldBounds);
+		int oldMaxY = getMaxY(oldBounds);
+		int newMinX = getMinX(newBounds);
+		int newMinY = getMinY(newBounds);
+		int newMaxX = getMaxX(newBounds);
+		int newMaxY = getMaxY(newBounds);
+		if (oldMinX == newMinX && oldMinY == newMinY && oldMaxX == newMaxX
+				&& oldMaxY == newMaxY) {
+			return;
+		}
 
-	private Set<T> queryTile(List<T> tile, Set<T> result, AABB aabb) {
-		Iterator<T> it = tile.iterator();
-		while (it.hasNext()) {
-			T t = it.next();
-			if (t.getAABB().intersects(aabb)) {
-				result.add(t);
+		// Only tiles the object has left or entered are changed.
+		for (int j = oldMinY; j <= oldMaxY; j++) {
+			for (int i = oldMinX; i <= oldMaxX; i++) {
+				if (i < newMinX || i > newMaxX || j < newMinY || j > newMaxY) {
+					getTile(i, j).remove(obj);
+				}
 			}
 		}
+		for (int j = newMinY; j <= newMaxY; j++) {
+			for (int i = newMinX; i <= newMaxX; i++) {
+				if (i < oldMinX || i > oldMaxX || j < oldMinY || j > oldMaxY) {
+					getTile(i, j).add(obj);
+				}
+			}
+		}
+	}
+
+	@Override
+	public Set<T> getAll(Set<T> result) {
 		return result;
 	}
 
 	@Override
 	public Set<T> queryRange(final Set<T> result, final AABB aabb) {
-		visit(aabb, new IVisitor<T>() {
+		visitRange(aabb, new ISpatialVisitor<T>() {
 			@Override
-			public void onVisit(List<T> tile) {
-				queryTile(tile, result, aabb);
+			public void visit(T obj) {
+				result.add(obj);
 			}
 		});
 
 		return result;
 	}
 
+	@Override
+	public void visitRange(AABB range, ISpatialVisitor<T> visitor) {
+		int minX = getMinX(range);
+		int minY = getMinY(range);
+		int maxX = getMaxX(range);
+		int maxY = getMaxY(range);
+
+		for (int j = minY; j <= maxY; j++) {
+			for (int i = minX; i <= maxX; i++) {
+				List<T> tile = getTile(i, j);
+				for (int k = 0; k < tile.size(); k++) {
+					T t = tile.get(k);
+					AABB aabb = t.getAABB();
+					if (isFirstTile(aabb, i, j, minX, minY)
+							&& aabb.intersects(range)
+							&& (!wraps(aabb) || tile.indexOf(t) == k)) {
+						visitor.visit(t);
+					}
+				}
+			}
+		}
+	}
+
+	private boolean isFirstTile(AABB aabb, int x, int y, int minX, int minY) {
+		// An object is stored in every tile it overlaps, so it is only visited
+		// from the first of those tiles in the range, rather than being
+		// checked against a set of objects already visited.
+		return x == getFirstTile(getMinX(aabb), getMaxX(aabb), minX, width)
+				&& y == getFirstTile(getMinY(aabb), getMaxY(aabb), minY,
+						height);
+	}
+
+	private static int getFirstTile(int objMin, int objMax, int rangeMin,
+			int size) {
+		// Tiles repeat every size positions, so the object can be found from
+		// any position that lands on the same tile as one of its own.
+		int offset = Util.floorMod(rangeMin - objMin, size);
+		if (offset <= objMax - objMin) {
+			return rangeMin;
+		}
+		return rangeMin + size - offset;
+	}
+
+	private boolean wraps(AABB aabb) {
+		// An object spanning more positions than there are tiles is stored in
+		// some tiles more than once.
+		return getMaxX(aabb) - getMinX(aabb) >= width
+				|| getMaxY(aabb) - getMinY(aabb) >= height;
+	}
+
 	@Override
 	public void clear() {
 		for(int i = 0; i < tiles.length; i++) {
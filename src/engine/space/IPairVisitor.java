@@ -0,0 +1,25 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.space;
+
+/**
+ * Performs some action on pairs of spatial objects whose bounds intersect.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ * 
+ * @param <T>
+ *            The type of object being visited.
+ */
+public interface IPairVisitor<T extends ISpatialObject> {
+	/**
+	 * Performs an action on a pair of intersecting objects.
+	 * 
+	 * @param a
+	 *            The first object in the pair.
+	 * @param b
+	 *            The second object in the pair.
+	 */
+	public void visit(T a, T b);
+}
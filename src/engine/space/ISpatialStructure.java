@@ -10,7 +10,7 @@ import java.util.Set;
  * A data structure that stores objects with a notion of space.
  * 
  * @author Benny Bobaganoosh (thebennybox@gmail.com)
- *
+ * 
  * @param <T> Some spatial object being stored in the structure.
  */
 public interface ISpatialStructure<T extends ISpatialObject> {
@@ -30,6 +30,20 @@ public interface ISpatialStructure<T extends ISpatialObject> {
 	 */
 	public void remove(T obj);
 
+	/**
+	 * Updates where an object is stored after its bounds have changed. This
+	 * has the same result as removing the object and adding it again, but
+	 * does as little work as possible, and does nothing if the object is
+	 * stored in the same place as before. The object must already be in the
+	 * spatial structure.
+	 * 
+	 * @param obj
+	 *            The object that has changed.
+	 * @param oldBounds
+	 *            The bounds of the object when it was last added or updated.
+	 */
+	public void update(T obj, AABB oldBounds);
+
 	/**
 	 * Removes all objects from the spatial structure.
 	 */
@@ -51,4 +65,14 @@ public interface ISpatialStructure<T extends ISpatialObject> {
 	 * @return The set specified by {@code result}
 	 */
 	public Set<T> queryRange(Set<T> result, AABB range);
+
+	/**
+	 * Visits every object in a specific range of the spatial structure. Each
+	 * object is visited exactly once, and no set of the objects found is
+	 * built. The spatial structure must not be changed by the visitor.
+	 * 
+	 * @param range The range of space being queried.
+	 * @param visitor The visitor called for every object found.
+	 */
+	public void visitRange(AABB range, ISpatialVisitor<T> visitor);
 }
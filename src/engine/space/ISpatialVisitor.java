@@ -0,0 +1,23 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.space;
+
+/**
+ * Performs some action on spatial objects found by a query.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ * 
+ * @param <T>
+ *            The type of object being visited.
+ */
+public interface ISpatialVisitor<T extends ISpatialObject> {
+	/**
+	 * Performs an action on an object found by a query.
+	 * 
+	 * @param obj
+	 *            The object being visited.
+	 */
+	public void visit(T obj);
+}
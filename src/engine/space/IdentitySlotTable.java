@@ -0,0 +1,146 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.space;
+
+import java.util.Arrays;
+
+/**
+ * Maps objects to the slots they are stored in, comparing objects by
+ * identity.
+ * <p/>
+ * Entries are stored with open addressing in a pair of arrays, so no memory is
+ * allocated unless the table grows.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+class IdentitySlotTable {
+	private Object[] keys;
+	private int[] values;
+	private int size;
+
+	/**
+	 * Creates a new, empty IdentitySlotTable.
+	 * 
+	 * @param capacity
+	 *            The number of entries that can be stored before the table
+	 *            grows.
+	 */
+	public IdentitySlotTable(int capacity) {
+		int tableSize = 2;
+		while (tableSize < capacity * 2) {
+			tableSize *= 2;
+		}
+		this.keys = new Object[tableSize];
+		this.values = new int[tableSize];
+		this.size = 0;
+	}
+
+	/**
+	 * Gets the slot an object is stored in.
+	 * 
+	 * @param obj
+	 *            The object to find.
+	 * @return The slot {@code obj} is stored in, or -1 if it is not in the
+	 *         table.
+	 */
+	public int get(Object obj) {
+		int mask = keys.length - 1;
+		int i = hash(obj) & mask;
+		while (keys[i] != null) {
+			if (keys[i] == obj) {
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Stores the slot of an object that is not already in the table.
+	 * 
+	 * @param obj
+	 *            The object to store.
+	 * @param slot
+	 *            The slot {@code obj} is stored in.
+	 */
+	public void put(Object obj, int slot) {
+		// Keeps the table at most half full, so probe sequences stay short.
+		if ((size + 1) * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+		insert(obj, slot);
+		size++;
+	}
+
+	/**
+	 * Removes an object from the table. If the object is not in the table,
+	 * nothing happens.
+	 * 
+	 * @param obj
+	 *            The object to remove.
+	 */
+	public void remove(Object obj) {
+		int mask = keys.length - 1;
+		int i = hash(obj) & mask;
+		while (keys[i] != obj) {
+			if (keys[i] == null) {
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		// Entries after the removed one are shifted back, so no probe
+		// sequence is broken and no markers for removed entries are needed.
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == null) {
+				break;
+			}
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = null;
+		size--;
+	}
+
+	/**
+	 * Removes every entry from the table.
+	 */
+	public void clear() {
+		Arrays.fill(keys, null);
+		size = 0;
+	}
+
+	private void insert(Object obj, int slot) {
+		int mask = keys.length - 1;
+		int i = hash(obj) & mask;
+		while (keys[i] != null) {
+			i = (i + 1) & mask;
+		}
+		keys[i] = obj;
+		values[i] = slot;
+	}
+
+	private void rehash(int tableSize) {
+		Object[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new Object[tableSize];
+		values = new int[tableSize];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				insert(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	private static int hash(Object obj) {
+		int h = System.identityHashCode(obj);
+		return h ^ (h >>> 16);
+	}
+}
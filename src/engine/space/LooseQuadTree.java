@@ -0,0 +1,415 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.space;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Represents a 2D space that is recursively divided into 4 equal subspaces,
+ * where each subspace accepts objects extending up to half its size past its
+ * edges.
+ * <p/>
+ * Because the bounds of each node are enlarged, an object never straddles the
+ * edge between two nodes. Instead, every object is stored at the depth where
+ * the nodes are just big enough for it, in the node containing its center.
+ * Adding, moving and removing an object therefore only touches one node, and
+ * large nodes near the root only hold objects that are actually large.
+ * <p/>
+ * Nodes are stored in a set of arrays indexed by node number, and objects in
+ * a set of arrays indexed by slot, so the tree does not allocate anything
+ * unless it needs to grow. Objects outside the bounds of the tree are stored
+ * at the root, where they are still found by queries, but are checked on
+ * every query.
+ * <p/>
+ * Querying does not modify the structure, so several threads can query at
+ * once as long as nothing is being added or removed.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ * 
+ * @param <T>
+ *            The type of object stored in the structure.
+ */
+public class LooseQuadTree<T extends ISpatialObject> implements
+		ISpatialStructure<T> {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private final double minX;
+	private final double minY;
+	private final double size;
+	private final int maxDepth;
+	private final double[] nodeSizes;
+
+	// Nodes, indexed by node number. Each node has 4 child entries, which are
+	// NONE until the child is needed.
+	private int[] children;
+	private int[] parents;
+	private int[] depths;
+	private double[] nodeMinX;
+	private double[] nodeMinY;
+	private int[] firstObjects;
+	private int[] numObjects;
+	private int[] numChildren;
+	private int numNodes;
+	private int[] freeNodes;
+	private int numFreeNodes;
+
+	// Objects, and the bounds they were added with, indexed by slot. Objects
+	// in the same node are linked together through nextObjects and
+	// prevObjects. The extents of the bounds on X and Y are also stored
+	// directly, so most objects can be rejected by queries without reading
+	// their AABB.
+	private Object[] objects;
+	private AABB[] bounds;
+	private double[] extents;
+	private int[] objectNodes;
+	private int[] nextObjects;
+	private int[] prevObjects;
+	private int numSlots;
+	private int[] freeSlots;
+	private int numFreeSlots;
+	private final IdentitySlotTable slotTable;
+
+	/**
+	 * Creates a new LooseQuadTree.
+	 * 
+	 * @param aabb
+	 *            Represents the 2D space inside the LooseQuadTree. If this is
+	 *            not square, the space is extended on its shorter axis to make
+	 *            it square.
+	 * @param maxDepth
+	 *            How many times the space can be divided. Objects smaller than
+	 *            the smallest nodes are stored in the smallest nodes.
+	 */
+	public LooseQuadTree(AABB aabb, int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException(
+					"Max depth must not be negative");
+		}
+		this.minX = aabb.getMinX();
+		this.minY = aabb.getMinY();
+		this.size = Math.max(aabb.getWidth(), aabb.getHeight());
+		this.maxDepth = maxDepth;
+		this.nodeSizes = new double[maxDepth + 1];
+		nodeSizes[0] = size;
+		for (int i = 1; i <= maxDepth; i++) {
+			nodeSizes[i] = nodeSizes[i - 1] / 2.0;
+		}
+
+		this.children = new int[DEFAULT_CAPACITY * 4];
+		this.parents = new int[DEFAULT_CAPACITY];
+		this.depths = new int[DEFAULT_CAPACITY];
+		this.nodeMinX = new double[DEFAULT_CAPACITY];
+		this.nodeMinY = new double[DEFAULT_CAPACITY];
+		this.firstObjects = new int[DEFAULT_CAPACITY];
+		this.numObjects = new int[DEFAULT_CAPACITY];
+		this.numChildren = new int[DEFAULT_CAPACITY];
+		this.freeNodes = new int[DEFAULT_CAPACITY];
+
+		this.objects = new Object[DEFAULT_CAPACITY];
+		this.bounds = new AABB[DEFAULT_CAPACITY];
+		this.extents = new double[DEFAULT_CAPACITY * 4];
+		this.objectNodes = new int[DEFAULT_CAPACITY];
+		this.nextObjects = new int[DEFAULT_CAPACITY];
+		this.prevObjects = new int[DEFAULT_CAPACITY];
+		this.freeSlots = new int[DEFAULT_CAPACITY];
+		this.slotTable = new IdentitySlotTable(DEFAULT_CAPACITY);
+		clear();
+	}
+
+	@Override
+	public void add(T obj) {
+		if (slotTable.get(obj) != -1) {
+			return;
+		}
+		int slot = allocateSlot();
+		AABB aabb = obj.getAABB();
+		objects[slot] = obj;
+		setBounds(slot, aabb);
+		slotTable.put(obj, slot);
+		link(slot, findNode(aabb, true));
+	}
+
+	@Override
+	public void remove(T obj) {
+		int slot = slotTable.get(obj);
+		if (slot == -1) {
+			return;
+		}
+		int node = objectNodes[slot];
+		unlink(slot);
+		prune(node);
+
+		slotTable.remove(obj);
+		objects[slot] = null;
+		bounds[slot] = null;
+		if (numFreeSlots == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[numFreeSlots++] = slot;
+	}
+
+	@Override
+	public void update(T obj, AABB oldBounds) {
+		int slot = slotTable.get(obj);
+		if (slot == -1) {
+			add(obj);
+			return;
+		}
+		AABB aabb = obj.getAABB();
+		setBounds(slot, aabb);
+		int node = objectNodes[slot];
+		if (findNode(aabb, false) == node) {
+			return;
+		}
+		unlink(slot);
+		link(slot, findNode(aabb, true));
+		prune(node);
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(objects, 0, numSlots, null);
+		Arrays.fill(bounds, 0, numSlots, null);
+		slotTable.clear();
+		numSlots = 0;
+		numFreeSlots = 0;
+
+		numNodes = 0;
+		numFreeNodes = 0;
+		allocateNode(NONE, 0, minX, minY);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Set<T> getAll(Set<T> result) {
+		for (int i = 0; i < numSlots; i++) {
+			if (objects[i] != null) {
+				result.add((T) objects[i]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Set<T> queryRange(final Set<T> result, AABB range) {
+		visitRange(range, new ISpatialVisitor<T>() {
+			@Override
+			public void visit(T obj) {
+				result.add(obj);
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public void visitRange(AABB range, ISpatialVisitor<T> visitor) {
+		// The root also holds objects outside the tree, so its objects are
+		// always checked.
+		visitObjects(ROOT, range, visitor);
+		visitChildren(ROOT, range, visitor);
+	}
+
+	private void visitChildren(int node, AABB range,
+			ISpatialVisitor<T> visitor) {
+		if (numChildren[node] == 0) {
+			return;
+		}
+		// Children are all the same size, so their loose bounds only differ by
+		// where their cells start.
+		double nodeSize = nodeSizes[depths[node] + 1];
+		double halfSize = nodeSize / 2.0;
+		double minX = range.getMinX() - nodeSize - halfSize;
+		double minY = range.getMinY() - nodeSize - halfSize;
+		double maxX = range.getMaxX() + halfSize;
+		double maxY = range.getMaxY() + halfSize;
+		for (int i = 0; i < 4; i++) {
+			int child = children[node * 4 + i];
+			if (child != NONE && nodeMinX[child] > minX
+					&& nodeMinX[child] < maxX && nodeMinY[child] > minY
+					&& nodeMinY[child] < maxY) {
+				visitObjects(child, range, visitor);
+				visitChildren(child, range, visitor);
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visitObjects(int node, AABB range,
+			ISpatialVisitor<T> visitor) {
+		double rangeMinX = range.getMinX();
+		double rangeMinY = range.getMinY();
+		double rangeMaxX = range.getMaxX();
+		double rangeMaxY = range.getMaxY();
+		int slot = firstObjects[node];
+		while (slot != NONE) {
+			int i = slot * 4;
+			if (extents[i] < rangeMaxX && extents[i + 1] < rangeMaxY
+					&& extents[i + 2] > rangeMinX && extents[i + 3] > rangeMinY
+					&& bounds[slot].intersects(range)) {
+				visitor.visit((T) objects[slot]);
+			}
+			slot = nextObjects[slot];
+		}
+	}
+
+	/**
+	 * Finds the node an AABB belongs in.
+	 * 
+	 * @param aabb
+	 *            The AABB to find a node for.
+	 * @param create
+	 *            Whether nodes that do not exist yet should be created.
+	 * @return The node {@code aabb} belongs in, or NONE if {@code create} is
+	 *         false and the node does not exist.
+	 */
+	private int findNode(AABB aabb, boolean create) {
+		double centerX = aabb.getCenterX();
+		double centerY = aabb.getCenterY();
+		if (centerX < minX || centerX > minX + size || centerY < minY
+				|| centerY > minY + size) {
+			return ROOT;
+		}
+
+		// Every node at a depth accepts any object no bigger than the node
+		// whose center is inside it, so the deepest such depth is used.
+		double extent = Math.max(aabb.getWidth(), aabb.getHeight());
+		int depth = 0;
+		while (depth < maxDepth && nodeSizes[depth + 1] >= extent) {
+			depth++;
+		}
+
+		int node = ROOT;
+		for (int i = 1; i <= depth; i++) {
+			double halfSize = nodeSizes[i];
+			int quadrant = 0;
+			double childMinX = nodeMinX[node];
+			double childMinY = nodeMinY[node];
+			if (centerX >= childMinX + halfSize) {
+				quadrant += 1;
+				childMinX += halfSize;
+			}
+			if (centerY >= childMinY + halfSize) {
+				quadrant += 2;
+				childMinY += halfSize;
+			}
+			int child = children[node * 4 + quadrant];
+			if (child == NONE) {
+				if (!create) {
+					return NONE;
+				}
+				child = allocateNode(node, i, childMinX, childMinY);
+				children[node * 4 + quadrant] = child;
+				numChildren[node]++;
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	private void link(int slot, int node) {
+		int first = firstObjects[node];
+		objectNodes[slot] = node;
+		prevObjects[slot] = NONE;
+		nextObjects[slot] = first;
+		if (first != NONE) {
+			prevObjects[first] = slot;
+		}
+		firstObjects[node] = slot;
+		numObjects[node]++;
+	}
+
+	private void unlink(int slot) {
+		int node = objectNodes[slot];
+		int prev = prevObjects[slot];
+		int next = nextObjects[slot];
+		if (prev != NONE) {
+			nextObjects[prev] = next;
+		} else {
+			firstObjects[node] = next;
+		}
+		if (next != NONE) {
+			prevObjects[next] = prev;
+		}
+		numObjects[node]--;
+	}
+
+	private void prune(int node) {
+		// Empty nodes are freed from the bottom up, so only nodes that lead to
+		// objects are ever visited by queries.
+		while (node != ROOT && numObjects[node] == 0
+				&& numChildren[node] == 0) {
+			int parent = parents[node];
+			for (int i = 0; i < 4; i++) {
+				if (children[parent * 4 + i] == node) {
+					children[parent * 4 + i] = NONE;
+					break;
+				}
+			}
+			numChildren[parent]--;
+			if (numFreeNodes == freeNodes.length) {
+				freeNodes = Arrays.copyOf(freeNodes, freeNodes.length * 2);
+			}
+			freeNodes[numFreeNodes++] = node;
+			node = parent;
+		}
+	}
+
+	private int allocateNode(int parent, int depth, double x, double y) {
+		int node;
+		if (numFreeNodes > 0) {
+			node = freeNodes[--numFreeNodes];
+		} else {
+			if (numNodes == parents.length) {
+				int capacity = parents.length * 2;
+				children = Arrays.copyOf(children, capacity * 4);
+				parents = Arrays.copyOf(parents, capacity);
+				depths = Arrays.copyOf(depths, capacity);
+				nodeMinX = Arrays.copyOf(nodeMinX, capacity);
+				nodeMinY = Arrays.copyOf(nodeMinY, capacity);
+				firstObjects = Arrays.copyOf(firstObjects, capacity);
+				numObjects = Arrays.copyOf(numObjects, capacity);
+				numChildren = Arrays.copyOf(numChildren, capacity);
+			}
+			node = numNodes++;
+		}
+		Arrays.fill(children, node * 4, node * 4 + 4, NONE);
+		parents[node] = parent;
+		depths[node] = depth;
+		nodeMinX[node] = x;
+		nodeMinY[node] = y;
+		firstObjects[node] = NONE;
+		numObjects[node] = 0;
+		numChildren[node] = 0;
+		return node;
+	}
+
+	private void setBounds(int slot, AABB aabb) {
+		int i = slot * 4;
+		bounds[slot] = aabb;
+		extents[i] = aabb.getMinX();
+		extents[i + 1] = aabb.getMinY();
+		extents[i + 2] = aabb.getMaxX();
+		extents[i + 3] = aabb.getMaxY();
+	}
+
+	private int allocateSlot() {
+		if (numFreeSlots > 0) {
+			return freeSlots[--numFreeSlots];
+		}
+		if (numSlots == objects.length) {
+			int capacity = objects.length * 2;
+			objects = Arrays.copyOf(objects, capacity);
+			bounds = Arrays.copyOf(bounds, capacity);
+			extents = Arrays.copyOf(extents, capacity * 4);
+			objectNodes = Arrays.copyOf(objectNodes, capacity);
+			nextObjects = Arrays.copyOf(nextObjects, capacity);
+			prevObjects = Arrays.copyOf(prevObjects, capacity);
+		}
+		return numSlots++;
+	}
+}
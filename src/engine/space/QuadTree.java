@@ -19,6 +19,7 @@ public class QuadTree<T extends ISpatialObject> implements ISpatialStructure<T>
 	private int capacity;
 	private List<T> objects;
 	private AABB aabb;
+	private List<QuadTree<T>> path;
 
 	/**
 	 * Initializes a QuadTree from an AABB.
@@ -34,6 +35,7 @@ public class QuadTree<T extends ISpatialObject> implements ISpatialStructure<T>
 		this.capacity = capacity;
 		objects = new ArrayList<>();
 		nodes = null;
+		path = null;
 	}
 
 	private QuadTree(QuadTree<T> other) {
@@ -165,6 +167,100 @@ public class QuadTree<T extends ISpatialObject> implements ISpatialStructure<T>
 		}
 	}
 
+	@Override
+	public void update(T obj, AABB oldBounds) {
+		if (path == null) {
+			path = new ArrayList<>();
+		}
+		QuadTree<T> holder = findHolder(obj, oldBounds, path);
+		if (holder == null) {
+			removeAnywhere(obj);
+			add(obj);
+			path.clear();
+			return;
+		}
+
+		AABB newBounds = obj.getAABB();
+		if (holder.aabb.contains(newBounds)
+				&& (holder.nodes == null || !holder
+						.fitsInChildNode(newBounds))) {
+			// The object would be placed in the same node again, so nothing
+			// needs to change.
+			path.clear();
+			return;
+		}
+
+		holder.objects.remove(obj);
+		// The object is reinserted from the smallest node that still contains
+		// it, rather than from the root.
+		int ancestor = path.size() - 1;
+		while (ancestor >= 0 && !path.get(ancestor).aabb.contains(newBounds)) {
+			ancestor--;
+		}
+		if (ancestor >= 0) {
+			path.get(ancestor).addInternal(obj);
+		}
+		for (int i = path.size() - 1; i >= 0; i--) {
+			QuadTree<T> node = path.get(i);
+			if (node.nodes != null) {
+				node.prune();
+			}
+		}
+		path.clear();
+		if (ancestor < 0) {
+			add(obj);
+		}
+	}
+
+	private QuadTree<T> findHolder(T obj, AABB bounds, List<QuadTree<T>> path) {
+		QuadTree<T> node = this;
+		while (true) {
+			path.add(node);
+			if (node.objects.contains(obj)) {
+				return node;
+			}
+			if (node.nodes == null) {
+				return null;
+			}
+			QuadTree<T> next = null;
+			for (int i = 0; i < node.nodes.length; i++) {
+				if (node.nodes[i].aabb.contains(bounds)) {
+					next = node.nodes[i];
+					break;
+				}
+			}
+			if (next == null) {
+				return null;
+			}
+			node = next;
+		}
+	}
+
+	private boolean fitsInChildNode(AABB bounds) {
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i].aabb.contains(bounds)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean removeAnywhere(T obj) {
+		if (objects.remove(obj)) {
+			return true;
+		}
+		if (nodes == null) {
+			return false;
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i].removeAnywhere(obj)) {
+				prune();
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private boolean removeInternal(T obj) {
 		if (!aabb.contains(obj.getAABB())) {
 			return false;
@@ -236,7 +332,9 @@ public class QuadTree<T extends ISpatialObject> implements ISpatialStructure<T>
 	}
 
 	private Set<T> addAll(Set<T> result) {
-		result.addAll(objects);
+		for (int i = 0; i < objects.size(); i++) {
+			result.add(objects.get(i));
+		}
 
 		if (nodes != null) {
 			for (int i = 0; i < nodes.length; i++) {
@@ -248,29 +346,51 @@ public class QuadTree<T extends ISpatialObject> implements ISpatialStructure<T>
 	}
 
 	@Override
-	public Set<T> queryRange(Set<T> result, AABB range) {
+	public Set<T> queryRange(final Set<T> result, AABB range) {
+		visitRange(range, new ISpatialVisitor<T>() {
+			@Override
+			public void visit(T obj) {
+				result.add(obj);
+			}
+		});
+
+		return result;
+	}
+
+	@Override
+	public void visitRange(AABB range, ISpatialVisitor<T> visitor) {
 		if (!aabb.intersects(range)) {
-			return result;
+			return;
 		}
 
 		if (range.contains(aabb)) {
-			return addAll(result);
+			visitAll(visitor);
+			return;
 		}
 
 		if (nodes != null) {
 			for (int i = 0; i < nodes.length; i++) {
-				result = nodes[i].queryRange(result, range);
+				nodes[i].visitRange(range, visitor);
 			}
 		}
 
-		Iterator<T> it = objects.iterator();
-		while (it.hasNext()) {
-			T current = it.next();
+		for (int i = 0; i < objects.size(); i++) {
+			T current = objects.get(i);
 			if (current.getAABB().intersects(range)) {
-				result.add(current);
+				visitor.visit(current);
 			}
 		}
+	}
 
-		return result;
+	private void visitAll(ISpatialVisitor<T> visitor) {
+		for (int i = 0; i < objects.size(); i++) {
+			visitor.visit(objects.get(i));
+		}
+
+		if (nodes != null) {
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i].visitAll(visitor);
+			}
+		}
 	}
 }
@@ -0,0 +1,475 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.space;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Represents a 2D space divided into square cells, where only cells that
+ * contain something use any memory.
+ * <p/>
+ * Cells are stored in a hash table keyed by their location, so space is
+ * unbounded, and distant objects never share a cell. Each object is given a
+ * slot when it is added, and each cell stores the slots of the objects
+ * overlapping it in an array. Adding and removing an object takes time
+ * proportional to the number of cells it overlaps. Objects overlapping more
+ * than {@value #MAX_OBJECT_CELLS} cells, including objects with infinite
+ * bounds, are not stored in cells at all, but are kept in a list that is
+ * checked by every query.
+ * <p/>
+ * Querying does not modify the structure, so several threads can query at
+ * once as long as nothing is being added or removed.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ * 
+ * @param <T>
+ *            The type of object stored in the structure.
+ */
+public class SpatialHash<T extends ISpatialObject> implements
+		ISpatialStructure<T> {
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final int DEFAULT_CELL_CAPACITY = 4;
+	private static final int MAX_SPARE_CELLS = 64;
+	private static final int MAX_OBJECT_CELLS = 1024;
+
+	private final double cellSize;
+
+	// Objects, and the bounds they were added with, indexed by slot.
+	private Object[] objects;
+	private AABB[] bounds;
+	private int numSlots;
+	private int[] freeSlots;
+	private int numFreeSlots;
+	private final IdentitySlotTable slotTable;
+	// Slots of objects that overlap too many cells to be stored in them.
+	private int[] largeSlots;
+	private int numLargeSlots;
+
+	// Maps cell locations to the slots overlapping the cell, using open
+	// addressing. A cell is only stored while it contains something.
+	private long[] cellXs;
+	private long[] cellYs;
+	private int[][] cellSlots;
+	private int[] cellSizes;
+	private boolean[] cellUsed;
+	private int numCells;
+	// Arrays from cells that have emptied, kept so objects moving between
+	// cells do not need new arrays.
+	private int[][] spareCells;
+	private int numSpareCells;
+
+	/**
+	 * Creates a new SpatialHash.
+	 * 
+	 * @param cellSize
+	 *            How much space each cell consumes on X and Y.
+	 */
+	public SpatialHash(double cellSize) {
+		if (cellSize <= 0.0) {
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		this.cellSize = cellSize;
+		this.objects = new Object[DEFAULT_CAPACITY];
+		this.bounds = new AABB[DEFAULT_CAPACITY];
+		this.freeSlots = new int[DEFAULT_CAPACITY];
+		this.slotTable = new IdentitySlotTable(DEFAULT_CAPACITY);
+		this.largeSlots = new int[DEFAULT_CELL_CAPACITY];
+		this.numLargeSlots = 0;
+		this.cellXs = new long[DEFAULT_CAPACITY * 2];
+		this.cellYs = new long[DEFAULT_CAPACITY * 2];
+		this.cellSlots = new int[DEFAULT_CAPACITY * 2][];
+		this.cellSizes = new int[DEFAULT_CAPACITY * 2];
+		this.cellUsed = new boolean[DEFAULT_CAPACITY * 2];
+		this.spareCells = new int[MAX_SPARE_CELLS][];
+		this.numSpareCells = 0;
+		this.numSlots = 0;
+		this.numFreeSlots = 0;
+		this.numCells = 0;
+	}
+
+	@Override
+	public void add(T obj) {
+		if (slotTable.get(obj) != -1) {
+			return;
+		}
+		int slot = allocateSlot();
+		AABB aabb = obj.getAABB();
+		objects[slot] = obj;
+		bounds[slot] = aabb;
+		slotTable.put(obj, slot);
+		addToCells(aabb, slot);
+	}
+
+	@Override
+	public void remove(T obj) {
+		int slot = slotTable.get(obj);
+		if (slot == -1) {
+			return;
+		}
+		removeFromCells(bounds[slot], slot);
+
+		slotTable.remove(obj);
+		objects[slot] = null;
+		bounds[slot] = null;
+		if (numFreeSlots == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+		freeSlots[numFreeSlots++] = slot;
+	}
+
+	@Override
+	public void update(T obj, AABB oldBounds) {
+		int slot = slotTable.get(obj);
+		if (slot == -1) {
+			add(obj);
+			return;
+		}
+		// The bounds the object was stored with are used rather than
+		// oldBounds, since they are exactly what the cells were chosen from.
+		AABB oldAABB = bounds[slot];
+		AABB newAABB = obj.getAABB();
+		bounds[slot] = newAABB;
+		long oldMinX = getCell(oldAABB.getMinX());
+		long oldMinY = getCell(oldAABB.getMinY());
+		long oldMaxX = getCell(oldAABB.getMaxX());
+		long oldMaxY = getCell(oldAABB.getMaxY());
+		long newMinX = getCell(newAABB.getMinX());
+		long newMinY = getCell(newAABB.getMinY());
+		long newMaxX = getCell(newAABB.getMaxX());
+		long newMaxY = getCell(newAABB.getMaxY());
+		if (oldMinX == newMinX && oldMinY == newMinY && oldMaxX == newMaxX
+				&& oldMaxY == newMaxY) {
+			return;
+		}
+		if (isLarge(oldMinX, oldMinY, oldMaxX, oldMaxY)
+				|| isLarge(newMinX, newMinY, newMaxX, newMaxY)) {
+			removeFromCells(oldAABB, slot);
+			addToCells(newAABB, slot);
+			return;
+		}
+
+		// Cells are counted from the minimum cell, so no loop can overflow.
+		int oldWidth = (int) (oldMaxX - oldMinX);
+		int oldHeight = (int) (oldMaxY - oldMinY);
+		for (int j = 0; j <= oldHeight; j++) {
+			for (int i = 0; i <= oldWidth; i++) {
+				long x = oldMinX + i;
+				long y = oldMinY + j;
+				if (x < newMinX || x > newMaxX || y < newMinY || y > newMaxY) {
+					removeFromCell(x, y, slot);
+				}
+			}
+		}
+		int newWidth = (int) (newMaxX - newMinX);
+		int newHeight = (int) (newMaxY - newMinY);
+		for (int j = 0; j <= newHeight; j++) {
+			for (int i = 0; i <= newWidth; i++) {
+				long x = newMinX + i;
+				long y = newMinY + j;
+				if (x < oldMinX || x > oldMaxX || y < oldMinY || y > oldMaxY) {
+					addToCell(x, y, slot);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(objects, 0, numSlots, null);
+		Arrays.fill(bounds, 0, numSlots, null);
+		slotTable.clear();
+		numLargeSlots = 0;
+		Arrays.fill(cellSlots, null);
+		Arrays.fill(cellUsed, false);
+		Arrays.fill(spareCells, null);
+		numSpareCells = 0;
+		numSlots = 0;
+		numFreeSlots = 0;
+		numCells = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public Set<T> getAll(Set<T> result) {
+		for (int i = 0; i < numSlots; i++) {
+			if (objects[i] != null) {
+				result.add((T) objects[i]);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public Set<T> queryRange(final Set<T> result, AABB range) {
+		visitRange(range, new ISpatialVisitor<T>() {
+			@Override
+			public void visit(T obj) {
+				result.add(obj);
+			}
+		});
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void visitRange(AABB range, ISpatialVisitor<T> visitor) {
+		for (int i = 0; i < numLargeSlots; i++) {
+			int slot = largeSlots[i];
+			if (bounds[slot].intersects(range)) {
+				visitor.visit((T) objects[slot]);
+			}
+		}
+
+		long minX = getCell(range.getMinX());
+		long minY = getCell(range.getMinY());
+		long maxX = getCell(range.getMaxX());
+		long maxY = getCell(range.getMaxY());
+
+		// When the range covers more cells than are in use, it is faster to
+		// check every cell in use than every cell in the range.
+		if (getNumCells(minX, minY, maxX, maxY) > numCells) {
+			for (int i = 0; i < cellUsed.length; i++) {
+				if (cellUsed[i]) {
+					visitCell(i, range, minX, minY, visitor);
+				}
+			}
+			return;
+		}
+
+		int width = (int) (maxX - minX);
+		int height = (int) (maxY - minY);
+		for (int j = 0; j <= height; j++) {
+			for (int i = 0; i <= width; i++) {
+				int index = findCell(minX + i, minY + j);
+				if (index != -1) {
+					visitCell(index, range, minX, minY, visitor);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visitCell(int index, AABB range, long minX, long minY,
+			ISpatialVisitor<T> visitor) {
+		long cellX = cellXs[index];
+		long cellY = cellYs[index];
+		int[] slots = cellSlots[index];
+		int size = cellSizes[index];
+		for (int i = 0; i < size; i++) {
+			int slot = slots[i];
+			AABB aabb = bounds[slot];
+			// An object is stored in every cell it overlaps, so it is only
+			// visited from the first of those cells in the range, rather than
+			// being checked against a set of objects already visited.
+			if (aabb.intersects(range)
+					&& cellX == Math.max(getCell(aabb.getMinX()), minX)
+					&& cellY == Math.max(getCell(aabb.getMinY()), minY)) {
+				visitor.visit((T) objects[slot]);
+			}
+		}
+	}
+
+	private long getCell(double pos) {
+		// Positions too far away to fit in a long, including infinite ones,
+		// are clamped to the range of a long.
+		return (long) Math.floor(pos / cellSize);
+	}
+
+	private static double getNumCells(long minX, long minY, long maxX,
+			long maxY) {
+		// This is a double, since the number of cells can overflow a long.
+		return ((double) maxX - minX + 1) * ((double) maxY - minY + 1);
+	}
+
+	private static boolean isLarge(long minX, long minY, long maxX, long maxY) {
+		return getNumCells(minX, minY, maxX, maxY) > MAX_OBJECT_CELLS;
+	}
+
+	private static int hash(long x, long y) {
+		long key = x * 0x9E3779B97F4A7C15L + y;
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private void addToCells(AABB aabb, int slot) {
+		long minX = getCell(aabb.getMinX());
+		long minY = getCell(aabb.getMinY());
+		long maxX = getCell(aabb.getMaxX());
+		long maxY = getCell(aabb.getMaxY());
+		if (isLarge(minX, minY, maxX, maxY)) {
+			if (numLargeSlots == largeSlots.length) {
+				largeSlots = Arrays.copyOf(largeSlots, numLargeSlots * 2);
+			}
+			largeSlots[numLargeSlots++] = slot;
+			return;
+		}
+		int width = (int) (maxX - minX);
+		int height = (int) (maxY - minY);
+		for (int j = 0; j <= height; j++) {
+			for (int i = 0; i <= width; i++) {
+				addToCell(minX + i, minY + j, slot);
+			}
+		}
+	}
+
+	private void removeFromCells(AABB aabb, int slot) {
+		long minX = getCell(aabb.getMinX());
+		long minY = getCell(aabb.getMinY());
+		long maxX = getCell(aabb.getMaxX());
+		long maxY = getCell(aabb.getMaxY());
+		if (isLarge(minX, minY, maxX, maxY)) {
+			for (int i = 0; i < numLargeSlots; i++) {
+				if (largeSlots[i] == slot) {
+					largeSlots[i] = largeSlots[--numLargeSlots];
+					break;
+				}
+			}
+			return;
+		}
+		int width = (int) (maxX - minX);
+		int height = (int) (maxY - minY);
+		for (int j = 0; j <= height; j++) {
+			for (int i = 0; i <= width; i++) {
+				removeFromCell(minX + i, minY + j, slot);
+			}
+		}
+	}
+
+	private int allocateSlot() {
+		if (numFreeSlots > 0) {
+			return freeSlots[--numFreeSlots];
+		}
+		if (numSlots == objects.length) {
+			int capacity = objects.length * 2;
+			objects = Arrays.copyOf(objects, capacity);
+			bounds = Arrays.copyOf(bounds, capacity);
+		}
+		return numSlots++;
+	}
+
+	private int findCell(long x, long y) {
+		int mask = cellXs.length - 1;
+		int i = hash(x, y) & mask;
+		while (cellUsed[i]) {
+			if (cellXs[i] == x && cellYs[i] == y) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void addToCell(long x, long y, int slot) {
+		int index = findCell(x, y);
+		if (index == -1) {
+			// Keeps the table at most half full, so probe sequences stay
+			// short.
+			if ((numCells + 1) * 2 > cellXs.length) {
+				rehashCells(cellXs.length * 2);
+			}
+			int mask = cellXs.length - 1;
+			index = hash(x, y) & mask;
+			while (cellUsed[index]) {
+				index = (index + 1) & mask;
+			}
+			cellUsed[index] = true;
+			cellXs[index] = x;
+			cellYs[index] = y;
+			if (numSpareCells > 0) {
+				cellSlots[index] = spareCells[--numSpareCells];
+				spareCells[numSpareCells] = null;
+			} else {
+				cellSlots[index] = new int[DEFAULT_CELL_CAPACITY];
+			}
+			cellSizes[index] = 0;
+			numCells++;
+		}
+
+		int[] slots = cellSlots[index];
+		int size = cellSizes[index];
+		if (size == slots.length) {
+			slots = Arrays.copyOf(slots, size * 2);
+			cellSlots[index] = slots;
+		}
+		slots[size] = slot;
+		cellSizes[index] = size + 1;
+	}
+
+	private void removeFromCell(long x, long y, int slot) {
+		int index = findCell(x, y);
+		if (index == -1) {
+			return;
+		}
+		int[] slots = cellSlots[index];
+		int size = cellSizes[index];
+		for (int i = 0; i < size; i++) {
+			if (slots[i] == slot) {
+				slots[i] = slots[--size];
+				break;
+			}
+		}
+		cellSizes[index] = size;
+		if (size == 0) {
+			removeCell(index);
+		}
+	}
+
+	private void removeCell(int i) {
+		if (numSpareCells < MAX_SPARE_CELLS) {
+			spareCells[numSpareCells++] = cellSlots[i];
+		}
+		int mask = cellXs.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (!cellUsed[j]) {
+				break;
+			}
+			int home = hash(cellXs[j], cellYs[j]) & mask;
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				cellXs[i] = cellXs[j];
+				cellYs[i] = cellYs[j];
+				cellSlots[i] = cellSlots[j];
+				cellSizes[i] = cellSizes[j];
+				i = j;
+			}
+		}
+		cellUsed[i] = false;
+		cellSlots[i] = null;
+		numCells--;
+	}
+
+	private void rehashCells(int tableSize) {
+		long[] oldXs = cellXs;
+		long[] oldYs = cellYs;
+		int[][] oldSlots = cellSlots;
+		int[] oldSizes = cellSizes;
+		boolean[] oldUsed = cellUsed;
+		cellXs = new long[tableSize];
+		cellYs = new long[tableSize];
+		cellSlots = new int[tableSize][];
+		cellSizes = new int[tableSize];
+		cellUsed = new boolean[tableSize];
+
+		int mask = tableSize - 1;
+		for (int i = 0; i < oldXs.length; i++) {
+			if (!oldUsed[i]) {
+				continue;
+			}
+			int index = hash(oldXs[i], oldYs[i]) & mask;
+			while (cellUsed[index]) {
+				index = (index + 1) & mask;
+			}
+			cellUsed[index] = true;
+			cellXs[index] = oldXs[i];
+			cellYs[index] = oldYs[i];
+			cellSlots[index] = oldSlots[i];
+			cellSizes[index] = oldSizes[i];
+		}
+	}
+}
@@ -4,8 +4,6 @@
  */
 package engine.util;
 
-import java.util.StringTokenizer;
-
 /**
  * Holds various utility functions
  * 
@@ -204,21 +202,54 @@ public class Util {
 	 * @return A new String with word wrapping.
 	 */
 	public static String wrapString(String str, double maxLength) {
-		StringTokenizer st = new StringTokenizer(str);
+		return wrapString(new StringBuilder(), str, maxLength).toString();
+	}
+
+	/**
+	 * Word wraps a string the same way as {@link #wrapString(String, double)},
+	 * but appends the result to an existing StringBuilder. This allows a
+	 * StringBuilder to be reused so no memory is allocated.
+	 * 
+	 * @param result
+	 *            The StringBuilder the word wrapped string is appended to.
+	 * @param str
+	 *            The string to word wrap.
+	 * @param maxLength
+	 *            The maximum length one line of string can contain.
+	 * @return {@code result}, for convenience.
+	 */
+	public static StringBuilder wrapString(StringBuilder result,
+			CharSequence str, double maxLength) {
 		double spaceLeft = maxLength;
 		int spaceWidth = 1;
-		StringBuilder sb = new StringBuilder();
-		while (st.hasMoreTokens()) {
-			String word = st.nextToken();
-			if ((word.length() + spaceWidth) > spaceLeft) {
-				sb.append("\n" + word + " ");
-				spaceLeft = maxLength - word.length();
+		int length = str.length();
+		int i = 0;
+		while (true) {
+			while (i < length && isWhitespace(str.charAt(i))) {
+				i++;
+			}
+			if (i >= length) {
+				break;
+			}
+			int start = i;
+			while (i < length && !isWhitespace(str.charAt(i))) {
+				i++;
+			}
+			int wordLength = i - start;
+			if ((wordLength + spaceWidth) > spaceLeft) {
+				result.append('\n').append(str, start, i).append(' ');
+				spaceLeft = maxLength - wordLength;
 			} else {
-				sb.append(word + " ");
-				spaceLeft -= (word.length() + spaceWidth);
+				result.append(str, start, i).append(' ');
+				spaceLeft -= (wordLength + spaceWidth);
 			}
 		}
-		return sb.toString();
+		return result;
+	}
+
+	private static boolean isWhitespace(char c) {
+		// Matches the default delimiters of java.util.StringTokenizer
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
 	}
 
 	// public static int floorDiv(int num, int den) {
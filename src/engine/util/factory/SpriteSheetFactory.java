@@ -58,8 +58,8 @@ public class SpriteSheetFactory {
 			return current;
 		} else {
 			loadedSpriteSheets.remove(fileName);
-			SpriteSheet result = new SpriteSheet(bitmaps.get(fileName, filter),
-					spritesPerX, spritesPerY, spriteBorderSize);
+			SpriteSheet result = new SpriteSheet(bitmaps.getRegion(fileName,
+					filter), spritesPerX, spritesPerY, spriteBorderSize);
 			loadedSpriteSheets.put(fileName, new SoftReference<SpriteSheet>(
 					result));
 			return result;
@@ -12,6 +12,8 @@ import java.util.Map;
 import engine.rendering.ArrayBitmap;
 import engine.rendering.Texture;
 import engine.rendering.IRenderDevice;
+import engine.rendering.TextureAtlas;
+import engine.rendering.TextureRegion;
 
 /**
  * A factory for creating Textures.
@@ -21,7 +23,9 @@ import engine.rendering.IRenderDevice;
 public class TextureFactory {
 	private final IRenderDevice device;
 	private final String filePath;
+	private final TextureAtlas atlas;
 	private Map<String, SoftReference<Texture>> loadedBitmaps;
+	private Map<String, TextureRegion> packedRegions;
 
 	/**
 	 * Creates a new Texture Factory.
@@ -32,9 +36,28 @@ public class TextureFactory {
 	 *            The base path for image files.
 	 */
 	public TextureFactory(IRenderDevice device, String filePath) {
+		this(device, filePath, null);
+	}
+
+	/**
+	 * Creates a new Texture Factory that packs images into a texture atlas.
+	 * 
+	 * @param device
+	 *            The device to load textures for.
+	 * @param filePath
+	 *            The base path for image files.
+	 * @param atlas
+	 *            The atlas images are packed into by
+	 *            {@link #getRegion(String, int)}, or null if images shouldn't
+	 *            be packed.
+	 */
+	public TextureFactory(IRenderDevice device, String filePath,
+			TextureAtlas atlas) {
 		this.device = device;
 		this.filePath = filePath;
+		this.atlas = atlas;
 		this.loadedBitmaps = new HashMap<>();
+		this.packedRegions = new HashMap<>();
 	}
 
 	/**
@@ -64,4 +87,34 @@ public class TextureFactory {
 			return result;
 		}
 	}
+
+	/**
+	 * Gets a region of a texture containing an image from the factory. If this
+	 * factory has an atlas using the same filter, the image is packed into the
+	 * atlas the first time it is requested. Otherwise, the region covers a
+	 * texture from {@link #get(String, int)}.
+	 * 
+	 * @param fileName
+	 *            The name of an image file to be loaded.
+	 * @param filter
+	 *            The type of filtering to be used. Should be one of the
+	 *            IRenderDevice.FILTER options.
+	 * @return A TextureRegion matching the specification.
+	 * @throws IOException If the file cannot be loaded.
+	 */
+	public TextureRegion getRegion(String fileName, int filter)
+			throws IOException {
+		if (atlas == null || atlas.getFilter() != filter) {
+			return new TextureRegion(get(fileName, filter));
+		}
+		fileName = filePath + fileName;
+		// Packed images stay in the atlas for its entire lifetime, so there
+		// is no reason to let their regions be collected.
+		TextureRegion result = packedRegions.get(fileName);
+		if (result == null) {
+			result = atlas.add(new ArrayBitmap(fileName));
+			packedRegions.put(fileName, result);
+		}
+		return result;
+	}
 }
@@ -0,0 +1,130 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.util.profiling;
+
+import java.util.Arrays;
+
+/**
+ * Counts how often values within certain ranges are recorded, so percentiles
+ * can be found without storing every value.
+ * <p/>
+ * Values are counted in buckets whose size grows with the values they hold,
+ * so every value is counted to within 1/64th of itself, whether it is a few
+ * nanoseconds or several minutes. Recording a value takes constant time and
+ * never allocates memory.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class Histogram {
+	// Values below 2^SUB_BUCKET_BITS are counted exactly. Larger values keep
+	// their SUB_BUCKET_BITS highest bits.
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+	private static final int NUM_COUNTS = (64 - SUB_BUCKET_BITS + 2)
+			* HALF_SUB_BUCKETS;
+
+	private final long[] counts;
+	private long totalCount;
+	private long max;
+
+	/**
+	 * Creates a new, empty Histogram.
+	 */
+	public Histogram() {
+		this.counts = new long[NUM_COUNTS];
+		this.totalCount = 0;
+		this.max = 0;
+	}
+
+	/**
+	 * Records a value.
+	 * 
+	 * @param value
+	 *            The value to record. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[getIndex(value)]++;
+		totalCount++;
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	/**
+	 * Gets the number of values recorded.
+	 * 
+	 * @return The number of values recorded.
+	 */
+	public long getCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Gets the largest value recorded.
+	 * 
+	 * @return The largest value recorded, or 0 if no values were recorded.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Finds the value that a certain percentage of recorded values are less
+	 * than or equal to.
+	 * 
+	 * @param percentile
+	 *            The percentage of values, from 0 to 100.
+	 * @return The value at {@code percentile}, to within 1/64th of itself, or
+	 *         0 if no values were recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long countAtPercentile = (long) Math.ceil(Math.min(percentile, 100.0)
+				/ 100.0 * totalCount);
+		if (countAtPercentile < 1) {
+			countAtPercentile = 1;
+		}
+		long count = 0;
+		for (int i = 0; i < counts.length; i++) {
+			count += counts[i];
+			if (count >= countAtPercentile) {
+				return Math.min(getHighestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Removes every recorded value.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		max = 0;
+	}
+
+	private static int getIndex(long value) {
+		int bucket = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		if (bucket < 0) {
+			bucket = 0;
+		}
+		return (bucket * HALF_SUB_BUCKETS) + (int) (value >>> bucket);
+	}
+
+	private static long getHighestValue(int index) {
+		// Every bucket but the first holds the upper half of its sub buckets.
+		int bucket = index / HALF_SUB_BUCKETS - 1;
+		if (bucket <= 0) {
+			return index;
+		}
+		long subBucket = index - bucket * HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << bucket) - 1;
+	}
+}
@@ -0,0 +1,91 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.util.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The time a timer measured while it was nested in one particular chain of
+ * other timers. A timer started from several places has one node for each,
+ * so reports show it nested inside each place it was started from.
+ * <p/>
+ * Time can be added from any thread while the frame is ended on another, so
+ * the time measured this frame is only accessed while holding the node's
+ * lock.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+class ProfileNode {
+	private final ProfileTimer timer;
+	private final ProfileNode parent;
+	private final List<ProfileNode> children;
+	private final long[] history;
+	private final Histogram histogram;
+	private long frameTime;
+	private int frameCalls;
+	private int lastFrameCalls;
+
+	public ProfileNode(ProfileTimer timer, ProfileNode parent,
+			int historyLength) {
+		this.timer = timer;
+		this.parent = parent;
+		this.children = new ArrayList<>();
+		this.history = new long[historyLength];
+		this.histogram = new Histogram();
+		this.frameTime = 0;
+		this.frameCalls = 0;
+		this.lastFrameCalls = 0;
+	}
+
+	public ProfileTimer getTimer() {
+		return timer;
+	}
+
+	public ProfileNode getParent() {
+		return parent;
+	}
+
+	public List<ProfileNode> getChildren() {
+		return children;
+	}
+
+	public long getFrameTime(int historyIndex) {
+		return history[historyIndex];
+	}
+
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+	public int getLastFrameCalls() {
+		return lastFrameCalls;
+	}
+
+	public synchronized void addTime(long time) {
+		frameTime += time;
+		frameCalls++;
+	}
+
+	public synchronized void endFrame(int historyIndex) {
+		history[historyIndex] = frameTime;
+		histogram.record(frameTime);
+		lastFrameCalls = frameCalls;
+		frameTime = 0;
+		frameCalls = 0;
+	}
+
+	public synchronized void discardFrame() {
+		frameTime = 0;
+		frameCalls = 0;
+	}
+
+	public void reset() {
+		histogram.reset();
+		for (int i = 0; i < history.length; i++) {
+			history[i] = 0;
+		}
+	}
+}
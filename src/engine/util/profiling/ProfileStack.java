@@ -0,0 +1,79 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.util.profiling;
+
+import java.util.Arrays;
+
+/**
+ * The timers running on one thread, in the order they were started. Each
+ * thread has its own stack, so the same timer can run on several threads at
+ * once, or be started again while it is already running.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+class ProfileStack {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private ProfileNode[] nodes;
+	private long[] startTimes;
+	private int size;
+	private int generation;
+
+	public ProfileStack(int generation) {
+		this.nodes = new ProfileNode[DEFAULT_CAPACITY];
+		this.startTimes = new long[DEFAULT_CAPACITY];
+		this.size = 0;
+		this.generation = generation;
+	}
+
+	public ProfileNode getCurrentNode() {
+		return size == 0 ? null : nodes[size - 1];
+	}
+
+	public void push(ProfileNode node, long startTime) {
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size * 2);
+			startTimes = Arrays.copyOf(startTimes, size * 2);
+		}
+		nodes[size] = node;
+		startTimes[size] = startTime;
+		size++;
+	}
+
+	/**
+	 * Stops the most recently started run of a timer, adding the time since it
+	 * started to its node. Any timers started after it that are still running
+	 * are stopped without recording anything, as they were never stopped
+	 * themselves.
+	 */
+	public void pop(ProfileTimer timer, long stopTime) {
+		int index = size - 1;
+		while (index >= 0 && nodes[index].getTimer() != timer) {
+			index--;
+		}
+		if (index < 0) {
+			return;
+		}
+		nodes[index].addTime(stopTime - startTimes[index]);
+		while (size > index) {
+			nodes[--size] = null;
+		}
+	}
+
+	/**
+	 * Stops every timer without recording anything if the profiler has been
+	 * disabled and enabled again since they were started, as they may never
+	 * have been stopped.
+	 */
+	public void update(int generation) {
+		if (this.generation == generation) {
+			return;
+		}
+		while (size > 0) {
+			nodes[--size] = null;
+		}
+		this.generation = generation;
+	}
+}
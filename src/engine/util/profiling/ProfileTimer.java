@@ -0,0 +1,151 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.util.profiling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how long some part of the engine takes to run each frame.
+ * <p/>
+ * Timers are created with {@link Profiler#getTimer(String)}, and are usually
+ * stored in a constant. Every call to {@link #start()} should be matched by a
+ * call to {@link #stop()} on the same thread. A timer started while another
+ * is running is shown nested inside it in reports. A timer started from
+ * inside several different timers is shown nested inside each of them, with
+ * only the time measured there. A timer can run on several threads at once,
+ * and can be started again while it is already running; each run is timed
+ * separately. While the profiler is disabled, starting and stopping a timer
+ * only checks whether it is enabled.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class ProfileTimer {
+	private final String name;
+	private final long[] history;
+	private final Histogram histogram;
+	// Every place this timer has been started from, in the order they were
+	// first used.
+	private final List<ProfileNode> nodes;
+	// The node used the last time this timer was started, so the node does
+	// not need to be found again when it is started from the same place. It
+	// is shared by every thread, so it is only trusted if its parent matches.
+	private volatile ProfileNode lastNode;
+	private int lastFrameCalls;
+
+	ProfileTimer(String name, int historyLength) {
+		this.name = name;
+		this.history = new long[historyLength];
+		this.histogram = new Histogram();
+		this.nodes = new ArrayList<>();
+		this.lastNode = null;
+		this.lastFrameCalls = 0;
+	}
+
+	/**
+	 * Starts timing. Nothing happens if the profiler is disabled.
+	 */
+	public void start() {
+		if (!Profiler.isEnabled()) {
+			return;
+		}
+		ProfileStack stack = Profiler.getStack();
+		ProfileNode parent = stack.getCurrentNode();
+		ProfileNode node = lastNode;
+		if (node == null || node.getParent() != parent) {
+			node = Profiler.getNode(parent, this);
+			lastNode = node;
+		}
+		stack.push(node, System.nanoTime());
+	}
+
+	/**
+	 * Stops timing, and adds the time since {@link #start()} was called on
+	 * this thread to the time spent this frame. Nothing happens if the timer
+	 * was not started on this thread.
+	 */
+	public void stop() {
+		if (!Profiler.isEnabled()) {
+			return;
+		}
+		long stopTime = System.nanoTime();
+		Profiler.getStack().pop(this, stopTime);
+	}
+
+	/**
+	 * Gets the name this timer was created with.
+	 * 
+	 * @return The name of this timer.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets how many times this timer was stopped during the last frame.
+	 * 
+	 * @return How many times this timer was stopped during the last frame.
+	 */
+	public int getLastFrameCalls() {
+		return lastFrameCalls;
+	}
+
+	/**
+	 * Gets the time measured by this timer during a recent frame, wherever it
+	 * was started from.
+	 * 
+	 * @param framesAgo
+	 *            How many frames before the last one the frame was; 0 is the
+	 *            last frame.
+	 * @return The time measured during that frame, in nanoseconds.
+	 */
+	public long getFrameTime(int framesAgo) {
+		return history[Profiler.getHistoryIndex(framesAgo)];
+	}
+
+	/**
+	 * Gets the time measured by this timer during every frame since the
+	 * profiler was last reset, wherever it was started from.
+	 * 
+	 * @return The distribution of time measured each frame, in nanoseconds.
+	 */
+	public Histogram getHistogram() {
+		return histogram;
+	}
+
+	void addNode(ProfileNode node) {
+		nodes.add(node);
+	}
+
+	void endFrame(int historyIndex) {
+		long frameTime = 0;
+		int frameCalls = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			ProfileNode node = nodes.get(i);
+			node.endFrame(historyIndex);
+			frameTime += node.getFrameTime(historyIndex);
+			frameCalls += node.getLastFrameCalls();
+		}
+		history[historyIndex] = frameTime;
+		histogram.record(frameTime);
+		lastFrameCalls = frameCalls;
+	}
+
+	void discardFrame() {
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).discardFrame();
+		}
+	}
+
+	void reset() {
+		histogram.reset();
+		for (int i = 0; i < history.length; i++) {
+			history[i] = 0;
+		}
+		for (int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).reset();
+		}
+	}
+}
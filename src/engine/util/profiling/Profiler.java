@@ -0,0 +1,392 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.util.profiling;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Measures how long each frame takes, and how long the timers created with
+ * {@link #getTimer(String)} run during it.
+ * <p/>
+ * The last {@value #HISTORY_LENGTH} frames are kept for every timer, and the
+ * distribution of every frame since the profiler was last reset is kept in a
+ * {@link Histogram}, so percentiles can be reported without storing every
+ * frame. The profiler is disabled by default; while disabled, timers and
+ * {@link #endFrame()} only check whether it is enabled, so they can be left in
+ * place.
+ * <p/>
+ * Results can be written to a file with {@link #save(String)}, or read through
+ * JMX once {@link #registerMBean()} has been called.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class Profiler {
+	/** The number of frames kept for every timer. */
+	public static final int HISTORY_LENGTH = 256;
+	/** The name the profiler is registered with in JMX. */
+	public static final String MBEAN_NAME = "engine:type=Profiler";
+
+	private static final double NANOS_PER_MILLISECOND = 1000000.0;
+
+	private static volatile boolean enabled = false;
+	private static final List<ProfileTimer> TIMERS = new ArrayList<>();
+	// The nodes of timers started while no other timer was running.
+	private static final List<ProfileNode> ROOT_NODES = new ArrayList<>();
+	// The timers running on each thread.
+	private static final ThreadLocal<ProfileStack> STACKS;
+	private static final Histogram FRAME_TIMES = new Histogram();
+	private static final long[] FRAME_HISTORY = new long[HISTORY_LENGTH];
+	private static final long[] ALLOCATION_HISTORY = new long[HISTORY_LENGTH];
+	private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER;
+	// Counts how many times the profiler has been enabled, so timers left
+	// running when it was disabled can be discarded.
+	private static volatile int generation = 0;
+	private static int historyIndex = 0;
+	private static long lastFrameEndTime = 0;
+	private static long lastAllocatedBytes = -1;
+
+	static {
+		STACKS = new ThreadLocal<ProfileStack>() {
+			@Override
+			protected ProfileStack initialValue() {
+				return new ProfileStack(generation);
+			}
+		};
+		ALLOCATION_COUNTER = getAllocationCounter();
+	}
+
+	/**
+	 * Sets whether the profiler is measuring anything.
+	 * 
+	 * @param enabled
+	 *            Whether the profiler should be enabled.
+	 */
+	public static synchronized void setEnabled(boolean enabled) {
+		if (enabled && !Profiler.enabled) {
+			generation++;
+		}
+		Profiler.enabled = enabled;
+	}
+
+	/**
+	 * Gets whether the profiler is measuring anything.
+	 * 
+	 * @return Whether the profiler is enabled.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the timer with a certain name, creating it if it does not exist
+	 * yet.
+	 * 
+	 * @param name
+	 *            The name of the timer, as it appears in reports.
+	 * @return The timer with the name {@code name}.
+	 */
+	public static synchronized ProfileTimer getTimer(String name) {
+		for (int i = 0; i < TIMERS.size(); i++) {
+			if (TIMERS.get(i).getName().equals(name)) {
+				return TIMERS.get(i);
+			}
+		}
+		ProfileTimer timer = new ProfileTimer(name, HISTORY_LENGTH);
+		TIMERS.add(timer);
+		return timer;
+	}
+
+	/**
+	 * Ends the current frame, recording how long it took and how long every
+	 * timer ran during it. This should be called once per frame, on the same
+	 * thread every time.
+	 */
+	public static void endFrame() {
+		if (!enabled) {
+			// Whenever the profiler is enabled again, timing starts from the
+			// next frame rather than from when it was disabled.
+			lastFrameEndTime = 0;
+			return;
+		}
+		endEnabledFrame();
+	}
+
+	/**
+	 * Gets how long a recent frame took.
+	 * 
+	 * @param framesAgo
+	 *            How many frames before the last one the frame was; 0 is the
+	 *            last frame.
+	 * @return How long the frame took, in nanoseconds.
+	 */
+	public static long getFrameTime(int framesAgo) {
+		return FRAME_HISTORY[getHistoryIndex(framesAgo)];
+	}
+
+	/**
+	 * Gets how much memory was allocated during a recent frame, by the thread
+	 * frames are ended on.
+	 * 
+	 * @param framesAgo
+	 *            How many frames before the last one the frame was; 0 is the
+	 *            last frame.
+	 * @return The number of bytes allocated, or -1 if this JVM cannot measure
+	 *         allocation.
+	 */
+	public static long getAllocatedBytes(int framesAgo) {
+		if (ALLOCATION_COUNTER == null) {
+			return -1;
+		}
+		return ALLOCATION_HISTORY[getHistoryIndex(framesAgo)];
+	}
+
+	/**
+	 * Gets the time every frame took since the profiler was last reset.
+	 * 
+	 * @return The distribution of frame times, in nanoseconds.
+	 */
+	public static Histogram getFrameTimes() {
+		return FRAME_TIMES;
+	}
+
+	/**
+	 * Describes the frame times in a single line.
+	 * 
+	 * @return A description of the frame times.
+	 */
+	public static synchronized String getSummary() {
+		return String.format("frames %d, p50 %.3f ms, p99 %.3f ms, "
+				+ "max %.3f ms, allocated %d bytes", FRAME_TIMES.getCount(),
+				toMilliseconds(FRAME_TIMES.getValueAtPercentile(50.0)),
+				toMilliseconds(FRAME_TIMES.getValueAtPercentile(99.0)),
+				toMilliseconds(FRAME_TIMES.getMax()), getAllocatedBytes(0));
+	}
+
+	/**
+	 * Describes the frame times, and the time every timer ran each frame.
+	 * Nested timers are indented below the timer they are nested in.
+	 * 
+	 * @return A description of every timer.
+	 */
+	public static synchronized String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append(getSummary()).append('\n');
+		report.append(String.format("%-24s %6s %10s %10s %10s %10s%n",
+				"timer", "calls", "last ms", "p50 ms", "p99 ms", "max ms"));
+		for (int i = 0; i < ROOT_NODES.size(); i++) {
+			appendNode(report, ROOT_NODES.get(i), 0);
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Writes the report given by {@link #getReport()} to a file.
+	 * 
+	 * @param fileName
+	 *            The name and path of the file to write.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public static void save(String fileName) throws IOException {
+		Writer writer = new FileWriter(fileName);
+		try {
+			writer.write(getReport());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Makes the profiler available through JMX, with the name
+	 * {@value #MBEAN_NAME}, using the attributes and operations of
+	 * {@link ProfilerMBean}.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the profiler cannot be registered, such as when it has
+	 *             already been registered.
+	 */
+	public static void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					new StandardMBean(new MBean(), ProfilerMBean.class),
+					new ObjectName(MBEAN_NAME));
+		} catch (JMException ex) {
+			throw new IllegalStateException(
+					"The profiler could not be registered", ex);
+		}
+	}
+
+	/**
+	 * Removes everything measured so far.
+	 */
+	public static synchronized void reset() {
+		FRAME_TIMES.reset();
+		for (int i = 0; i < HISTORY_LENGTH; i++) {
+			FRAME_HISTORY[i] = 0;
+			ALLOCATION_HISTORY[i] = 0;
+		}
+		for (int i = 0; i < TIMERS.size(); i++) {
+			TIMERS.get(i).reset();
+		}
+		lastFrameEndTime = 0;
+	}
+
+	static ProfileStack getStack() {
+		ProfileStack stack = STACKS.get();
+		stack.update(generation);
+		return stack;
+	}
+
+	static synchronized ProfileNode getNode(ProfileNode parent,
+			ProfileTimer timer) {
+		List<ProfileNode> nodes = parent == null ? ROOT_NODES : parent
+				.getChildren();
+		for (int i = 0; i < nodes.size(); i++) {
+			if (nodes.get(i).getTimer() == timer) {
+				return nodes.get(i);
+			}
+		}
+		ProfileNode node = new ProfileNode(timer, parent, HISTORY_LENGTH);
+		nodes.add(node);
+		timer.addNode(node);
+		return node;
+	}
+
+	static int getHistoryIndex(int framesAgo) {
+		if (framesAgo < 0 || framesAgo >= HISTORY_LENGTH) {
+			throw new IllegalArgumentException("Only the last "
+					+ HISTORY_LENGTH + " frames are kept");
+		}
+		return (historyIndex - 1 - framesAgo + 2 * HISTORY_LENGTH)
+				% HISTORY_LENGTH;
+	}
+
+	private static synchronized void endEnabledFrame() {
+		long currentTime = System.nanoTime();
+		long allocatedBytes = getThreadAllocatedBytes();
+		if (lastFrameEndTime != 0) {
+			long frameTime = currentTime - lastFrameEndTime;
+			FRAME_TIMES.record(frameTime);
+			FRAME_HISTORY[historyIndex] = frameTime;
+			ALLOCATION_HISTORY[historyIndex] = allocatedBytes
+					- lastAllocatedBytes;
+			for (int i = 0; i < TIMERS.size(); i++) {
+				TIMERS.get(i).endFrame(historyIndex);
+			}
+			historyIndex = (historyIndex + 1) % HISTORY_LENGTH;
+		} else {
+			// The frame started before the profiler was enabled, so what the
+			// timers measured is not part of any frame that is recorded.
+			for (int i = 0; i < TIMERS.size(); i++) {
+				TIMERS.get(i).discardFrame();
+			}
+		}
+		lastFrameEndTime = currentTime;
+		lastAllocatedBytes = allocatedBytes;
+	}
+
+	private static void appendNode(StringBuilder report, ProfileNode node,
+			int depth) {
+		StringBuilder name = new StringBuilder();
+		for (int i = depth; i > 0; i--) {
+			name.append("  ");
+		}
+		name.append(node.getTimer().getName());
+		Histogram histogram = node.getHistogram();
+		report.append(String.format("%-24s %6d %10.3f %10.3f %10.3f %10.3f%n",
+				name, node.getLastFrameCalls(),
+				toMilliseconds(node.getFrameTime(getHistoryIndex(0))),
+				toMilliseconds(histogram.getValueAtPercentile(50.0)),
+				toMilliseconds(histogram.getValueAtPercentile(99.0)),
+				toMilliseconds(histogram.getMax())));
+		List<ProfileNode> children = node.getChildren();
+		for (int i = 0; i < children.size(); i++) {
+			appendNode(report, children.get(i), depth + 1);
+		}
+	}
+
+	private static double toMilliseconds(long nanos) {
+		return nanos / NANOS_PER_MILLISECOND;
+	}
+
+	private static long getThreadAllocatedBytes() {
+		if (ALLOCATION_COUNTER == null) {
+			return -1;
+		}
+		return ALLOCATION_COUNTER.getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean getAllocationCounter() {
+		// Only some JVMs can count how much memory each thread allocates.
+		Object bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		com.sun.management.ThreadMXBean counter;
+		counter = (com.sun.management.ThreadMXBean) bean;
+		if (!counter.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+		counter.setThreadAllocatedMemoryEnabled(true);
+		return counter;
+	}
+
+	private static class MBean implements ProfilerMBean {
+		@Override
+		public boolean isEnabled() {
+			return Profiler.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Profiler.setEnabled(enabled);
+		}
+
+		@Override
+		public long getFrameCount() {
+			return FRAME_TIMES.getCount();
+		}
+
+		@Override
+		public double getFrameTimeMedian() {
+			return toMilliseconds(FRAME_TIMES.getValueAtPercentile(50.0));
+		}
+
+		@Override
+		public double getFrameTime99thPercentile() {
+			return toMilliseconds(FRAME_TIMES.getValueAtPercentile(99.0));
+		}
+
+		@Override
+		public double getFrameTimeMax() {
+			return toMilliseconds(FRAME_TIMES.getMax());
+		}
+
+		@Override
+		public long getLastFrameAllocatedBytes() {
+			return getAllocatedBytes(0);
+		}
+
+		@Override
+		public String getReport() {
+			return Profiler.getReport();
+		}
+
+		@Override
+		public void reset() {
+			Profiler.reset();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.util.profiling;
+
+/**
+ * The values the {@link Profiler} makes available through JMX, once
+ * {@link Profiler#registerMBean()} has been called. Times are in milliseconds.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public interface ProfilerMBean {
+	/**
+	 * Gets whether the profiler is measuring anything.
+	 * 
+	 * @return Whether the profiler is enabled.
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Sets whether the profiler is measuring anything.
+	 * 
+	 * @param enabled
+	 *            Whether the profiler should be enabled.
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Gets the number of frames measured since the profiler was last reset.
+	 * 
+	 * @return The number of frames measured.
+	 */
+	public long getFrameCount();
+
+	/**
+	 * Gets the time half of all frames took at most.
+	 * 
+	 * @return The median frame time, in milliseconds.
+	 */
+	public double getFrameTimeMedian();
+
+	/**
+	 * Gets the time 99% of all frames took at most.
+	 * 
+	 * @return The 99th percentile frame time, in milliseconds.
+	 */
+	public double getFrameTime99thPercentile();
+
+	/**
+	 * Gets the time the longest frame took.
+	 * 
+	 * @return The longest frame time, in milliseconds.
+	 */
+	public double getFrameTimeMax();
+
+	/**
+	 * Gets how much memory was allocated during the last frame, by the thread
+	 * frames are ended on.
+	 * 
+	 * @return The number of bytes allocated, or -1 if this JVM cannot measure
+	 *         allocation.
+	 */
+	public long getLastFrameAllocatedBytes();
+
+	/**
+	 * Gets a description of every timer, as written by
+	 * {@link Profiler#save(String)}.
+	 * 
+	 * @return A description of every timer.
+	 */
+	public String getReport();
+
+	/**
+	 * Removes everything measured so far.
+	 */
+	public void reset();
+}
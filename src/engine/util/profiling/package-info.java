@@ -0,0 +1,4 @@
+/**
+ * Classes for measuring how long parts of the engine take to run.
+ */
+package engine.util.profiling;
\ No newline at end of file
@@ -0,0 +1,136 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.util.Random;
+
+import engine.parsing.json.BinaryJSON;
+import engine.parsing.json.JSON;
+import engine.parsing.json.JSONArray;
+import engine.parsing.json.JSONObject;
+import engine.parsing.json.JSONReader;
+import engine.parsing.json.JSONValue;
+
+/**
+ * Checks that random JSON values are read back exactly the same after being
+ * written as JSON text and parsed, and after being compiled into a binary
+ * JSON file and loaded.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class BinaryJSONRoundTripCheck {
+	private static final int NUM_VALUES = 3000;
+	private static final int MAX_DEPTH = 4;
+	private static final int MAX_SIZE = 6;
+	private static final int MAX_STRING_LENGTH = 8;
+	// Characters that are encoded differently from each other in UTF-8,
+	// including surrogates that are not part of a pair.
+	private static final char[] STRING_CHARS = { 'a', 'Z', '0', ' ', '"',
+			'\\', '/', '\n', '\t', '\u0000', '\u001F', '\u00E9', '\u07FF',
+			'\u0800', '\u4E2D', '\uFFFF', '\uD800', '\uDBFF', '\uDC00',
+			'\uDFFF' };
+
+	/**
+	 * Runs the check.
+	 * 
+	 * @param args
+	 *            Unused.
+	 * @throws IOException
+	 *             If a temporary file cannot be used.
+	 * @throws ParseException
+	 *             If written JSON text cannot be parsed.
+	 */
+	public static void main(String[] args) throws IOException,
+			ParseException {
+		Random random = new Random(1);
+		File file = File.createTempFile("roundtrip", ".bin");
+		file.deleteOnExit();
+		int numFailures = 0;
+		for (int i = 0; i < NUM_VALUES; i++) {
+			JSONValue value = random.nextBoolean() ? createObject(random, 0)
+					: createArray(random, 0);
+
+			StringWriter text = new StringWriter();
+			value.write(text);
+			JSONValue parsed = new JSON(new JSONReader(new StringReader(
+					text.toString()))).get();
+
+			new BinaryJSON(parsed).write(file.getPath());
+			JSONValue loaded = new BinaryJSON(file.getPath()).get();
+
+			if (!value.equals(parsed) || !parsed.equals(loaded)) {
+				if (numFailures == 0) {
+					System.out.println("BinaryJSONRoundTripCheck: " + text);
+				}
+				numFailures++;
+			}
+		}
+		file.delete();
+
+		System.out.println("BinaryJSONRoundTripCheck: " + numFailures
+				+ " of " + NUM_VALUES + " values differ");
+		if (numFailures != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static JSONValue create(Random random, int depth) {
+		int type = random.nextInt(depth < MAX_DEPTH ? 9 : 7);
+		switch (type) {
+		case 0:
+			return JSONValue.create(random.nextInt());
+		case 1:
+			return JSONValue.create(random.nextLong());
+		case 2:
+			return JSONValue.create((random.nextDouble() - 0.5)
+					* Math.pow(10, random.nextInt(40) - 20));
+		case 3:
+			return JSONValue.create(Double.longBitsToDouble(random
+					.nextLong() & 0x7FEFFFFFFFFFFFFFL));
+		case 4:
+			return JSONValue.create(createString(random));
+		case 5:
+			return JSONValue.create(random.nextBoolean());
+		case 6:
+			return JSONValue.create((String) null);
+		case 7:
+			return createObject(random, depth + 1);
+		default:
+			return createArray(random, depth + 1);
+		}
+	}
+
+	private static JSONObject createObject(Random random, int depth) {
+		JSONObject result = new JSONObject();
+		int size = random.nextInt(MAX_SIZE);
+		for (int i = 0; i < size; i++) {
+			result.put(createString(random), create(random, depth));
+		}
+		return result;
+	}
+
+	private static JSONArray createArray(Random random, int depth) {
+		JSONArray result = new JSONArray();
+		int size = random.nextInt(MAX_SIZE);
+		for (int i = 0; i < size; i++) {
+			result.add(create(random, depth));
+		}
+		return result;
+	}
+
+	private static String createString(Random random) {
+		StringBuilder result = new StringBuilder();
+		int length = random.nextInt(MAX_STRING_LENGTH);
+		for (int i = 0; i < length; i++) {
+			result.append(STRING_CHARS[random.nextInt(STRING_CHARS.length)]);
+		}
+		return result.toString();
+	}
+}
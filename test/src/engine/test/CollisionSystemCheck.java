@@ -0,0 +1,127 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.test;
+
+import java.util.Random;
+
+import engine.components.ColliderComponent;
+import engine.components.CollisionComponent;
+import engine.components.CollisionSystem;
+import engine.core.entity.Entity;
+import engine.core.entity.IDPool;
+import engine.space.AABB;
+import engine.space.SpatialHash;
+import engine.util.DoublePair;
+
+/**
+ * Checks that collisions resolved against the pairs found by a
+ * {@link CollisionSystem} are exactly the same as collisions resolved by
+ * searching the spatial structure.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class CollisionSystemCheck {
+	private static final int NUM_WORLDS = 2000;
+	private static final int NUM_ROWS = 3;
+	private static final int COLLIDERS_PER_ROW = 8;
+	// Colliders start within a few floats of each other, so many of them are
+	// sorted by the same rounded value.
+	private static final double START = 100.0;
+	private static final double STEP = 2.5e-8;
+	private static final double MARGIN = 1e-7;
+
+	/**
+	 * Runs the check.
+	 * 
+	 * @param args
+	 *            Unused.
+	 */
+	public static void main(String[] args) {
+		// The first collider can reach the third within the margin, but not
+		// the second. The second and third start at the same rounded value on
+		// X, so the third is sorted after the second, even though it starts
+		// first.
+		double[] colliders = { 99.0, 0.0, 100.000001, 1.0, 100.000002, 0.0,
+				101.0, 1.0, 100.00000105, 0.0, 101.0, 1.0 };
+		int numDifferent = compare(colliders, MARGIN, MARGIN);
+
+		Random random = new Random(1);
+		for (int i = 0; i < NUM_WORLDS; i++) {
+			numDifferent += compare(generate(random), MARGIN,
+					random.nextInt(5) * STEP);
+		}
+		System.out.println("CollisionSystemCheck: " + numDifferent
+				+ " movements differ");
+		if (numDifferent != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static double[] generate(Random random) {
+		// Colliders are placed in rows without overlapping, as they would be
+		// after resolving collisions. Rows may touch, and colliders in a row
+		// may touch their neighbors.
+		double[] result = new double[NUM_ROWS * COLLIDERS_PER_ROW * 4];
+		int i = 0;
+		double minY = 0.0;
+		for (int row = 0; row < NUM_ROWS; row++) {
+			double x = START;
+			for (int j = 0; j < COLLIDERS_PER_ROW; j++) {
+				x += random.nextInt(4) * STEP;
+				result[i++] = x;
+				result[i++] = minY;
+				x += (random.nextInt(40) + 1) * STEP;
+				result[i++] = x;
+				result[i++] = minY + 1.0;
+			}
+			minY += 1.0 + random.nextInt(3) * STEP;
+		}
+		return result;
+	}
+
+	private static int compare(double[] colliders, double margin,
+			double amt) {
+		CollisionComponent[] searched = createWorld(colliders, null);
+		CollisionSystem system = new CollisionSystem(margin);
+		CollisionComponent[] paired = createWorld(colliders, system);
+		system.update();
+
+		int numDifferent = 0;
+		for (int i = 0; i < searched.length; i++) {
+			numDifferent += isSame(searched[i].resolveCollisions(amt, 0),
+					paired[i].resolveCollisions(amt, 0)) ? 0 : 1;
+			numDifferent += isSame(searched[i].resolveCollisions(-amt, 0),
+					paired[i].resolveCollisions(-amt, 0)) ? 0 : 1;
+			numDifferent += isSame(searched[i].resolveCollisions(0, amt),
+					paired[i].resolveCollisions(0, amt)) ? 0 : 1;
+			numDifferent += isSame(searched[i].resolveCollisions(0, -amt),
+					paired[i].resolveCollisions(0, -amt)) ? 0 : 1;
+		}
+		return numDifferent;
+	}
+
+	private static CollisionComponent[] createWorld(double[] colliders,
+			CollisionSystem system) {
+		SpatialHash<Entity> structure = new SpatialHash<>(1.0);
+		IDPool ids = new IDPool();
+		CollisionComponent[] result =
+				new CollisionComponent[colliders.length / 4];
+		for (int i = 0; i < result.length; i++) {
+			Entity entity = new Entity(structure, ids, 0, 0, 0);
+			new ColliderComponent(entity).fitAABB(new AABB(colliders[i * 4],
+					colliders[i * 4 + 1], colliders[i * 4 + 2],
+					colliders[i * 4 + 3]));
+			result[i] = new CollisionComponent(entity);
+			if (system != null) {
+				result[i].attachTo(system);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isSame(DoublePair a, DoublePair b) {
+		return a.getVal1() == b.getVal1() && a.getVal2() == b.getVal2();
+	}
+}
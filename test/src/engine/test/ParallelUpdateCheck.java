@@ -0,0 +1,188 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import engine.components.ColliderComponent;
+import engine.components.CollisionComponent;
+import engine.components.CollisionSystem;
+import engine.core.Scene;
+import engine.core.entity.Entity;
+import engine.core.entity.EntityComponent;
+import engine.rendering.IRenderContext;
+import engine.space.AABB;
+import engine.space.QuadTree;
+import engine.util.IDAssigner;
+
+/**
+ * Checks that updating a scene in parallel gives exactly the same results as
+ * deferred updates on a single thread, no matter how many threads the update
+ * pool has.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class ParallelUpdateCheck {
+	private static final int NUM_WANDERERS = 3000;
+	private static final int NUM_FOLLOWERS = 500;
+	private static final int NUM_UPDATES = 60;
+	private static final int[] NUM_THREADS = { 1, 2, 4, 8 };
+	private static final AABB ENTITY_SIZE = new AABB(-0.002, -0.002, 0.002,
+			0.002);
+	private static final double COLLISION_MARGIN = 0.01;
+
+	/**
+	 * Runs the check.
+	 * 
+	 * @param args
+	 *            Unused.
+	 */
+	public static void main(String[] args) {
+		long expected = run(null);
+		boolean isSame = true;
+		for (int numThreads : NUM_THREADS) {
+			ForkJoinPool pool = new ForkJoinPool(numThreads);
+			long result = run(pool);
+			pool.shutdown();
+			System.out.println("ParallelUpdateCheck: " + numThreads
+					+ " threads " + (result == expected ? "match" : "differ"));
+			isSame &= result == expected;
+		}
+		if (!isSame) {
+			System.exit(1);
+		}
+	}
+
+	private static long run(ForkJoinPool pool) {
+		TestScene scene = new TestScene(pool);
+		for (int i = 0; i < NUM_UPDATES; i++) {
+			scene.update(1.0 / 60.0);
+		}
+		return scene.getHash();
+	}
+
+	private static class TestScene extends Scene {
+		private static final AABB UPDATE_RANGE = new AABB(-3, -3, 3, 3);
+
+		private final CollisionSystem collisions;
+
+		public TestScene(ForkJoinPool pool) {
+			super(new QuadTree<Entity>(new AABB(-2, -2, 2, 2), 8));
+			collisions = new CollisionSystem(COLLISION_MARGIN);
+			setDeferredUpdates(true);
+			setUpdatePool(pool);
+			Random random = new Random(42);
+			List<Entity> wanderers = new ArrayList<>();
+			for (int i = 0; i < NUM_WANDERERS; i++) {
+				wanderers.add(spawn(random.nextDouble() * 3 - 1.5,
+						random.nextDouble() * 3 - 1.5, random.nextLong()));
+			}
+			// Followers read the positions of other entities, so they see any
+			// difference in when moves are done.
+			for (int i = 0; i < NUM_FOLLOWERS; i++) {
+				Entity entity = new Entity(getStructure(), getEntityIDs(),
+						random.nextDouble() * 3 - 1.5,
+						random.nextDouble() * 3 - 1.5, 0);
+				new Follower(entity, wanderers.get(random
+						.nextInt(wanderers.size())));
+			}
+		}
+
+		public Entity spawn(double x, double y, long seed) {
+			Entity entity = new Entity(getStructure(), getEntityIDs(), x, y, 0);
+			new ColliderComponent(entity).fitAABB(ENTITY_SIZE);
+			// Entities spawned while updating are attached to the shared
+			// system once the update is finished.
+			new CollisionComponent(entity).attachTo(collisions);
+			new Wanderer(entity, this, seed);
+			return entity;
+		}
+
+		public long getHash() {
+			List<Entity> entities = new ArrayList<>(getStructure().getAll(
+					new HashSet<Entity>()));
+			Collections.sort(entities);
+			long result = collisions.size();
+			for (Entity entity : entities) {
+				result = result * 31 + entity.getId();
+				result = result * 31 + Double.doubleToLongBits(entity.getX());
+				result = result * 31 + Double.doubleToLongBits(entity.getY());
+			}
+			return result;
+		}
+
+		@Override
+		public boolean update(double delta) {
+			collisions.update();
+			updateRange(delta, UPDATE_RANGE);
+			return false;
+		}
+
+		@Override
+		public void render(IRenderContext target) {
+		}
+	}
+
+	private static class Wanderer extends EntityComponent {
+		private static final int ID = IDAssigner.getId();
+
+		private final TestScene scene;
+		private long seed;
+
+		public Wanderer(Entity entity, TestScene scene, long seed) {
+			super(entity, ID);
+			this.scene = scene;
+			this.seed = seed | 1;
+		}
+
+		@Override
+		public void update(double delta) {
+			int action = next() % 100;
+			float amt = (float) ((next() % 1000) / 1000.0 * 0.01 - 0.005);
+			Entity entity = getEntity();
+			if (action < 45) {
+				entity.move(amt, 0);
+			} else if (action < 90) {
+				entity.move(0, amt);
+			} else if (action < 91) {
+				entity.remove();
+			} else if (action < 92) {
+				scene.spawn(entity.getX() + 0.001, entity.getY(),
+						seed * 31 + 7);
+			}
+		}
+
+		private int next() {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			return (int) (seed >>> 33);
+		}
+	}
+
+	private static class Follower extends EntityComponent {
+		private static final int ID = IDAssigner.getId();
+
+		private final Entity target;
+
+		public Follower(Entity entity, Entity target) {
+			super(entity, ID);
+			this.target = target;
+		}
+
+		@Override
+		public void update(double delta) {
+			float amt = (float) ((target.getX() - getEntity().getX()) * 0.1);
+			if (amt != 0.0f) {
+				getEntity().move(amt, 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.test;
+
+import java.util.Random;
+
+import engine.components.LightComponent;
+import engine.components.SpriteComponent;
+import engine.core.Scene;
+import engine.core.entity.Entity;
+import engine.core.entity.EntityComponent;
+import engine.rendering.ArrayBitmap;
+import engine.rendering.Color;
+import engine.rendering.IRenderContext;
+import engine.rendering.IRenderDevice;
+import engine.rendering.LightMap;
+import engine.rendering.RecordingRenderContext;
+import engine.rendering.RenderContext;
+import engine.rendering.RenderTarget;
+import engine.rendering.SpriteSheet;
+import engine.rendering.Texture;
+import engine.rendering.software.SoftwareRenderDevice;
+import engine.space.AABB;
+import engine.space.QuadTree;
+import engine.util.IDAssigner;
+
+/**
+ * Checks that replaying a recorded frame draws exactly the same pixels as
+ * drawing the frame directly, even when the scene is updated between
+ * recording the frame and replaying it, as it is in pipelined mode.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class RecordingReplayCheck {
+	private static final int FRAME_WIDTH = 160;
+	private static final int FRAME_HEIGHT = 120;
+	private static final int NUM_ENTITIES = 100;
+	private static final int NUM_FRAMES = 60;
+	private static final double UPDATE_DELTA = 1.0 / 60.0;
+
+	/**
+	 * Runs the check.
+	 * 
+	 * @param args
+	 *            Unused.
+	 */
+	public static void main(String[] args) {
+		// Each device gets its own copy of the scene, so textures are created
+		// on the device they are drawn with.
+		SoftwareRenderDevice directDevice = new SoftwareRenderDevice(
+				FRAME_WIDTH, FRAME_HEIGHT);
+		RenderContext direct = new RenderContext(directDevice,
+				new RenderTarget(directDevice, FRAME_WIDTH, FRAME_HEIGHT, 0,
+						0));
+		TestScene directScene = new TestScene(directDevice);
+
+		SoftwareRenderDevice replayDevice = new SoftwareRenderDevice(
+				FRAME_WIDTH, FRAME_HEIGHT);
+		RenderContext replay = new RenderContext(replayDevice,
+				new RenderTarget(replayDevice, FRAME_WIDTH, FRAME_HEIGHT, 0,
+						0));
+		TestScene recordedScene = new TestScene(replayDevice);
+		RecordingRenderContext recording = new RecordingRenderContext();
+
+		int numDifferent = 0;
+		for (int i = 0; i < NUM_FRAMES; i++) {
+			directScene.render(direct);
+			ArrayBitmap expected = directDevice.getFrame();
+			directDevice.getSpriteBatch().endFrame();
+			directScene.update(UPDATE_DELTA);
+
+			// The next update is done before the recording is replayed, so
+			// the recording must not depend on the scene.
+			recording.reset();
+			recordedScene.render(recording);
+			recordedScene.update(UPDATE_DELTA);
+			recording.replay(replay);
+			ArrayBitmap result = replayDevice.getFrame();
+			replayDevice.getSpriteBatch().endFrame();
+
+			if (!isSame(expected, result)) {
+				numDifferent++;
+			}
+		}
+		System.out.println("RecordingReplayCheck: " + numDifferent + " of "
+				+ NUM_FRAMES + " frames differ");
+		if (numDifferent != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean isSame(ArrayBitmap a, ArrayBitmap b) {
+		if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+			return false;
+		}
+		for (int y = 0; y < a.getHeight(); y++) {
+			for (int x = 0; x < a.getWidth(); x++) {
+				if (a.get(x, y) != b.get(x, y)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static class TestScene extends Scene {
+		private static final AABB UPDATE_RANGE = new AABB(-2, -2, 2, 2);
+		private static final Color AMBIENT_LIGHT = new Color(0.1);
+
+		private final SpriteSheet font;
+		private double time;
+
+		public TestScene(IRenderDevice device) {
+			super(new QuadTree<Entity>(new AABB(-1, -1, 1, 1), 8));
+			Random random = new Random(1);
+			font = createSheet(device, random, 16);
+			SpriteSheet bricks = createSheet(device, random, 2);
+			LightMap light = new LightMap(device, 32, Color.WHITE);
+			for (int i = 0; i < NUM_ENTITIES; i++) {
+				Entity entity = new Entity(getStructure(), getEntityIDs(),
+						random.nextDouble() * 2 - 1,
+						random.nextDouble() * 2 - 1, random.nextDouble());
+				SpriteComponent sprite = new SpriteComponent(entity, 0.2, 0.2,
+						bricks, 0.05, new Color(random.nextDouble(),
+								random.nextDouble(), random.nextDouble()));
+				sprite.setFlipX(random.nextBoolean());
+				sprite.setFlipY(random.nextBoolean());
+				sprite.setTransparency(random.nextDouble());
+				new LightComponent(entity, light, 0.3, 0.3, 0, 0);
+				new Mover(entity, random.nextDouble() - 0.5,
+						random.nextDouble() - 0.5);
+			}
+			time = 0.0;
+		}
+
+		@Override
+		public boolean update(double delta) {
+			time += delta;
+			updateRange(delta, UPDATE_RANGE);
+			return false;
+		}
+
+		@Override
+		public void render(IRenderContext target) {
+			target.clear(Color.BLACK);
+			target.clearLighting(AMBIENT_LIGHT);
+			renderRange(target, 0, 0);
+			target.applyLighting();
+			target.drawString("Time " + (int) (time * 1000), font, -1, 0.75,
+					0.125, Color.WHITE, 0.0);
+		}
+
+		private static SpriteSheet createSheet(IRenderDevice device,
+				Random random, int spritesPerAxis) {
+			ArrayBitmap bitmap = new ArrayBitmap(64, 64);
+			for (int y = 0; y < bitmap.getHeight(); y++) {
+				for (int x = 0; x < bitmap.getWidth(); x++) {
+					bitmap.set(x, y, random.nextInt());
+				}
+			}
+			return new SpriteSheet(new Texture(device, bitmap,
+					IRenderDevice.FILTER_LINEAR), spritesPerAxis,
+					spritesPerAxis, 0);
+		}
+	}
+
+	private static class Mover extends EntityComponent {
+		private static final int ID = IDAssigner.getId();
+
+		private final double speedX;
+		private final double speedY;
+
+		public Mover(Entity entity, double speedX, double speedY) {
+			super(entity, ID);
+			this.speedX = speedX;
+			this.speedY = speedY;
+		}
+
+		@Override
+		public void update(double delta) {
+			getEntity().move((float) (speedX * delta), 0);
+			getEntity().move(0, (float) (speedY * delta));
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/** 
+ * Copyright (c) 2015, Benny Bobaganoosh. All rights reserved.
+ * License terms are in the included LICENSE.txt file.
+ */
+package engine.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sun.management.ThreadMXBean;
+
+import engine.components.ColliderComponent;
+import engine.components.LightComponent;
+import engine.components.SpriteComponent;
+import engine.core.Scene;
+import engine.core.entity.Entity;
+import engine.rendering.ArrayBitmap;
+import engine.rendering.Color;
+import engine.rendering.IRenderContext;
+import engine.rendering.IRenderDevice;
+import engine.rendering.LightMap;
+import engine.rendering.RenderContext;
+import engine.rendering.RenderTarget;
+import engine.rendering.SpriteSheet;
+import engine.rendering.Texture;
+import engine.rendering.software.SoftwareRenderDevice;
+import engine.space.AABB;
+import engine.space.QuadTree;
+
+/**
+ * Checks that updating and rendering a scene of lit sprites and text does
+ * not allocate any memory once it has warmed up.
+ * 
+ * @author Benny Bobaganoosh (thebennybox@gmail.com)
+ */
+public class RenderAllocationCheck {
+	private static final int FRAME_WIDTH = 160;
+	private static final int FRAME_HEIGHT = 120;
+	private static final int NUM_ENTITIES = 200;
+	private static final int WARMUP_FRAMES = 2000;
+	private static final int MEASURED_FRAMES = 1000;
+	private static final double UPDATE_DELTA = 1.0 / 60.0;
+
+	/**
+	 * Runs the check.
+	 * 
+	 * @param args
+	 *            Unused.
+	 */
+	public static void main(String[] args) {
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("RenderAllocationCheck: skipped, this JVM "
+					+ "cannot measure allocation");
+			return;
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		SoftwareRenderDevice device = new SoftwareRenderDevice(FRAME_WIDTH,
+				FRAME_HEIGHT);
+		RenderContext context = new RenderContext(device, new RenderTarget(
+				device, FRAME_WIDTH, FRAME_HEIGHT, 0, 0));
+		TestScene scene = new TestScene(device);
+
+		long threadId = Thread.currentThread().getId();
+		long allocated = 0;
+		for (int i = 0; i < WARMUP_FRAMES + MEASURED_FRAMES; i++) {
+			if (i == WARMUP_FRAMES) {
+				allocated = threads.getThreadAllocatedBytes(threadId);
+			}
+			scene.setIntensity((i % 100) / 100.0);
+			scene.update(UPDATE_DELTA);
+			scene.render(context);
+			device.flush();
+			device.getSpriteBatch().endFrame();
+		}
+		allocated = threads.getThreadAllocatedBytes(threadId) - allocated;
+
+		System.out.println("RenderAllocationCheck: " + allocated
+				+ " bytes allocated in " + MEASURED_FRAMES + " frames");
+		if (allocated != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static class TestScene extends Scene {
+		private static final AABB UPDATE_RANGE = new AABB(-2, -2, 2, 2);
+		private static final Color AMBIENT_LIGHT = new Color(0.1);
+
+		private final SpriteSheet font;
+		private final List<LightComponent> lights;
+
+		public TestScene(IRenderDevice device) {
+			super(new QuadTree<Entity>(new AABB(-1, -1, 1, 1), 8));
+			Random random = new Random(1);
+			font = createSheet(device, random, 16);
+			SpriteSheet bricks = createSheet(device, random, 1);
+			LightMap light = new LightMap(device, 32, Color.WHITE);
+			lights = new ArrayList<>();
+			for (int i = 0; i < NUM_ENTITIES; i++) {
+				Entity entity = new Entity(getStructure(), getEntityIDs(),
+						random.nextDouble() * 2 - 1,
+						random.nextDouble() * 2 - 1, random.nextDouble());
+				new ColliderComponent(entity);
+				new SpriteComponent(entity, 0.1, 0.1, bricks, 0, Color.WHITE);
+				lights.add(new LightComponent(entity, light, 0.2, 0.2, 0, 0));
+			}
+		}
+
+		public void setIntensity(double intensity) {
+			for (int i = 0; i < lights.size(); i++) {
+				lights.get(i).setIntensity(intensity);
+			}
+		}
+
+		@Override
+		public boolean update(double delta) {
+			updateRange(delta, UPDATE_RANGE);
+			return false;
+		}
+
+		@Override
+		public void render(IRenderContext target) {
+			target.clear(Color.BLACK);
+			target.clearLighting(AMBIENT_LIGHT);
+			renderRange(target, 0, 0);
+			target.applyLighting();
+			target.drawString("Hello, World!", font, -1, 0.75, 0.25,
+					Color.WHITE, 1.0);
+		}
+
+		private static SpriteSheet createSheet(IRenderDevice device,
+				Random random, int spritesPerAxis) {
+			ArrayBitmap bitmap = new ArrayBitmap(64, 64);
+			for (int y = 0; y < bitmap.getHeight(); y++) {
+				for (int x = 0; x < bitmap.getWidth(); x++) {
+					bitmap.set(x, y, random.nextInt());
+				}
+			}
+			return new SpriteSheet(new Texture(device, bitmap,
+					IRenderDevice.FILTER_LINEAR), spritesPerAxis,
+					spritesPerAxis, 0);
+		}
+	}
+}
@@ -0,0 +1,7 @@
+/**
+ * Checks of behavior that is hard to see from the outside, such as how much
+ * memory is allocated, run with {@code make check}. Each check is a program
+ * that exits with a nonzero status if it fails. None of them need a display
+ * or native libraries.
+ */
+package engine.test;